@@ -0,0 +1,413 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Builds the workloads measured by the JMH benchmarks in the {@code bench} package.
+ * <p>
+ * The application classes live in the unnamed package, which classes in a named package
+ * cannot refer to, while JMH cannot generate code for benchmarks in the unnamed package.
+ * The workloads are therefore built here, in the unnamed package, and handed to the
+ * benchmarks as {@link Callable}s; one call is one benchmark operation. Setting up a
+ * workload (generating data, seeding a database) happens before the first call.
+ * </p>
+ *
+ * <p>
+ * The database workloads run against an in-memory H2 database in MySQL mode with the
+ * <strong>titles</strong>, <strong>authors</strong> and <strong>authorISBN</strong>
+ * tables, seeded with a synthetic catalog. H2 runs in the benchmark's own process, so
+ * the numbers show the work done by this application's code and the JDBC layer, not the
+ * network round trips of a real MySQL server.
+ * </p>
+ */
+public final class BenchmarkFixtures {
+    private static final String BOOK_BY_ISBN = "SELECT isbn, title, editionNumber, copyright FROM titles WHERE isbn = ?";
+    private static final String[] WORDS = {
+            "Java", "Effective", "Patterns", "Concurrency", "Practice", "Design", "Systems", "Data",
+            "Algorithms", "Networks", "Servlets", "Modern", "Guide", "Complete", "Introduction", "Advanced"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Joshua", "Brian", "Martin", "Kent", "Barbara", "Grace", "Donald", "Edsger", "Ada", "Niklaus"
+    };
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Maps every row of a result set of <strong>titles</strong> rows to a {@link Book}
+     * with {@link BookDatabaseManager#mapBook}. The rows are held in a {@link CachedRowSet},
+     * so no query runs while measuring.
+     *
+     * @param rows the number of rows
+     * @return the workload; each call returns the mapped books
+     * @throws SQLException if the rows could not be loaded
+     */
+    public static Callable<Object> mapBooks(int rows) throws SQLException {
+        CachedRowSet rowSet = cachedRows(rows, "SELECT isbn, title, editionNumber, copyright FROM titles");
+        return () -> {
+            List<Book> books = new ArrayList<>(rows);
+            rowSet.beforeFirst();
+            while (rowSet.next()) {
+                books.add(BookDatabaseManager.mapBook(rowSet));
+            }
+            return books;
+        };
+    }
+
+    /**
+     * Maps every row of a result set of <strong>authors</strong> rows to an
+     * {@link Author}, as {@link #mapBooks(int)} does for books.
+     *
+     * @param rows the number of rows
+     * @return the workload; each call returns the mapped authors
+     * @throws SQLException if the rows could not be loaded
+     */
+    public static Callable<Object> mapAuthors(int rows) throws SQLException {
+        //the synthetic catalog has one author for every four books
+        CachedRowSet rowSet = cachedRows(rows * 4, "SELECT authorID, firstName, lastName FROM authors");
+        return () -> {
+            List<Author> authors = new ArrayList<>(rows);
+            rowSet.beforeFirst();
+            while (rowSet.next()) {
+                authors.add(BookDatabaseManager.mapAuthor(rowSet));
+            }
+            return authors;
+        };
+    }
+
+    /**
+     * Builds a new book and author graph on every call.
+     * <ul>
+     *   <li>{@code prolificAuthor}: one author gains {@code size} books through {@link Author#addBook(Book)}.</li>
+     *   <li>{@code anthology}: one book gains {@code size} authors through {@link Book#addAuthor(Author)}.</li>
+     *   <li>{@code catalog}: the rows of a books-authors join over {@code size} books are folded into a
+     *       graph the way {@link BookDatabaseManager#getBooksWithAuthors()} does it.</li>
+     * </ul>
+     *
+     * @param shape the shape of the graph
+     * @param size  the number of books, or of authors for an anthology
+     * @return the workload; each call returns the root of the new graph
+     */
+    public static Callable<Object> linkGraph(String shape, int size) {
+        String[] isbns = new String[size];
+        for (int i = 0; i < size; i++) {
+            isbns[i] = isbn(i);
+        }
+        switch (shape) {
+            case "prolificAuthor":
+                return () -> {
+                    Author author = new Author(1, "Prolific", "Author");
+                    for (String isbn : isbns) {
+                        author.addBook(new Book(isbn, "Title", 1, "2024"));
+                    }
+                    return author;
+                };
+            case "anthology":
+                return () -> {
+                    Book book = new Book(isbns[0], "Anthology", 1, "2024");
+                    for (int i = 0; i < size; i++) {
+                        book.addAuthor(new Author(i + 1, "First", "Last"));
+                    }
+                    return book;
+                };
+            case "catalog":
+                return catalogGraph(syntheticBooks(size));
+            default:
+                throw new IllegalArgumentException("Unknown graph shape: " + shape);
+        }
+    }
+
+    /**
+     * Sorts a synthetic catalog into a {@link CatalogSnapshot} on every call.
+     *
+     * @param books the number of books
+     * @return the workload; each call returns the new snapshot
+     */
+    public static Callable<Object> buildSnapshot(int books) {
+        List<Book> catalog = syntheticBooks(books);
+        List<Author> authors = authorsOf(catalog);
+        return () -> CatalogSnapshot.build(catalog, authors);
+    }
+
+    /**
+     * Produces the first page of <code>view=books</code> the way {@link LibraryData} does,
+     * from a {@link CatalogSnapshot} or from the database, and builds the lines shown by
+     * <em>viewbooks.jsp</em>.
+     *
+     * @param source   {@code snapshot} or {@code database}
+     * @param sort     the <code>sort</code> request parameter
+     * @param database a database from {@link #database(int, int)}, which the snapshot is built from
+     *                 or the page is read from
+     * @return the workload; each call returns the lines of the page
+     */
+    public static Callable<Object> listBooks(String source, String sort, Object database) {
+        Database db = (Database) database;
+        BookSort bookSort = BookSort.fromParameter(sort, BookSort.TITLE);
+        switch (source) {
+            case "snapshot":
+                List<Book> catalog = db.manager.getAllBooks();
+                CatalogSnapshot snapshot = CatalogSnapshot.build(catalog, authorsOf(catalog));
+                return () -> LibraryData.describeBooks(
+                        snapshot.getBooksPage(bookSort, null, BookDatabaseManager.DEFAULT_PAGE_SIZE).getItems());
+            case "database":
+                return () -> LibraryData.describeBooks(
+                        db.manager.getBooksPage(bookSort, null, BookDatabaseManager.DEFAULT_PAGE_SIZE).getItems());
+            default:
+                throw new IllegalArgumentException("Unknown source: " + source);
+        }
+    }
+
+    /**
+     * Creates and seeds an in-memory database with a synthetic catalog, and a
+     * {@link BookDatabaseManager} on a {@link ConnectionPool} for it. Close it when done.
+     *
+     * @param books              the number of books
+     * @param statementCacheSize the prepared statements cached per pooled connection; 0 turns the cache off
+     * @return the database, to be passed to {@link #query(Object, String)} and {@link #listBooks}
+     * @throws SQLException if the database could not be created
+     */
+    public static AutoCloseable database(int books, int statementCacheSize) throws SQLException {
+        return new Database(books, statementCacheSize);
+    }
+
+    /**
+     * Runs one data-access operation against a database from {@link #database(int, int)}.
+     * <ul>
+     *   <li>{@code getAllBooks}: {@link BookDatabaseManager#getAllBooks()}.</li>
+     *   <li>{@code getBooksWithAuthors}: {@link BookDatabaseManager#getBooksWithAuthors()}.</li>
+     *   <li>{@code getBookByISBN}: {@link BookDatabaseManager#getBookByISBN(String)} with its cache
+     *       turned off, so every call borrows a pooled connection and runs the query.</li>
+     *   <li>{@code getBookByISBNCached}: the same with the default cache, once it is warm.</li>
+     *   <li>{@code getBookByISBNConnectionPerCall}: the same query on a new connection from
+     *       {@link DriverManager} for every call, as the code did before the pool.</li>
+     * </ul>
+     * The lookups cycle through every ISBN in the catalog.
+     *
+     * @param database  the database
+     * @param operation the operation
+     * @return the workload; each call returns what the operation returned
+     */
+    public static Callable<Object> query(Object database, String operation) {
+        Database db = (Database) database;
+        switch (operation) {
+            case "getAllBooks":
+                return db.manager::getAllBooks;
+            case "getBooksWithAuthors":
+                return db.manager::getBooksWithAuthors;
+            case "getBookByISBN":
+                return () -> db.uncachedManager.getBookByISBN(db.nextIsbn());
+            case "getBookByISBNCached":
+                for (String isbn : db.isbns) {
+                    db.manager.getBookByISBN(isbn);
+                }
+                return () -> db.manager.getBookByISBN(db.nextIsbn());
+            case "getBookByISBNConnectionPerCall":
+                return () -> {
+                    try (Connection conn = DriverManager.getConnection(db.url, Database.USER, Database.PASSWORD);
+                         PreparedStatement stmt = conn.prepareStatement(BOOK_BY_ISBN)) {
+                        stmt.setString(1, db.nextIsbn());
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            return rs.next() ? BookDatabaseManager.mapBook(rs) : null;
+                        }
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    /**
+     * Generates a catalog of books, each linked to one or two of {@code count / 4}
+     * authors. The data is the same on every call with the same count.
+     */
+    static List<Book> syntheticBooks(int count) {
+        Random random = new Random(42);
+        Author[] authors = new Author[Math.max(1, count / 4)];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = new Author(i + 1, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)], "Author" + i);
+        }
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            Book book = new Book(isbn(i), title, 1 + random.nextInt(5), String.valueOf(1990 + random.nextInt(35)));
+            book.addAuthor(authors[i % authors.length]);
+            book.addAuthor(authors[(i * 7 + 3) % authors.length]);
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static List<Author> authorsOf(List<Book> books) {
+        Map<Integer, Author> authors = new LinkedHashMap<>();
+        for (Book book : books) {
+            for (Author author : book.getAuthors()) {
+                authors.putIfAbsent(author.getAuthorID(), author);
+            }
+        }
+        return new ArrayList<>(authors.values());
+    }
+
+    private static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+
+    /**
+     * Flattens a catalog into join rows and returns a workload that folds them back into
+     * a graph, reusing the book and author already seen for a key.
+     */
+    private static Callable<Object> catalogGraph(List<Book> catalog) {
+        List<Book> bookRows = new ArrayList<>();
+        List<Author> authorRows = new ArrayList<>();
+        for (Book book : catalog) {
+            for (Author author : book.getAuthors()) {
+                bookRows.add(book);
+                authorRows.add(author);
+            }
+        }
+        return () -> {
+            Map<String, Book> books = new LinkedHashMap<>();
+            Map<Integer, Author> authors = new LinkedHashMap<>();
+            for (int i = 0; i < bookRows.size(); i++) {
+                Book row = bookRows.get(i);
+                Book book = books.get(row.getIsbn());
+                if (book == null) {
+                    book = new Book(row.getIsbn(), row.getTitle(), row.getEditionNumber(), row.getCopyright());
+                    books.put(book.getIsbn(), book);
+                }
+                Author authorRow = authorRows.get(i);
+                Author author = authors.get(authorRow.getAuthorID());
+                if (author == null) {
+                    author = new Author(authorRow.getAuthorID(), authorRow.getFirstName(), authorRow.getLastName());
+                    authors.put(author.getAuthorID(), author);
+                }
+                book.addAuthor(author);
+            }
+            return books;
+        };
+    }
+
+    private static CachedRowSet cachedRows(int books, String sql) throws SQLException {
+        try (Database db = new Database(books, 0);
+             Connection conn = DriverManager.getConnection(db.url, Database.USER, Database.PASSWORD);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+            rowSet.populate(rs);
+            return rowSet;
+        }
+    }
+
+    /**
+     * An in-memory H2 database seeded with a synthetic catalog.
+     */
+    private static final class Database implements AutoCloseable {
+        private static final String USER = "sa";
+        private static final String PASSWORD = "";
+
+        private final String url;
+        private final String[] isbns;
+        private final ConnectionPool pool;
+        private final BookDatabaseManager manager;
+        private final BookDatabaseManager uncachedManager;
+        private int next;
+
+        private Database(int books, int statementCacheSize) throws SQLException {
+            url = "jdbc:h2:mem:books" + DATABASES.incrementAndGet()
+                    + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+            List<Book> catalog = syntheticBooks(books);
+            seed(catalog);
+            isbns = new String[catalog.size()];
+            for (int i = 0; i < isbns.length; i++) {
+                isbns[i] = catalog.get(i).getIsbn();
+            }
+
+            PoolConfig config = new PoolConfig(url, USER, PASSWORD);
+            config.setMinSize(1);
+            config.setMaxSize(4);
+            config.setStatementCacheSize(statementCacheSize);
+            pool = new ConnectionPool(config);
+            manager = new BookDatabaseManager(pool);
+            uncachedManager = new BookDatabaseManager(pool);
+            //H2 rejects the Integer.MIN_VALUE streaming fetch size that MySQL uses
+            manager.setFetchSize(1000);
+            uncachedManager.setFetchSize(1000);
+            //entries expire at once, so every lookup reaches the database
+            uncachedManager.configureCaches(1, 0, 0);
+        }
+
+        private String nextIsbn() {
+            String isbn = isbns[next];
+            next = (next + 1) % isbns.length;
+            return isbn;
+        }
+
+        private void seed(List<Book> catalog) throws SQLException {
+            try (Connection conn = DriverManager.getConnection(url, USER, PASSWORD)) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE TABLE titles (isbn VARCHAR(20) PRIMARY KEY, title VARCHAR(500) NOT NULL,"
+                            + " editionNumber INT NOT NULL, copyright VARCHAR(4) NOT NULL)");
+                    stmt.execute("CREATE TABLE authors (authorID INT AUTO_INCREMENT PRIMARY KEY,"
+                            + " firstName VARCHAR(30) NOT NULL, lastName VARCHAR(30) NOT NULL)");
+                    stmt.execute("CREATE TABLE authorISBN (authorID INT NOT NULL, isbn VARCHAR(20) NOT NULL,"
+                            + " PRIMARY KEY (authorID, isbn))");
+                    stmt.execute("CREATE INDEX idx_titles_title ON titles (title)");
+                    stmt.execute("CREATE INDEX idx_titles_copyright ON titles (copyright)");
+                    stmt.execute("CREATE INDEX idx_titles_edition ON titles (editionNumber)");
+                }
+                conn.setAutoCommit(false);
+                try (PreparedStatement titles = conn.prepareStatement(
+                        "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)");
+                     PreparedStatement links = conn.prepareStatement(
+                             "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)")) {
+                    for (Book book : catalog) {
+                        titles.setString(1, book.getIsbn());
+                        titles.setString(2, book.getTitle());
+                        titles.setInt(3, book.getEditionNumber());
+                        titles.setString(4, book.getCopyright());
+                        titles.addBatch();
+                        for (Author author : book.getAuthors()) {
+                            links.setInt(1, author.getAuthorID());
+                            links.setString(2, book.getIsbn());
+                            links.addBatch();
+                        }
+                    }
+                    titles.executeBatch();
+                    links.executeBatch();
+                }
+                try (PreparedStatement authors = conn.prepareStatement(
+                        "INSERT INTO authors (authorID, firstName, lastName) VALUES (?, ?, ?)")) {
+                    for (Author author : authorsOf(catalog)) {
+                        authors.setInt(1, author.getAuthorID());
+                        authors.setString(2, author.getFirstName());
+                        authors.setString(3, author.getLastName());
+                        authors.addBatch();
+                    }
+                    authors.executeBatch();
+                }
+                conn.commit();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            pool.close();
+            try (Connection conn = DriverManager.getConnection(url, USER, PASSWORD);
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("SHUTDOWN");
+            }
+        }
+    }
+}
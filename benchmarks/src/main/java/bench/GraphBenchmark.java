@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the book and author object graph with {@code Book.addAuthor} and
+ * {@code Author.addBook}. Linking is expected to be linear in the number of links, so
+ * the time per operation should grow about a hundredfold from the small to the large
+ * size; a quadratic regression shows up as a much larger factor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+    @Param({"prolificAuthor", "anthology", "catalog"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Callable<Object> graph;
+
+    @Setup
+    public void setUp() throws Exception {
+        graph = Workloads.operation("linkGraph", shape, size);
+    }
+
+    @Benchmark
+    public Object linkGraph() throws Exception {
+        return graph.call();
+    }
+}
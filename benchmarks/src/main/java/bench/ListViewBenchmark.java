@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the list-building path of {@code LibraryData.doGet} for <code>view=books</code>:
+ * reading the first sorted page from the catalog snapshot or the database and building the
+ * lines shown by the JSP. {@link SnapshotBenchmark} measures building the snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListViewBenchmark {
+    @Param({"10000", "100000"})
+    public int books;
+
+    @Param({"title", "copyright", "isbn"})
+    public String sort;
+
+    private Object database;
+    private Callable<Object> snapshotPage;
+    private Callable<Object> databasePage;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = Workloads.create("database", books, 64);
+        snapshotPage = Workloads.operation("listBooks", "snapshot", sort, database);
+        databasePage = Workloads.operation("listBooks", "database", sort, database);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Workloads.close(database);
+    }
+
+    @Benchmark
+    public Object snapshotPage() throws Exception {
+        return snapshotPage.call();
+    }
+
+    @Benchmark
+    public Object databasePage() throws Exception {
+        return databasePage.call();
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures mapping result set rows to {@code Book} and {@code Author} objects, without
+ * running a query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Callable<Object> books;
+    private Callable<Object> authors;
+
+    @Setup
+    public void setUp() throws Exception {
+        books = Workloads.operation("mapBooks", rows);
+        authors = Workloads.operation("mapAuthors", rows);
+    }
+
+    @Benchmark
+    public Object mapBooks() throws Exception {
+        return books.call();
+    }
+
+    @Benchmark
+    public Object mapAuthors() throws Exception {
+        return authors.call();
+    }
+}
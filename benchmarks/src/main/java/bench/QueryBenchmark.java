@@ -0,0 +1,93 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@code BookDatabaseManager} reads against an in-memory database, with and
+ * without the per-connection statement cache ({@code statementCacheSize} 0 turns it off).
+ * <p>
+ * {@code getBookByISBNConnectionPerCall} opens a new connection for every lookup, as the
+ * code did before the connection pool; compare it with {@code getBookByISBN} to see what
+ * connection reuse saves. An in-memory connection is far cheaper than a MySQL handshake,
+ * so against a real server the difference is larger.
+ * </p>
+ * <p>
+ * The database is H2 in MySQL mode, not MySQL. H2 prepares a statement in memory, without
+ * the round trip and server-side parse of a MySQL prepare, so the {@code statementCacheSize}
+ * comparison only shows the client-side cost the cache saves; the saving against MySQL is
+ * larger and has to be measured there.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"10000"})
+    public int books;
+
+    @Param({"0", "64"})
+    public int statementCacheSize;
+
+    private Object database;
+    private Callable<Object> getAllBooks;
+    private Callable<Object> getBooksWithAuthors;
+    private Callable<Object> getBookByISBN;
+    private Callable<Object> getBookByISBNCached;
+    private Callable<Object> getBookByISBNConnectionPerCall;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = Workloads.create("database", books, statementCacheSize);
+        getAllBooks = Workloads.operation("query", database, "getAllBooks");
+        getBooksWithAuthors = Workloads.operation("query", database, "getBooksWithAuthors");
+        getBookByISBN = Workloads.operation("query", database, "getBookByISBN");
+        getBookByISBNCached = Workloads.operation("query", database, "getBookByISBNCached");
+        getBookByISBNConnectionPerCall = Workloads.operation("query", database, "getBookByISBNConnectionPerCall");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Workloads.close(database);
+    }
+
+    @Benchmark
+    public Object getAllBooks() throws Exception {
+        return getAllBooks.call();
+    }
+
+    @Benchmark
+    public Object getBooksWithAuthors() throws Exception {
+        return getBooksWithAuthors.call();
+    }
+
+    @Benchmark
+    public Object getBookByISBN() throws Exception {
+        return getBookByISBN.call();
+    }
+
+    @Benchmark
+    public Object getBookByISBNCached() throws Exception {
+        return getBookByISBNCached.call();
+    }
+
+    @Benchmark
+    public Object getBookByISBNConnectionPerCall() throws Exception {
+        return getBookByISBNConnectionPerCall.call();
+    }
+}
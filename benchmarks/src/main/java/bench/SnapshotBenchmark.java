@@ -0,0 +1,42 @@
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sorting the whole catalog into a new {@code CatalogSnapshot}, which happens on
+ * every snapshot refresh before the list views can be served from memory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"10000", "100000"})
+    public int books;
+
+    private Callable<Object> buildSnapshot;
+
+    @Setup
+    public void setUp() throws Exception {
+        buildSnapshot = Workloads.operation("buildSnapshot", books);
+    }
+
+    @Benchmark
+    public Object buildSnapshot() throws Exception {
+        return buildSnapshot.call();
+    }
+}
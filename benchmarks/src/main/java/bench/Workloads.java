@@ -0,0 +1,64 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * Looks up the workloads built by {@code BenchmarkFixtures}, which lives in the unnamed
+ * package with the application classes and can therefore only be reached by reflection.
+ * Reflection is used once per workload, during setup; the measured calls go straight
+ * through {@link Callable#call()}.
+ */
+final class Workloads {
+    private static final String FIXTURES = "BenchmarkFixtures";
+
+    private Workloads() {
+    }
+
+    /**
+     * Calls the factory method of {@code BenchmarkFixtures} with the given name and arguments.
+     *
+     * @param factory the name of the factory method
+     * @param args    its arguments
+     * @return what the factory method returned
+     * @throws Exception if the factory method failed
+     */
+    static Object create(String factory, Object... args) throws Exception {
+        for (Method method : Class.forName(FIXTURES).getMethods()) {
+            if (method.getName().equals(factory) && method.getParameterCount() == args.length) {
+                try {
+                    return method.invoke(null, args);
+                } catch (InvocationTargetException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No workload factory " + FIXTURES + "." + factory);
+    }
+
+    /**
+     * Creates a workload whose calls are the benchmark operations.
+     *
+     * @param factory the name of the factory method
+     * @param args    its arguments
+     * @return the workload
+     * @throws Exception if the factory method failed
+     */
+    @SuppressWarnings("unchecked")
+    static Callable<Object> operation(String factory, Object... args) throws Exception {
+        return (Callable<Object>) create(factory, args);
+    }
+
+    /**
+     * Releases a workload or database that holds resources.
+     *
+     * @param workload the workload, may be {@code null}
+     * @throws Exception if it could not be closed
+     */
+    static void close(Object workload) throws Exception {
+        if (workload instanceof AutoCloseable) {
+            ((AutoCloseable) workload).close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+
+/**
+ * Fills a database with a synthetic catalog for the load test.
+ * <p>
+ * The <strong>titles</strong>, <strong>authors</strong> and <strong>authorISBN</strong>
+ * tables are dropped and created again. There is one author for every four titles and
+ * each title is linked to two authors, so the join views see a realistic fan-out. Rows
+ * are inserted in batches with a commit per batch, and the secondary indexes are built
+ * after loading, which is much faster than maintaining them row by row. The same size
+ * always produces the same data.
+ * </p>
+ *
+ * <p>
+ * The statements work on MySQL and on H2 in MySQL mode. With MySQL, add
+ * {@code rewriteBatchedStatements=true} to the URL so that a batch is sent as multi-row
+ * inserts; ten million titles then load in minutes rather than hours.
+ * </p>
+ */
+final class CatalogSeeder {
+    private static final int BATCH_SIZE = 5_000;
+    private static final long PROGRESS_INTERVAL = 1_000_000;
+
+    private static final String[] SCHEMA = {
+            "DROP TABLE IF EXISTS authorISBN",
+            "DROP TABLE IF EXISTS titles",
+            "DROP TABLE IF EXISTS authors",
+            "CREATE TABLE authors (authorID INT NOT NULL AUTO_INCREMENT PRIMARY KEY,"
+                    + " firstName VARCHAR(30) NOT NULL, lastName VARCHAR(30) NOT NULL)",
+            "CREATE TABLE titles (isbn VARCHAR(20) NOT NULL PRIMARY KEY, title VARCHAR(100) NOT NULL,"
+                    + " editionNumber INT NOT NULL, copyright VARCHAR(4) NOT NULL)",
+            "CREATE TABLE authorISBN (authorID INT NOT NULL, isbn VARCHAR(20) NOT NULL, PRIMARY KEY (authorID, isbn))"
+    };
+
+    //the indexes of catalog-indexes.sql and author-dedupe.sql, plus the reverse side of authorISBN
+    private static final String[] INDEXES = {
+            "CREATE INDEX idx_titles_title ON titles (title)",
+            "CREATE INDEX idx_titles_copyright ON titles (copyright)",
+            "CREATE INDEX idx_titles_edition ON titles (editionNumber)",
+            "CREATE INDEX idx_authors_last_first ON authors (lastName, firstName)",
+            "CREATE UNIQUE INDEX ux_authors_first_last ON authors (firstName, lastName)",
+            "CREATE INDEX idx_authorisbn_isbn ON authorISBN (isbn)"
+    };
+
+    private static final String[] WORDS = {
+            "Java", "Effective", "Patterns", "Concurrency", "Practice", "Design", "Systems", "Data",
+            "Algorithms", "Networks", "Servlets", "Modern", "Guide", "Complete", "Introduction", "Advanced"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Joshua", "Brian", "Martin", "Kent", "Barbara", "Grace", "Donald", "Edsger", "Ada", "Niklaus"
+    };
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    CatalogSeeder(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Replaces the catalog with {@code titles} synthetic titles and their authors.
+     *
+     * @param titles the number of titles
+     * @throws SQLException if the database could not be written
+     */
+    void seed(long titles) throws SQLException {
+        long authors = Math.max(1, titles / 4);
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            execute(conn, SCHEMA);
+            conn.setAutoCommit(false);
+            insertAuthors(conn, authors);
+            insertTitles(conn, titles, authors);
+            conn.setAutoCommit(true);
+            System.out.println("Building indexes");
+            execute(conn, INDEXES);
+        }
+    }
+
+    private static void execute(Connection conn, String[] statements) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private static void insertAuthors(Connection conn, long authors) throws SQLException {
+        SplittableRandom random = new SplittableRandom(4);
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO authors (authorID, firstName, lastName) VALUES (?, ?, ?)")) {
+            for (long id = 1; id <= authors; id++) {
+                stmt.setLong(1, id);
+                stmt.setString(2, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+                stmt.setString(3, "Author" + id);
+                stmt.addBatch();
+                if (id % BATCH_SIZE == 0 || id == authors) {
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+            }
+        }
+        System.out.println("Inserted " + authors + " authors");
+    }
+
+    private static void insertTitles(Connection conn, long titles, long authors) throws SQLException {
+        SplittableRandom random = new SplittableRandom(42);
+        try (PreparedStatement titleStmt = conn.prepareStatement(
+                "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)");
+             PreparedStatement linkStmt = conn.prepareStatement(
+                     "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)")) {
+            for (long i = 0; i < titles; i++) {
+                String isbn = isbn(i);
+                titleStmt.setString(1, isbn);
+                titleStmt.setString(2, WORDS[random.nextInt(WORDS.length)] + " "
+                        + WORDS[random.nextInt(WORDS.length)] + " " + i);
+                titleStmt.setInt(3, 1 + random.nextInt(5));
+                titleStmt.setString(4, String.valueOf(1990 + random.nextInt(35)));
+                titleStmt.addBatch();
+
+                long first = i % authors + 1;
+                long second = (i * 7 + 3) % authors + 1;
+                linkStmt.setLong(1, first);
+                linkStmt.setString(2, isbn);
+                linkStmt.addBatch();
+                if (second != first) {
+                    linkStmt.setLong(1, second);
+                    linkStmt.setString(2, isbn);
+                    linkStmt.addBatch();
+                }
+
+                if ((i + 1) % BATCH_SIZE == 0 || i + 1 == titles) {
+                    titleStmt.executeBatch();
+                    linkStmt.executeBatch();
+                    conn.commit();
+                }
+                if ((i + 1) % PROGRESS_INTERVAL == 0) {
+                    System.out.println("Inserted " + (i + 1) + " titles");
+                }
+            }
+        }
+        System.out.println("Inserted " + titles + " titles");
+    }
+
+    private static String isbn(long i) {
+        return String.format("978%010d", i);
+    }
+}
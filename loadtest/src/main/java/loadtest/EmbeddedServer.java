@@ -0,0 +1,69 @@
+package loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ApplicationParameter;
+
+/**
+ * Runs the application WAR in an embedded Tomcat, as it runs when deployed.
+ * <p>
+ * The WAR is deployed as the root context with the JSP engine, so requests go through
+ * the same filters, servlets and JSPs as in production. Context parameters given here
+ * take precedence over the values in <em>web.xml</em>, which is how the load test points
+ * the application at its database and tries other settings.
+ * </p>
+ */
+final class EmbeddedServer implements AutoCloseable {
+    private final Tomcat tomcat;
+    private final int port;
+
+    /**
+     * Deploys the WAR and starts the server.
+     *
+     * @param war        the application WAR
+     * @param port       the HTTP port; 0 picks a free one
+     * @param parameters context parameters that override those in <em>web.xml</em>
+     * @throws IOException        if the working directory could not be created
+     * @throws LifecycleException if the server or the application failed to start
+     */
+    EmbeddedServer(Path war, int port, Map<String, String> parameters) throws IOException, LifecycleException {
+        Path baseDir = Files.createTempDirectory("loadtest-tomcat");
+        Files.createDirectories(baseDir.resolve("webapps"));
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(port);
+        tomcat.getConnector();
+
+        Context context = tomcat.addWebapp("", war.toAbsolutePath().toString());
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            ApplicationParameter override = new ApplicationParameter();
+            override.setName(parameter.getKey());
+            override.setValue(parameter.getValue());
+            override.setOverride(false);
+            context.addApplicationParameter(override);
+        }
+        tomcat.start();
+        this.port = tomcat.getConnector().getLocalPort();
+    }
+
+    /**
+     * Returns the URI of the application root.
+     *
+     * @return the base URI, ending in a slash
+     */
+    URI getBaseUri() {
+        return URI.create("http://127.0.0.1:" + port + "/");
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
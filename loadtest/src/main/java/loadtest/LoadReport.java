@@ -0,0 +1,207 @@
+package loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The results of one load step: for every operation, how many requests succeeded,
+ * failed or were never sent, the throughput, and the latency percentiles.
+ * <p>
+ * Latencies are measured from the time a request was scheduled to be sent, not from
+ * the time it was actually sent, so time a request spent waiting behind a stalled
+ * client or server is counted. Every row has two sets of percentiles: one of the
+ * successful requests, and one of every scheduled request, in which a failed request
+ * counts with its time to the failure and a dropped request with its time to the drop.
+ * A server that sheds load by failing fast or by falling so far behind that requests are
+ * dropped looks better in the first set than it is; the second set does not hide them.
+ * Results may be recorded from many threads.
+ * </p>
+ */
+final class LoadReport {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final double targetRate;
+    private final long durationNanos;
+    private final Map<RequestMix.Operation, Counts> counts = new EnumMap<>(RequestMix.Operation.class);
+    private final Counts total = new Counts();
+    private long unfinished;
+
+    /**
+     * Constructs an empty report.
+     *
+     * @param targetRate    the scheduled requests per second
+     * @param durationNanos the length of the measured window
+     */
+    LoadReport(double targetRate, long durationNanos) {
+        this.targetRate = targetRate;
+        this.durationNanos = durationNanos;
+        for (RequestMix.Operation operation : RequestMix.Operation.values()) {
+            counts.put(operation, new Counts());
+        }
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param operation    the operation
+     * @param latencyNanos the time from the scheduled send to the response
+     * @param ok           whether the request succeeded
+     */
+    void record(RequestMix.Operation operation, long latencyNanos, boolean ok) {
+        counts.get(operation).record(latencyNanos, ok);
+        total.record(latencyNanos, ok);
+    }
+
+    /**
+     * Records a request that was not sent because too many were already in flight.
+     *
+     * @param operation    the operation
+     * @param latencyNanos the time from the scheduled send to the drop
+     */
+    void overflow(RequestMix.Operation operation, long latencyNanos) {
+        counts.get(operation).overflow(latencyNanos);
+        total.overflow(latencyNanos);
+    }
+
+    /**
+     * Sets the number of requests still unanswered when the step gave up waiting.
+     *
+     * @param unfinished the number of requests
+     */
+    void setUnfinished(long unfinished) {
+        this.unfinished = unfinished;
+    }
+
+    /**
+     * Returns the report as a table.
+     *
+     * @return the lines of the table
+     */
+    String format() {
+        StringBuilder out = new StringBuilder();
+        double seconds = durationNanos / 1e9;
+        out.append(String.format(Locale.ROOT, "target %.1f req/s for %.0f s: achieved %.1f req/s, %d unfinished%n",
+                targetRate, seconds, total.ok.sum() / seconds, unfinished));
+        out.append(String.format(Locale.ROOT, "%-12s %9s %7s %8s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "ok", "errors", "dropped", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<RequestMix.Operation, Counts> entry : counts.entrySet()) {
+            if (entry.getValue().sent() > 0) {
+                formatRow(out, entry.getKey().getLabel(), entry.getValue(), seconds);
+            }
+        }
+        formatRow(out, "all", total, seconds);
+        if (total.errors.sum() + total.overflows.sum() > 0) {
+            out.append(String.format(Locale.ROOT, "%-12s %9s %9s %9s %9s %9s  (counting errors and drops)%n",
+                    "operation", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            for (Map.Entry<RequestMix.Operation, Counts> entry : counts.entrySet()) {
+                if (entry.getValue().sent() > 0) {
+                    out.append(String.format(Locale.ROOT, "%-12s", entry.getKey().getLabel()));
+                    formatLatencies(out, entry.getValue().scheduledLatencies);
+                }
+            }
+            out.append(String.format(Locale.ROOT, "%-12s", "all"));
+            formatLatencies(out, total.scheduledLatencies);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends the report as a JSON object.
+     *
+     * @param json the buffer to append to
+     */
+    void appendJson(StringBuilder json) {
+        double seconds = durationNanos / 1e9;
+        json.append(String.format(Locale.ROOT, "{\"targetRate\": %.3f, \"durationSeconds\": %.3f, \"unfinished\": %d, "
+                + "\"operations\": {", targetRate, seconds, unfinished));
+        boolean first = true;
+        for (Map.Entry<RequestMix.Operation, Counts> entry : counts.entrySet()) {
+            if (entry.getValue().sent() > 0) {
+                json.append(first ? "" : ", ");
+                appendJson(json, entry.getKey().getLabel(), entry.getValue(), seconds);
+                first = false;
+            }
+        }
+        json.append(first ? "" : ", ");
+        appendJson(json, "all", total, seconds);
+        json.append("}}");
+    }
+
+    private static void formatRow(StringBuilder out, String label, Counts row, double seconds) {
+        out.append(String.format(Locale.ROOT, "%-12s %9d %7d %8d %9.1f", label, row.ok.sum(), row.errors.sum(),
+                row.overflows.sum(), row.ok.sum() / seconds));
+        formatLatencies(out, row.latencies);
+    }
+
+    private static void formatLatencies(StringBuilder out, Histogram latencies) {
+        for (double percentile : PERCENTILES) {
+            out.append(String.format(Locale.ROOT, " %9.2f", millis(latencies.getValueAtPercentile(percentile))));
+        }
+        out.append(String.format(Locale.ROOT, " %9.2f%n", millis(latencies.getMaxValue())));
+    }
+
+    private static void appendJson(StringBuilder json, String label, Counts row, double seconds) {
+        json.append(String.format(Locale.ROOT, "\"%s\": {\"ok\": %d, \"errors\": %d, \"dropped\": %d, \"throughput\": %.3f",
+                label, row.ok.sum(), row.errors.sum(), row.overflows.sum(), row.ok.sum() / seconds));
+        json.append(", ");
+        appendLatencies(json, row.latencies);
+        json.append(", \"scheduled\": {");
+        appendLatencies(json, row.scheduledLatencies);
+        json.append("}}");
+    }
+
+    private static void appendLatencies(StringBuilder json, Histogram latencies) {
+        for (double percentile : PERCENTILES) {
+            json.append(String.format(Locale.ROOT, "\"p%sMs\": %.3f, ",
+                    String.valueOf(percentile).replace(".0", "").replace(".", "_"),
+                    millis(latencies.getValueAtPercentile(percentile))));
+        }
+        json.append(String.format(Locale.ROOT, "\"maxMs\": %.3f", millis(latencies.getMaxValue())));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * The counters and latencies of one operation. {@code latencies} holds the successful
+     * requests, {@code scheduledLatencies} every scheduled request.
+     */
+    private static final class Counts {
+        private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        private final Histogram scheduledLatencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder overflows = new LongAdder();
+
+        private void record(long latencyNanos, boolean succeeded) {
+            long micros = micros(latencyNanos);
+            if (succeeded) {
+                ok.increment();
+                latencies.recordValue(micros);
+            } else {
+                errors.increment();
+            }
+            scheduledLatencies.recordValue(micros);
+        }
+
+        private void overflow(long latencyNanos) {
+            overflows.increment();
+            scheduledLatencies.recordValue(micros(latencyNanos));
+        }
+
+        private static long micros(long latencyNanos) {
+            return Math.max(0, Math.min(MAX_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        }
+
+        private long sent() {
+            return ok.sum() + errors.sum() + overflows.sum();
+        }
+    }
+}
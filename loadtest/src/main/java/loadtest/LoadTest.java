@@ -0,0 +1,201 @@
+package loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Command-line entry point of the load test.
+ * <p>
+ * Seeds the database if asked to, starts the application in an embedded Tomcat (unless
+ * {@code --url} names a server that is already running), and then runs one step per
+ * arrival rate, printing a table for each. Running several increasing rates shows where
+ * throughput stops following the offered load and latency starts to climb.
+ * </p>
+ */
+public final class LoadTest {
+    private static final String DEFAULT_DB_URL = "jdbc:mysql://127.0.0.1:3306/books_loadtest"
+            + "?createDatabaseIfNotExist=true&useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC"
+            + "&rewriteBatchedStatements=true&useCursorFetch=true&useServerPrepStmts=true&cacheResultSetMetadata=true";
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: java -jar loadtest.jar [options]",
+            "  --war <file>            application WAR (default ../target/ServletDemo-1.0-SNAPSHOT.war)",
+            "  --port <n>              HTTP port of the embedded server, 0 for any free port (default 0)",
+            "  --url <uri>             test a running server instead of starting one",
+            "  --db-url <jdbc url>     database to seed and serve from (default a local MySQL books_loadtest)",
+            "  --db-user <name>        database user (default root)",
+            "  --db-password <pw>      database password (default empty)",
+            "  --seed-titles <n>       recreate the tables with n synthetic titles; 0 keeps the data (default 0)",
+            "  --mix <weights>         request mix (default books=45,authors=45,addBook=5,addAuthor=5)",
+            "  --rates <r1,r2,...>     arrival rates in requests per second, one step each (default 100,200,400)",
+            "  --warmup <seconds>      unmeasured time at the start of each step (default 10)",
+            "  --duration <seconds>    measured time of each step (default 60)",
+            "  --arrivals <kind>       poisson or constant (default poisson)",
+            "  --max-in-flight <n>     outstanding requests before new ones are dropped (default 10000)",
+            "  --param <name=value>    context parameter for the embedded server, may be repeated",
+            "  --report <file>         also write the results as JSON",
+            "  --help                  show this message");
+
+    private LoadTest() {
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the command-line options; see {@code --help}
+     * @throws Exception if seeding, the server or the report failed
+     */
+    public static void main(String[] args) throws Exception {
+        Path war = Path.of("../target/ServletDemo-1.0-SNAPSHOT.war");
+        int port = 0;
+        URI url = null;
+        String dbUrl = DEFAULT_DB_URL;
+        String dbUser = "root";
+        String dbPassword = "";
+        long seedTitles = 0;
+        String mixSpec = "books=45,authors=45,addBook=5,addAuthor=5";
+        List<Double> rates = List.of(100.0, 200.0, 400.0);
+        Duration warmup = Duration.ofSeconds(10);
+        Duration duration = Duration.ofSeconds(60);
+        boolean poisson = true;
+        int maxInFlight = 10_000;
+        Map<String, String> parameters = new LinkedHashMap<>();
+        Path reportFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help")) {
+                System.out.println(USAGE);
+                return;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + option + System.lineSeparator() + USAGE);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--war" -> war = Path.of(value);
+                case "--port" -> port = Integer.parseInt(value);
+                case "--url" -> url = URI.create(value.endsWith("/") ? value : value + "/");
+                case "--db-url" -> dbUrl = value;
+                case "--db-user" -> dbUser = value;
+                case "--db-password" -> dbPassword = value;
+                case "--seed-titles" -> seedTitles = Long.parseLong(value);
+                case "--mix" -> mixSpec = value;
+                case "--rates" -> rates = parseRates(value);
+                case "--warmup" -> warmup = Duration.ofSeconds(Long.parseLong(value));
+                case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                case "--arrivals" -> poisson = parseArrivals(value);
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(value);
+                case "--param" -> {
+                    String[] keyValue = value.split("=", 2);
+                    if (keyValue.length != 2) {
+                        throw new IllegalArgumentException("--param expects name=value: " + value);
+                    }
+                    parameters.put(keyValue[0], keyValue[1]);
+                }
+                case "--report" -> reportFile = Path.of(value);
+                default -> throw new IllegalArgumentException("unknown option " + option + System.lineSeparator() + USAGE);
+            }
+        }
+
+        //six characters, so that the ISBNs of added books fit the titles.isbn column
+        String runId = Long.toString(ThreadLocalRandom.current().nextLong(36L * 36 * 36 * 36 * 36, 36L * 36 * 36 * 36 * 36 * 36), 36);
+        RequestMix mix = RequestMix.parse(mixSpec, runId);
+
+        if (seedTitles > 0) {
+            System.out.printf("seeding %,d titles%n", seedTitles);
+            long seedStart = System.nanoTime();
+            new CatalogSeeder(dbUrl, dbUser, dbPassword).seed(seedTitles);
+            System.out.printf("seeded in %.1f s%n", (System.nanoTime() - seedStart) / 1e9);
+        }
+
+        EmbeddedServer server = null;
+        try {
+            if (url == null) {
+                Map<String, String> serverParameters = new LinkedHashMap<>();
+                serverParameters.put("db.url", dbUrl);
+                serverParameters.put("db.user", dbUser);
+                serverParameters.put("db.password", dbPassword);
+                serverParameters.putAll(parameters);
+                server = new EmbeddedServer(war, port, serverParameters);
+                url = server.getBaseUri();
+                System.out.println("serving " + war + " at " + url);
+            }
+            List<LoadReport> reports = runSteps(url, mix, poisson, maxInFlight, rates, warmup, duration);
+            if (reportFile != null) {
+                writeJson(reportFile, runId, reports);
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static List<LoadReport> runSteps(URI url, RequestMix mix, boolean poisson, int maxInFlight,
+                                             List<Double> rates, Duration warmup, Duration duration) {
+        List<LoadReport> reports = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(executor)
+                    .build();
+            OpenLoadGenerator generator = new OpenLoadGenerator(client, url, mix, poisson, maxInFlight);
+            for (double rate : rates) {
+                System.out.println();
+                LoadReport report = generator.run(rate, warmup, duration);
+                System.out.print(report.format());
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    private static List<Double> parseRates(String value) {
+        List<Double> rates = new ArrayList<>();
+        for (String rate : value.split(",")) {
+            double parsed = Double.parseDouble(rate.trim());
+            if (parsed <= 0) {
+                throw new IllegalArgumentException("rates must be positive: " + value);
+            }
+            rates.add(parsed);
+        }
+        return rates;
+    }
+
+    private static boolean parseArrivals(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "poisson":
+                return true;
+            case "constant":
+                return false;
+            default:
+                throw new IllegalArgumentException("--arrivals must be poisson or constant: " + value);
+        }
+    }
+
+    private static void writeJson(Path file, String runId, List<LoadReport> reports) throws IOException {
+        StringBuilder json = new StringBuilder("{\"run\": \"").append(runId).append("\", \"steps\": [");
+        for (int i = 0; i < reports.size(); i++) {
+            json.append(i == 0 ? "" : ", ");
+            reports.get(i).appendJson(json);
+        }
+        json.append("]}").append(System.lineSeparator());
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate, whether or not earlier requests have been
+ * answered (an open workload model).
+ * <p>
+ * A closed-loop client that waits for each response before sending the next request
+ * slows down exactly when the server does, and never measures the requests it failed to
+ * send in the meantime (coordinated omission). Here every request has a scheduled send
+ * time fixed in advance, either evenly spaced or with exponentially distributed gaps
+ * (Poisson arrivals), and its latency is measured from that time. If the generator falls
+ * behind, the late requests are sent at once and their lateness is part of their
+ * latency.
+ * </p>
+ *
+ * <p>
+ * Requests are sent asynchronously. To protect the client itself, at most
+ * {@code maxInFlight} requests are outstanding; a request due while that many are in
+ * flight is not sent and is counted as dropped. Dropped and failed requests still have a
+ * latency, from their scheduled send time to the drop or the failure, so that leaving
+ * them out does not make a saturated server look faster than it is.
+ * </p>
+ */
+final class OpenLoadGenerator {
+    private static final long DRAIN_TIMEOUT_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private final HttpClient client;
+    private final URI base;
+    private final RequestMix mix;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final SplittableRandom random = new SplittableRandom();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long sequence;
+
+    /**
+     * Constructs a generator.
+     *
+     * @param client      the HTTP client
+     * @param base        the application root, ending in a slash
+     * @param mix         the kinds of request to send
+     * @param poisson     true for exponentially distributed gaps between requests, false for even gaps
+     * @param maxInFlight the largest number of outstanding requests
+     */
+    OpenLoadGenerator(HttpClient client, URI base, RequestMix mix, boolean poisson, int maxInFlight) {
+        this.client = client;
+        this.base = base;
+        this.mix = mix;
+        this.poisson = poisson;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sends requests at the given rate for the warm-up and then for the measured
+     * duration, and waits for the outstanding responses. Only requests scheduled after
+     * the warm-up are reported.
+     *
+     * @param rate     the requests per second
+     * @param warmup   how long to send requests before measuring
+     * @param duration how long to measure
+     * @return the results of the measured window
+     */
+    LoadReport run(double rate, Duration warmup, Duration duration) {
+        LoadReport report = new LoadReport(rate, duration.toNanos());
+        double meanGapNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+
+        double offset = 0;
+        while (true) {
+            offset += poisson ? -Math.log(1.0 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+            long scheduled = start + (long) offset;
+            if (scheduled - end >= 0) {
+                break;
+            }
+            waitUntil(scheduled);
+            RequestMix.Operation operation = mix.pick(random);
+            boolean measured = scheduled - measureStart >= 0;
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    report.overflow(operation, System.nanoTime() - scheduled);
+                }
+                continue;
+            }
+            send(operation, scheduled, measured ? report : null);
+        }
+
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(10_000_000L);
+        }
+        report.setUnfinished(inFlight.get());
+        return report;
+    }
+
+    private void send(RequestMix.Operation operation, long scheduled, LoadReport report) {
+        HttpRequest request = mix.request(operation, base, sequence++, random);
+        inFlight.incrementAndGet();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long latency = System.nanoTime() - scheduled;
+            inFlight.decrementAndGet();
+            if (report != null) {
+                report.record(operation, latency, error == null && RequestMix.succeeded(operation, response));
+            }
+        });
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The kinds of request the load test sends and how often each is sent.
+ * <p>
+ * A mix is written as weights, such as {@code books=45,authors=45,addBook=5,addAuthor=5};
+ * the weights need not add up to 100. List views use a random sort order. Every added
+ * book and author gets a name that is unique to the run, so the writes are real inserts
+ * rather than rejected duplicates.
+ * </p>
+ */
+final class RequestMix {
+    /**
+     * A kind of request.
+     */
+    enum Operation {
+        BOOKS("books", "GET books"),
+        AUTHORS("authors", "GET authors"),
+        ADD_BOOK("addBook", "POST book"),
+        ADD_AUTHOR("addAuthor", "POST author");
+
+        private final String key;
+        private final String label;
+
+        Operation(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+
+        String getLabel() {
+            return label;
+        }
+    }
+
+    private static final String[] BOOK_SORTS = {"title", "isbn", "copyright", "edition"};
+    private static final String[] AUTHOR_SORTS = {"lastname", "firstname", "id"};
+
+    private final Operation[] operations;
+    private final double[] cumulativeWeights;
+    private final String runId;
+
+    private RequestMix(Map<Operation, Double> weights, String runId) {
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new double[operations.length];
+        double total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        for (int i = 0; i < operations.length; i++) {
+            cumulativeWeights[i] /= total;
+        }
+        this.runId = runId;
+    }
+
+    /**
+     * Parses a mix such as {@code books=45,authors=45,addBook=5,addAuthor=5}.
+     *
+     * @param spec  the weights by operation
+     * @param runId a short tag made part of every inserted name, unique to the run
+     * @return the mix
+     * @throws IllegalArgumentException if an operation is unknown or no weight is positive
+     */
+    static RequestMix parse(String spec, String runId) {
+        Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.trim().split("=", 2);
+            Operation operation = null;
+            for (Operation candidate : Operation.values()) {
+                if (candidate.key.equals(keyValue[0].trim())) {
+                    operation = candidate;
+                }
+            }
+            if (operation == null || keyValue.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            double weight = Double.parseDouble(keyValue[1].trim());
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operation with a positive weight: " + spec);
+        }
+        return new RequestMix(weights, runId);
+    }
+
+    /**
+     * Picks the operation of the next request.
+     *
+     * @param random the random source
+     * @return the operation
+     */
+    Operation pick(SplittableRandom random) {
+        double point = random.nextDouble();
+        for (int i = 0; i < operations.length - 1; i++) {
+            if (point < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * Builds the request for an operation.
+     *
+     * @param operation the operation
+     * @param base      the application root, ending in a slash
+     * @param sequence  a number unique to this request within the run
+     * @param random    the random source
+     * @return the request
+     */
+    HttpRequest request(Operation operation, URI base, long sequence, SplittableRandom random) {
+        switch (operation) {
+            case BOOKS:
+                return HttpRequest.newBuilder(base.resolve("LibraryData?view=books&sort="
+                        + BOOK_SORTS[random.nextInt(BOOK_SORTS.length)])).GET().build();
+            case AUTHORS:
+                return HttpRequest.newBuilder(base.resolve("LibraryData?view=authors&sort="
+                        + AUTHOR_SORTS[random.nextInt(AUTHOR_SORTS.length)])).GET().build();
+            case ADD_BOOK:
+                return post(base, "type=book"
+                        + "&isbn=" + String.format("L%s%013d", runId, sequence)
+                        + "&title=" + encode("Load Test Title " + sequence)
+                        + "&editionNumber=1&copyright=2024"
+                        + "&author=" + encode("Load " + runId + "Author" + sequence / 4));
+            case ADD_AUTHOR:
+                return post(base, "type=author&author=" + encode("Load " + runId + "Writer" + sequence));
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    /**
+     * Tells whether a response means the request succeeded. A successful form post is
+     * answered with a redirect to a page that does not report a failure.
+     *
+     * @param operation the operation
+     * @param response  the response
+     * @return true if the request succeeded
+     */
+    static boolean succeeded(Operation operation, HttpResponse<?> response) {
+        int status = response.statusCode();
+        if (operation == Operation.BOOKS || operation == Operation.AUTHORS) {
+            return status == 200 || status == 304;
+        }
+        String location = response.headers().firstValue("Location").orElse("");
+        return (status == 302 || status == 303) && !location.contains("failed") && !location.contains("Missing")
+                && !location.contains("Invalid");
+    }
+
+    private static HttpRequest post(URI base, String form) {
+        return HttpRequest.newBuilder(base.resolve("LibraryData"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -1,18 +1,30 @@
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * The {@code Author} class represents an author in the books database.
  * It stores information such as the author's ID, first name, last name,
- * and a list of books they have authored.
+ * and the set of books they have authored.
  *
  * This class also provides methods to manage the relationship between authors and books.
+ * Two authors are equal when they have the same author ID. An author whose ID is still 0
+ * (not yet inserted) is only equal to itself. Books are kept in an insertion-ordered hash
+ * set, so linking an author and a book takes constant time.
+ *
+ * Setting the ID of a linked author, as the stores do after an insert, marks the author
+ * sets of its books for rehashing on their next use, so the graph stays consistent. An
+ * author must not change its ID while it is held in any other hash-based collection.
  */
 public class Author {
     private int authorID;
     private String firstName;
     private String lastName;
-    private List<Book> bookList;
+    private Set<Book> books;
+    private boolean booksStale;
 
     /**
      * Constructs an {@code Author} object with the given details.
@@ -25,7 +37,7 @@ public class Author {
         this.authorID = authorID;
         this.firstName = firstName;
         this.lastName = lastName;
-        this.bookList = new ArrayList<>();
+        this.books = new LinkedHashSet<>();
     }
 
     /**
@@ -43,7 +55,13 @@ public class Author {
      * @param authorID the author ID to set
      */
     public void setAuthorID(int authorID) {
+        if (this.authorID == authorID) {
+            return;
+        }
         this.authorID = authorID;
+        for (Book book : linkedBooks()) {
+            book.authorsChanged();
+        }
     }
 
     /**
@@ -92,39 +110,110 @@ public class Author {
     }
 
     /**
-     * Returns the list of books associated with the author.
+     * Returns the books associated with the author, in the order they were added.
+     *
+     * @return an unmodifiable view of the books
+     */
+    public Set<Book> getBooks() {
+        return Collections.unmodifiableSet(linkedBooks());
+    }
+
+    /**
+     * Replaces the books of the author. Duplicates are dropped and the books' own
+     * author sets are left unchanged.
      *
-     * @return the list of books
+     * @param books the books to set
      */
+    public void setBooks(Collection<Book> books) {
+        this.books = new LinkedHashSet<>(books);
+        booksStale = false;
+    }
+
+    /**
+     * Returns the books associated with the author as a list.
+     *
+     * @return a copy of the books, in the order they were added
+     * @deprecated use {@link #getBooks()}; changes to the returned list no longer
+     *             affect the author
+     */
+    @Deprecated
     public List<Book> getBookList() {
-        return bookList;
+        return new ArrayList<>(linkedBooks());
     }
 
     /**
      * Sets the book list.
      *
      * @param books the list of books
+     * @deprecated use {@link #setBooks(Collection)}
      */
+    @Deprecated
     public void setBookList(List<Book> books) {
-        this.bookList = books;
+        setBooks(books);
     }
 
 
     /**
-     * Adds a book to the author's list if it is not already present.
+     * Adds a book to the author if it is not already present.
      * Also ensures bidirectional consistency by adding the author to the book.
      *
      * @param book the book to add
      */
     public void addBook(Book book) {
-        if (!bookList.contains(book)) {
-            bookList.add(book);
-            if (!book.getAuthorList().contains(this)) {
-                book.addAuthor(this);
-            }
+        if (linkedBooks().add(book)) {
+            book.addAuthor(this);
         }
     }
 
+    /**
+     * Marks the book set for rehashing after a linked book's ISBN changed.
+     */
+    void booksChanged() {
+        booksStale = true;
+    }
+
+    /**
+     * Returns the book set, rehashed in place first if a book's ISBN changed since it was
+     * last used, so that views returned earlier stay valid.
+     */
+    private Set<Book> linkedBooks() {
+        if (booksStale) {
+            List<Book> linked = new ArrayList<>(books);
+            books.clear();
+            books.addAll(linked);
+            booksStale = false;
+        }
+        return books;
+    }
+
+    /**
+     * Returns whether the given object is an author with the same author ID.
+     *
+     * @param o the object to compare with
+     * @return true if both authors have the same non-zero ID, or are the same object
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Author)) {
+            return false;
+        }
+        Author other = (Author) o;
+        return authorID != 0 && authorID == other.authorID;
+    }
+
+    /**
+     * Returns a hash code based on the author ID.
+     *
+     * @return the hash code of the author
+     */
+    @Override
+    public int hashCode() {
+        return (authorID != 0) ? Integer.hashCode(authorID) : System.identityHashCode(this);
+    }
+
     /**
      * Returns a string representation of the author, including the list of books.
      *
@@ -136,9 +225,9 @@ public class Author {
         sb.append("Author ID: ").append(authorID)
                 .append(", Name: ").append(firstName).append(" ").append(lastName);
 
-        if (!bookList.isEmpty()) {
+        if (!books.isEmpty()) {
             sb.append("\nBooks: ");
-            for (Book book : bookList) {
+            for (Book book : linkedBooks()) {
                 sb.append(book.getTitle()).append(" (").append(book.getIsbn()).append("), ");
             }
             sb.setLength(sb.length() - 2);
@@ -0,0 +1,95 @@
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory map from normalized author names to authorIDs, used to find an existing
+ * author without a database round trip.
+ * <p>
+ * Names are compared the way the default MySQL collation (utf8mb4_0900_ai_ci) compares
+ * them after {@link #clean(String)}: ignoring case and accents. "Jos&eacute;  Garc&iacute;a"
+ * and "jose garcia" have the same key. If several authors share a key, the lowest
+ * authorID wins, which matches the row the de-duplication migration keeps.
+ * </p>
+ *
+ * <p>
+ * The index is only a shortcut. A name that is not in it may still exist in the database
+ * (the index starts empty and is filled as authors are read and written), so a miss must
+ * be confirmed against the database, whose unique index on the name is the final word.
+ * The index is safe for concurrent use.
+ * </p>
+ */
+public class AuthorNameIndex {
+    private final ConcurrentHashMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+    //the key each author is currently indexed under, so a renamed author loses its old key
+    private final ConcurrentHashMap<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the authorID indexed for the given name.
+     *
+     * @param firstName the first name
+     * @param lastName  the last name
+     * @return the authorID, or {@code null} if the name is not indexed
+     */
+    public Integer get(String firstName, String lastName) {
+        return idsByName.get(key(firstName, lastName));
+    }
+
+    /**
+     * Indexes a saved author under its current name, replacing the entry for its old
+     * name if it was renamed. Authors without an authorID are ignored.
+     *
+     * @param author the author to index
+     */
+    public void put(Author author) {
+        int authorID = author.getAuthorID();
+        if (authorID == 0) {
+            return;
+        }
+        String key = key(author.getFirstName(), author.getLastName());
+        String previous = namesById.put(authorID, key);
+        if (previous != null && !previous.equals(key)) {
+            idsByName.remove(previous, authorID);
+        }
+        idsByName.merge(key, authorID, Math::min);
+    }
+
+    /**
+     * Returns the number of indexed names.
+     *
+     * @return the number of names
+     */
+    public int size() {
+        return idsByName.size();
+    }
+
+    /**
+     * Returns the key a name is indexed under: both parts cleaned, folded to lower case
+     * and stripped of accents.
+     *
+     * @param firstName the first name
+     * @param lastName  the last name
+     * @return the normalized name
+     */
+    public static String key(String firstName, String lastName) {
+        return fold(clean(firstName)) + '\u0000' + fold(clean(lastName));
+    }
+
+    /**
+     * Trims a name part and collapses runs of whitespace inside it to a single space.
+     * Names are stored cleaned, so that the unique index in the database sees the same
+     * name the same way.
+     *
+     * @param name the first or last name, may be {@code null}
+     * @return the cleaned name; empty if {@code name} is {@code null}
+     */
+    public static String clean(String name) {
+        return name == null ? "" : name.trim().replaceAll("\\s+", " ");
+    }
+
+    private static String fold(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+}
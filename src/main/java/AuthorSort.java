@@ -0,0 +1,104 @@
+import java.util.Locale;
+
+/**
+ * The orders in which {@link BookDatabaseManager} can list authors.
+ * <p>
+ * As with {@link BookSort}, each order ends in the primary key so that authors who
+ * share a name still have a stable position, and sorting happens in the database on
+ * indexed, collation-aware columns.
+ * </p>
+ */
+public enum AuthorSort {
+    ID("authorID"),
+    LAST_NAME("lastName", "firstName", "authorID"),
+    FIRST_NAME("firstName", "lastName", "authorID");
+
+    private final String[] columns;
+
+    AuthorSort(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the columns of the <strong>authors</strong> table this order sorts by.
+     *
+     * @return the sort columns, most significant first
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the value of the <code>sort</code> request parameter that selects this order.
+     *
+     * @return the request parameter value, e.g. <code>lastname</code>
+     */
+    public String getParameter() {
+        return name().replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the sort key of an author, one value per sort column.
+     *
+     * @param author the author to take the key from
+     * @return the values of the sort columns for the author
+     */
+    public Object[] keyOf(Author author) {
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case "lastName":
+                    key[i] = author.getLastName();
+                    break;
+                case "firstName":
+                    key[i] = author.getFirstName();
+                    break;
+                default:
+                    key[i] = author.getAuthorID();
+                    break;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Converts the key values stored in a page token back to the types of the sort columns.
+     *
+     * @param values the key values as strings, one per sort column
+     * @return the typed key values
+     * @throws IllegalArgumentException if a value does not fit its column
+     */
+    public Object[] parseKey(String[] values) {
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals("authorID")) {
+                try {
+                    key[i] = Integer.valueOf(values[i]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed page token", e);
+                }
+            } else {
+                key[i] = values[i];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the order selected by a <code>sort</code> request parameter.
+     *
+     * @param parameter the request parameter value, e.g. <code>lastName</code>
+     * @param defaultSort the order to use if the parameter is missing or unknown
+     * @return the matching order, or <code>defaultSort</code>
+     */
+    public static AuthorSort fromParameter(String parameter, AuthorSort defaultSort) {
+        if (parameter != null) {
+            for (AuthorSort sort : values()) {
+                if (sort.getParameter().equalsIgnoreCase(parameter.trim())) {
+                    return sort;
+                }
+            }
+        }
+        return defaultSort;
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A compact in-memory prefix index that suggests completions for a partially typed
+ * author name or book title.
+ * <p>
+ * Every value is stored under one key per word it contains, so "blo" suggests
+ * "Joshua Bloch" as well as "Bloch Family". Only the first {@value #MAX_KEYS_PER_VALUE}
+ * words of a value get a key, and a key holds at most {@value #MAX_WORDS_PER_KEY} words,
+ * so a long title costs a bounded number of short keys instead of every suffix of
+ * itself. Keys are folded like {@link SearchIndex} tokens (lower case, no accents,
+ * punctuation ignored). All keys live in one sorted {@code String[]}. A lookup
+ * binary-searches for the prefix and reads forward, so it allocates little and does not
+ * depend on the number of values.
+ * </p>
+ *
+ * <p>
+ * Values added after the array was built go into a small concurrent sorted delta, which
+ * lookups merge with the array. Once the delta grows past an eighth of the array, it is
+ * merged into a new array. Readers never lock: the array and its delta are published
+ * together as one {@code State}. The array of a {@code State} never changes; its delta
+ * is a concurrent set that only grows, so a lookup sees every key of the array and the
+ * keys added to the delta so far, and never a delta that was already merged into
+ * another array.
+ * </p>
+ */
+public class AutocompleteIndex {
+    //separates the folded key from the value it completes to; sorts below every other character
+    private static final char SEPARATOR = '\u0000';
+    private static final int MIN_DELTA_BEFORE_MERGE = 1024;
+    private static final int MAX_KEYS_PER_VALUE = 6;
+    private static final int MAX_WORDS_PER_KEY = 4;
+
+    private volatile State state = new State(new String[0]);
+
+    /**
+     * Replaces the contents of the index with the given values.
+     *
+     * @param values the names or titles to suggest
+     */
+    public synchronized void rebuild(Collection<String> values) {
+        List<String> keys = new ArrayList<>();
+        for (String value : values) {
+            addKeys(keys, value);
+        }
+        String[] sorted = keys.toArray(new String[0]);
+        Arrays.sort(sorted);
+        state = new State(sorted);
+    }
+
+    /**
+     * Adds a value so it is suggested from now on. Adding a value that is already indexed
+     * has no visible effect.
+     *
+     * @param value the name or title to add
+     */
+    public synchronized void add(String value) {
+        List<String> keys = new ArrayList<>();
+        addKeys(keys, value);
+        State current = state;
+        current.delta.addAll(keys);
+        if (current.delta.size() > Math.max(MIN_DELTA_BEFORE_MERGE, current.sorted.length / 8)) {
+            state = new State(merge(current.sorted, current.delta));
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} distinct values that have a word starting with the
+     * given prefix, in alphabetical order of the matching word. Only the first words of a
+     * value are matched, and only the first {@value #MAX_WORDS_PER_KEY} words of the
+     * prefix are compared.
+     *
+     * @param prefix the text typed so far
+     * @param limit  the maximum number of suggestions
+     * @return the suggestions; empty if the prefix contains no letters or digits
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> words = SearchIndex.tokenize(prefix);
+        String folded = String.join(" ", words.subList(0, Math.min(words.size(), MAX_WORDS_PER_KEY)));
+        if (folded.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        State current = state;
+        String[] sorted = current.sorted;
+        int i = lowerBound(sorted, folded);
+        Iterator<String> delta = current.delta.tailSet(folded).iterator();
+        String fromDelta = next(delta, folded);
+
+        Set<String> suggestions = new LinkedHashSet<>();
+        while (suggestions.size() < limit) {
+            String fromArray = (i < sorted.length && sorted[i].startsWith(folded)) ? sorted[i] : null;
+            String key;
+            if (fromArray == null && fromDelta == null) {
+                break;
+            } else if (fromDelta == null || (fromArray != null && fromArray.compareTo(fromDelta) <= 0)) {
+                key = fromArray;
+                i++;
+            } else {
+                key = fromDelta;
+                fromDelta = next(delta, folded);
+            }
+            suggestions.add(key.substring(key.indexOf(SEPARATOR) + 1));
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    /**
+     * Returns the number of keys in the index, including the unmerged delta.
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        State current = state;
+        return current.sorted.length + current.delta.size();
+    }
+
+    private static void addKeys(List<String> keys, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        String display = value.trim();
+        List<String> tokens = SearchIndex.tokenize(display);
+        for (int i = 0; i < Math.min(tokens.size(), MAX_KEYS_PER_VALUE); i++) {
+            int end = Math.min(tokens.size(), i + MAX_WORDS_PER_KEY);
+            keys.add(String.join(" ", tokens.subList(i, end)) + SEPARATOR + display);
+        }
+    }
+
+    private static String next(Iterator<String> delta, String prefix) {
+        if (delta.hasNext()) {
+            String key = delta.next();
+            if (key.startsWith(prefix)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the first key that is not less than the given prefix.
+     */
+    private static int lowerBound(String[] sorted, String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String[] merge(String[] sorted, NavigableSet<String> delta) {
+        String[] merged = new String[sorted.length + delta.size()];
+        int i = 0;
+        int n = 0;
+        for (String key : delta) {
+            while (i < sorted.length && sorted[i].compareTo(key) < 0) {
+                merged[n++] = sorted[i++];
+            }
+            if (i < sorted.length && sorted[i].equals(key)) {
+                continue;
+            }
+            merged[n++] = key;
+        }
+        while (i < sorted.length) {
+            merged[n++] = sorted[i++];
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    /**
+     * A sorted key array, which is never modified, and the keys added since it was built.
+     */
+    private static final class State {
+        private final String[] sorted;
+        private final ConcurrentSkipListSet<String> delta = new ConcurrentSkipListSet<>();
+
+        private State(String[] sorted) {
+            this.sorted = sorted;
+        }
+    }
+}
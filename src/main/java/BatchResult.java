@@ -0,0 +1,113 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code BatchResult} class reports the outcome of a bulk insert such as
+ * {@link BookDatabaseManager#addBooks(java.util.Collection)}.
+ * <p>
+ * A bulk insert does not stop at the first bad row. Every row that could not be
+ * inserted is recorded as a {@link Failure} with its position in the input and the
+ * database error, while the remaining rows are still committed.
+ * </p>
+ *
+ * @param <T> the type of the inserted items
+ */
+public class BatchResult<T> {
+    private int succeeded;
+    private final List<Failure<T>> failures = new ArrayList<>();
+
+    /**
+     * Returns the number of rows that were inserted and committed.
+     *
+     * @return the number of inserted rows
+     */
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the rows that could not be inserted, in input order.
+     *
+     * @return an unmodifiable list of failures; empty if every row was inserted
+     */
+    public List<Failure<T>> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Returns whether every row was inserted.
+     *
+     * @return true if there were no failures, false otherwise
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    void addSucceeded(int count) {
+        succeeded += count;
+    }
+
+    void addFailure(int index, T item, String message) {
+        failures.add(new Failure<>(index, item, message));
+    }
+
+    /**
+     * Returns a string representation of the result.
+     *
+     * @return a formatted string with the success and failure counts
+     */
+    @Override
+    public String toString() {
+        return "Inserted: " + succeeded + ", Failed: " + failures.size();
+    }
+
+    /**
+     * A single row that could not be inserted.
+     *
+     * @param <T> the type of the inserted item
+     */
+    public static class Failure<T> {
+        private final int index;
+        private final T item;
+        private final String message;
+
+        Failure(int index, T item, String message) {
+            this.index = index;
+            this.item = item;
+            this.message = message;
+        }
+
+        /**
+         * Returns the position of the item in the collection passed to the bulk insert.
+         *
+         * @return the zero-based index of the item
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the item that could not be inserted.
+         *
+         * @return the failed item
+         */
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * Returns the database error reported for the item.
+         *
+         * @return the error message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + index + " " + item + ": " + message;
+        }
+    }
+}
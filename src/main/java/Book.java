@@ -1,10 +1,15 @@
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * The {@code Book} class represents a book in the books database.
  * It contains details about the book, such as its ISBN, title, edition number,
- * copyright information, and a list of authors associated with the book.
+ * copyright information, and the set of authors associated with the book.
  *
  * <p>This class provides methods to:
  * <ul>
@@ -13,13 +18,23 @@ import java.util.List;
  *     <li>Provide a string representation of the book, including its authors.</li>
  * </ul>
  * </p>
+ *
+ * <p>Two books are equal when they have the same ISBN. A book without an ISBN is only
+ * equal to itself. Authors are kept in an insertion-ordered hash set, so linking a book
+ * and an author takes constant time no matter how many authors the book already has.</p>
+ *
+ * <p>The author sets of linked books follow changes to an ISBN or an author ID, such as
+ * an ID assigned by an insert: the change marks the sets on the other side of the link,
+ * which rehash once the next time they are used. A book must not change its ISBN while
+ * it is held in any other hash-based collection.</p>
  */
 public class Book {
     private String isbn;
     private String title;
     private int editionNumber;
     private String copyright;
-    private List<Author> authorList;
+    private Set<Author> authors;
+    private boolean authorsStale;
 
     /**
      * Constructs a {@code Book} object with the given details.
@@ -34,7 +49,7 @@ public class Book {
         this.title = title;
         this.editionNumber = editionNumber;
         this.copyright = copyright;
-        this.authorList = new ArrayList<>();
+        this.authors = new LinkedHashSet<>();
     }
 
     /**
@@ -52,7 +67,13 @@ public class Book {
      * @param isbn the ISBN to set
      */
     public void setIsbn(String isbn) {
+        if (Objects.equals(this.isbn, isbn)) {
+            return;
+        }
         this.isbn = isbn;
+        for (Author author : linkedAuthors()) {
+            author.booksChanged();
+        }
     }
 
     /**
@@ -110,31 +131,107 @@ public class Book {
     }
 
     /**
-     * Returns the list of authors associated with the book.
+     * Returns the authors associated with the book, in the order they were added.
      *
-     * @return the list of authors
+     * @return an unmodifiable view of the authors
      */
-    public List<Author> getAuthorList() {
-        return authorList;
+    public Set<Author> getAuthors() {
+        return Collections.unmodifiableSet(linkedAuthors());
     }
 
     /**
-     * Adds an author to this book's list if it is not already present.
-     * Also ensures bidirectional consistency by adding the book to the author's list.
+     * Adds an author to this book if it is not already present.
+     * Also ensures bidirectional consistency by adding the book to the author's books.
      *
      * @param author the {@code Author} object to be added
      */
     public void addAuthor(Author author) {
-        if (!authorList.contains(author)) {
-            authorList.add(author);
-            if (!author.getBookList().contains(this)) {
-                author.addBook(this);
-            }
+        if (linkedAuthors().add(author)) {
+            author.addBook(this);
         }
     }
 
-    public void setAuthorList(List<Author> authorList) {
-        this.authorList = authorList;
+    /**
+     * Replaces the authors of the book. Duplicates are dropped and the authors' own
+     * book sets are left unchanged.
+     *
+     * @param authors the authors to set
+     */
+    public void setAuthors(Collection<Author> authors) {
+        this.authors = new LinkedHashSet<>(authors);
+        authorsStale = false;
+    }
+
+    /**
+     * Returns the authors associated with the book as a list.
+     *
+     * @return a copy of the authors, in the order they were added
+     * @deprecated use {@link #getAuthors()}; changes to the returned list no longer
+     *             affect the book
+     */
+    @Deprecated
+    public List<Author> getAuthorList() {
+        return new ArrayList<>(linkedAuthors());
+    }
+
+    /**
+     * Sets the author list.
+     *
+     * @param authors the list of authors
+     * @deprecated use {@link #setAuthors(Collection)}
+     */
+    @Deprecated
+    public void setAuthorList(List<Author> authors) {
+        setAuthors(authors);
+    }
+
+    /**
+     * Marks the author set for rehashing after a linked author's ID changed.
+     */
+    void authorsChanged() {
+        authorsStale = true;
+    }
+
+    /**
+     * Returns the author set, rehashed in place first if an author's ID changed since it
+     * was last used, so that views returned earlier stay valid.
+     */
+    private Set<Author> linkedAuthors() {
+        if (authorsStale) {
+            List<Author> linked = new ArrayList<>(authors);
+            authors.clear();
+            authors.addAll(linked);
+            authorsStale = false;
+        }
+        return authors;
+    }
+
+    /**
+     * Returns whether the given object is a book with the same ISBN.
+     *
+     * @param o the object to compare with
+     * @return true if both books have the same non-null ISBN, or are the same object
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Book)) {
+            return false;
+        }
+        Book other = (Book) o;
+        return isbn != null && isbn.equals(other.isbn);
+    }
+
+    /**
+     * Returns a hash code based on the ISBN.
+     *
+     * @return the hash code of the book
+     */
+    @Override
+    public int hashCode() {
+        return (isbn != null) ? isbn.hashCode() : System.identityHashCode(this);
     }
 
     /**
@@ -150,9 +247,9 @@ public class Book {
                 .append(", Edition: ").append(editionNumber)
                 .append(", Copyright: ").append(copyright);
 
-        if (!authorList.isEmpty()) {
+        if (!authors.isEmpty()) {
             sb.append("\nAuthors: ");
-            for (Author author : authorList) {
+            for (Author author : linkedAuthors()) {
                 sb.append(author.getFirstName()).append(" ")
                         .append(author.getLastName()).append(", ");
             }
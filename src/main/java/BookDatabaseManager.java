@@ -1,17 +1,41 @@
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Manages database operations for books and authors in a MySQL database.
+ * Manages database operations for books and authors in a MySQL database; the
+ * {@link BookStore} used unless the embedded store is configured.
  * <p>
  * This class handles adding, updating, and retrieving data from two tables:
- * <strong>books</strong> and <strong>authors</strong>. It uses JDBC to connect
- * to the database, execute SQL statements, and handle results. Make sure the
+ * <strong>books</strong> and <strong>authors</strong>. It borrows JDBC connections
+ * from a {@link ConnectionPool} to execute SQL statements and handle results, so
+ * no call pays for opening a new database connection. Make sure the
  * database structure matches the SQL statements in this class (i.e., column
  * names, table names, etc.).
  * </p>
  *
+ * <p>
+ * Every public data-access method records its latency, row count and failures in the
+ * <code>library_db</code> group of a {@link MetricsRegistry}, labelled with the method name.
+ * Overloads that only supply a default are counted under the method they delegate to.
+ * </p>
+ *
  * <p><strong>Usage example:</strong></p>
  * <pre>
  * BookDatabaseManager manager = new BookDatabaseManager();
@@ -19,11 +43,73 @@ import java.util.List;
  * boolean added = manager.addBook(newBook);
  * </pre>
  */
-public class BookDatabaseManager {
-    private final String URL = "jdbc:mysql://127.0.0.1:3306/books?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+public class BookDatabaseManager implements BookStore {
+    private static final String URL = "jdbc:mysql://127.0.0.1:3306/books?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&rewriteBatchedStatements=true&useCursorFetch=true"
+            //prepare on the server (the pool caches the statements) and reuse result set metadata across executions
+            + "&useServerPrepStmts=true&cacheResultSetMetadata=true";
     private static final String USER = "root";
     private static final String PASSWORD = ""; //ENTER YOUR PASSWORD!
 
+    /** The number of rows sent per batch by the bulk insert methods. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * The fetch size of the streaming read methods: {@link Integer#MIN_VALUE}, which makes
+     * MySQL Connector/J stream the rows one at a time. See {@link #setFetchSize(int)}.
+     */
+    public static final int DEFAULT_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /** The number of rows on a page when the caller does not ask for a page size. */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /** The largest page the paginated read methods will return. */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /** The largest number of keys bound into a single {@code IN (...)} list. */
+    public static final int MAX_IN_LIST_SIZE = 500;
+
+    //books and authors joined through the authorISBN link table
+    private static final String BOOKS_WITH_AUTHORS =
+            "SELECT t.isbn, t.title, t.editionNumber, t.copyright, a.authorID, a.firstName, a.lastName"
+                    + " FROM titles t"
+                    + " LEFT JOIN authorISBN ai ON ai.isbn = t.isbn"
+                    + " LEFT JOIN authors a ON a.authorID = ai.authorID";
+
+    private static final String AUTHORS_WITH_BOOKS =
+            "SELECT a.authorID, a.firstName, a.lastName, t.isbn, t.title, t.editionNumber, t.copyright"
+                    + " FROM authors a"
+                    + " LEFT JOIN authorISBN ai ON ai.authorID = a.authorID"
+                    + " LEFT JOIN titles t ON t.isbn = ai.isbn";
+
+    //needs the unique index from author-dedupe.sql; LAST_INSERT_ID(authorID) makes the existing ID the generated key
+    private static final String UPSERT_AUTHOR =
+            "INSERT INTO authors (firstName, lastName) VALUES (?, ?)"
+                    + " ON DUPLICATE KEY UPDATE authorID = LAST_INSERT_ID(authorID)";
+
+    /** The default number of entries in each of the book and author caches. */
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    /** The default time a looked-up book or author stays cached. */
+    public static final long DEFAULT_CACHE_TTL_MILLIS = 5 * 60 * 1000L;
+
+    /** The default time a lookup that found nothing stays cached. */
+    public static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 30 * 1000L;
+
+    private final ConnectionPool pool;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private EntityCache<String, Book> bookCache =
+            new EntityCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL_MILLIS, DEFAULT_NEGATIVE_CACHE_TTL_MILLIS);
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+    private EntityCache<Integer, Author> authorCache =
+            new EntityCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL_MILLIS, DEFAULT_NEGATIVE_CACHE_TTL_MILLIS);
+    private final AuthorNameIndex authorNames = new AuthorNameIndex();
+    private final MetricsRegistry.Group metrics;
+    //looked up once; the single-row writes are the hottest recorded calls
+    private final OperationStats addBookStats;
+    private final OperationStats updateBookStats;
+    private final OperationStats addAuthorStats;
+    private final OperationStats updateAuthorStats;
+
     static {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
@@ -34,14 +120,175 @@ public class BookDatabaseManager {
     }
 
     /**
-     * Inserts a new book into the <strong>books</strong> table.
+     * Constructs a {@code BookDatabaseManager} with its own {@link ConnectionPool}
+     * using the default connection settings.
+     */
+    public BookDatabaseManager() {
+        this(new ConnectionPool(defaultPoolConfig()));
+    }
+
+    /**
+     * Constructs a {@code BookDatabaseManager} that borrows its connections from the
+     * given pool. Several managers may share one pool.
+     *
+     * @param pool the {@link ConnectionPool} to borrow connections from
+     */
+    public BookDatabaseManager(ConnectionPool pool) {
+        this(pool, new MetricsRegistry());
+    }
+
+    /**
+     * Constructs a {@code BookDatabaseManager} that borrows its connections from the
+     * given pool and records its metrics in the given registry.
+     *
+     * @param pool    the {@link ConnectionPool} to borrow connections from
+     * @param metrics the {@link MetricsRegistry} to record call latencies and counts in
+     */
+    public BookDatabaseManager(ConnectionPool pool, MetricsRegistry metrics) {
+        this.pool = pool;
+        this.metrics = metrics.group("library_db", "Calls to BookDatabaseManager methods.", "operation", true);
+        this.addBookStats = this.metrics.get("addBook");
+        this.updateBookStats = this.metrics.get("updateBook");
+        this.addAuthorStats = this.metrics.get("addAuthor");
+        this.updateAuthorStats = this.metrics.get("updateAuthor");
+    }
+
+    /**
+     * Returns whether the <strong>authors</strong> table has a unique index on
+     * (firstName, lastName). {@link #addAuthor(Author)} and the other writes that add
+     * authors rely on it to keep concurrent inserts of the same name from creating two
+     * rows; <em>sql/author-dedupe.sql</em> creates it.
+     *
+     * @return true if the index exists.
+     * @throws SQLException if the table metadata could not be read.
+     */
+    public boolean hasUniqueAuthorNameIndex() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            Map<String, Set<String>> columnsByIndex = new HashMap<>();
+            for (String table : new String[]{"authors", "AUTHORS"}) {
+                try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), null, table, true, false)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        if (index != null && column != null) {
+                            columnsByIndex.computeIfAbsent(index, k -> new HashSet<>()).add(column.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+            }
+            return columnsByIndex.containsValue(Set.of("firstname", "lastname"));
+        }
+    }
+
+    /**
+     * Returns a {@link PoolConfig} for the default database URL and credentials.
+     * Callers can adjust the pool sizes and timeouts before creating the pool.
+     *
+     * @return a new {@link PoolConfig} with the default connection settings
+     */
+    public static PoolConfig defaultPoolConfig() {
+        return new PoolConfig(URL, USER, PASSWORD);
+    }
+
+    /**
+     * Returns a snapshot of the connection pool counters.
+     *
+     * @return the current {@link PoolStats}
+     */
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * Returns the fetch size of the streaming read methods.
+     *
+     * @return the fetch size; {@link Integer#MIN_VALUE} for row-by-row streaming
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets how the streaming read methods fetch their rows.
+     * <p>
+     * {@link Integer#MIN_VALUE} (the default) streams the result: the server sends rows
+     * as the client reads them, and neither side holds more than a network buffer of them.
+     * The connection cannot run another statement until the rows have all been read or
+     * the result set is closed, and a reader that stalls for longer than the server's
+     * <code>net_write_timeout</code> has its read aborted.
+     * </p>
+     * <p>
+     * A positive value uses a server-side cursor (the URL sets <code>useCursorFetch=true</code>)
+     * that returns that many rows per round trip. The connection stays usable between
+     * fetches and a slow reader is not cut off, but the server first materializes the whole
+     * result in a temporary table, so the first row waits for the last one and a large
+     * table costs the server its size again in temporary storage.
+     * </p>
+     *
+     * @param fetchSize {@link Integer#MIN_VALUE}, or the rows per round trip, at least 1
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1 && fetchSize != Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("fetchSize must be at least 1 or Integer.MIN_VALUE: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Replaces the caches in front of {@link #getBookByISBN(String)} and
+     * {@link #getAuthorByID(int)} with empty caches of the given size and lifetimes.
+     * Meant to be called once, before the manager is used.
+     *
+     * @param maxSize           the maximum number of entries in each cache
+     * @param ttlMillis         how long a looked-up book or author stays cached
+     * @param negativeTtlMillis how long a lookup that found nothing stays cached; 0 disables this
+     */
+    public void configureCaches(int maxSize, long ttlMillis, long negativeTtlMillis) {
+        bookCache = new EntityCache<>(maxSize, ttlMillis, negativeTtlMillis);
+        authorCache = new EntityCache<>(maxSize, ttlMillis, negativeTtlMillis);
+    }
+
+    /**
+     * Returns a snapshot of the counters of the cache in front of {@link #getBookByISBN(String)}.
+     *
+     * @return the current {@link CacheStats} of the book cache
+     */
+    public CacheStats getBookCacheStats() {
+        return bookCache.getStats();
+    }
+
+    /**
+     * Returns a snapshot of the counters of the cache in front of {@link #getAuthorByID(int)}.
+     *
+     * @return the current {@link CacheStats} of the author cache
+     */
+    public CacheStats getAuthorCacheStats() {
+        return authorCache.getStats();
+    }
+
+    /**
+     * Returns the version of the catalog, which changes after every successful write made
+     * through this manager.
+     *
+     * @return the {@link CatalogVersion} of this manager
+     */
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * Inserts a new book into the <strong>titles</strong> table and caches it.
      *
      * @param book the {@link Book} object to be added.
      * @return true if the insertion was successful, false otherwise.
      */
+    @Override
     public boolean addBook(Book book) {
+        long start = System.nanoTime();
         String sql = "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+        try (Connection conn = pool.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, book.getIsbn());
@@ -49,23 +296,33 @@ public class BookDatabaseManager {
             stmt.setInt(3, book.getEditionNumber());
             stmt.setString(4, book.getCopyright());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                bookCache.put(book.getIsbn(), copyOf(book));
+                catalogVersion.bump();
+                addBookStats.record(start, 1);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            addBookStats.recordError(start);
+            return false;
         }
+        addBookStats.record(start, 0);
         return false;
     }
 
     /**
-     * Updates an existing book in the <strong>books</strong> table.
-     * This method looks up the book to update by ISBN.
+     * Updates an existing book in the <strong>titles</strong> table and writes the new
+     * values through to the cache. This method looks up the book to update by ISBN.
      *
      * @param book the {@link Book} object containing updated information.
      * @return true if the update was successful, false otherwise.
      */
+    @Override
     public boolean updateBook(Book book) {
-        String sql = "UPDATE books SET title = ?, editionNumber = ?, copyright = ? WHERE isbn = ?";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+        long start = System.nanoTime();
+        String sql = "UPDATE titles SET title = ?, editionNumber = ?, copyright = ? WHERE isbn = ?";
+        try (Connection conn = pool.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, book.getTitle());
@@ -73,188 +330,1431 @@ public class BookDatabaseManager {
             stmt.setString(3, book.getCopyright());
             stmt.setString(4, book.getIsbn());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                bookCache.put(book.getIsbn(), copyOf(book));
+                catalogVersion.bump();
+                updateBookStats.record(start, 1);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            updateBookStats.recordError(start);
+            return false;
         }
+        updateBookStats.record(start, 0);
         return false;
     }
 
     /**
-     * Inserts a new author into the <strong>authors</strong> table.
+     * Adds an author to the <strong>authors</strong> table unless an author with the same
+     * name already exists.
      * <p>
-     * If successful, the generated authorID is retrieved from the database
-     * and set in the {@link Author} object.
+     * The name is cleaned and compared ignoring case and accents (see {@link AuthorNameIndex}).
+     * If a matching author is already known, its authorID is set in the {@link Author}
+     * object without touching the database. Otherwise the database is asked, and the
+     * author is inserted only if it is genuinely new; the generated authorID is then set
+     * in the {@link Author} object. Concurrent calls with the same name all receive the
+     * same authorID.
      * </p>
      *
      * @param author the {@link Author} object to be added.
-     * @return true if the insertion was successful, false otherwise.
+     * @return true if the author was found or inserted, false otherwise.
      */
+    @Override
     public boolean addAuthor(Author author) {
-        String sql = "INSERT INTO authors (firstName, lastName) VALUES (?, ?)";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            stmt.setString(1, author.getFirstName());
-            stmt.setString(2, author.getLastName());
-
-            int rowsAffected = stmt.executeUpdate();
-            if (rowsAffected > 0) {
-                ResultSet generatedKeys = stmt.getGeneratedKeys();
-                if (generatedKeys.next()) {
-                    author.setAuthorID(generatedKeys.getInt(1));
-                }
-                return true;
-            }
+        long start = System.nanoTime();
+        Integer existing = authorNames.get(author.getFirstName(), author.getLastName());
+        if (existing != null) {
+            author.setFirstName(AuthorNameIndex.clean(author.getFirstName()));
+            author.setLastName(AuthorNameIndex.clean(author.getLastName()));
+            author.setAuthorID(existing);
+            addAuthorStats.record(start, 0);
+            return true;
+        }
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            resolveAuthors(conn, Collections.singletonList(author));
+            conn.commit();
         } catch (SQLException e) {
             e.printStackTrace();
+            author.setAuthorID(0);
+            addAuthorStats.recordError(start);
+            return false;
         }
-        return false;
+        authorSaved(author);
+        catalogVersion.bump();
+        addAuthorStats.record(start, 1);
+        return true;
     }
 
     /**
-     * Updates an existing author in the <strong>authors</strong> table.
-     * This method looks up the author to update by <code>authorID</code>.
+     * Updates an existing author in the <strong>authors</strong> table and writes the new
+     * values through to the cache. This method looks up the author to update by <code>authorID</code>.
      *
      * @param author the {@link Author} object containing updated information.
      * @return true if the update was successful, false otherwise.
      */
+    @Override
     public boolean updateAuthor(Author author) {
+        long start = System.nanoTime();
         String sql = "UPDATE authors SET firstName = ?, lastName = ? WHERE authorID = ?";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+        try (Connection conn = pool.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, author.getFirstName());
             stmt.setString(2, author.getLastName());
             stmt.setInt(3, author.getAuthorID());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                authorSaved(author);
+                catalogVersion.bump();
+                updateAuthorStats.record(start, 1);
+                return true;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            updateAuthorStats.recordError(start);
+            return false;
         }
+        updateAuthorStats.record(start, 0);
         return false;
     }
 
     /**
-     * Retrieves a list of all {@link Book} objects from the <strong>titles</strong> table.
+     * Inserts many books into the <strong>titles</strong> table using JDBC batching,
+     * in chunks of {@value #DEFAULT_BATCH_SIZE} rows.
+     *
+     * @param books the {@link Book} objects to be added.
+     * @return a {@link BatchResult} with the number of inserted rows and any per-row failures.
+     * @see #addBooks(Collection, int)
+     */
+    @Override
+    public BatchResult<Book> addBooks(Collection<Book> books) {
+        return addBooks(books, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Inserts many books into the <strong>titles</strong> table using JDBC batching.
      * <p>
-     * Note that the SQL references the <strong>titles</strong> table, which may differ
-     * from the <strong>books</strong> table used elsewhere. Ensure your database schema
-     * matches these queries.
+     * The books are sent in chunks of <code>batchSize</code> rows. The driver rewrites
+     * each chunk into a multi-row INSERT and each chunk is committed as one transaction.
+     * If a chunk fails, it is rolled back and retried row by row so that only the
+     * offending rows are reported as failures; the rest of the chunk is still committed.
      * </p>
      *
-     * @return a {@link List} of all books; if none found, an empty list is returned.
+     * @param books     the {@link Book} objects to be added.
+     * @param batchSize the number of rows per chunk and transaction.
+     * @return a {@link BatchResult} with the number of inserted rows and any per-row failures.
      */
-    public List<Book> getAllBooks() {
-        List<Book> books = new ArrayList<>();
-        String sql = "SELECT isbn, title, editionNumber, copyright FROM titles"; //check if the table name is correct
+    @Override
+    public BatchResult<Book> addBooks(Collection<Book> books, int batchSize) {
+        long start = System.nanoTime();
+        String sql = "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)";
+        BatchResult<Book> result = insertBatch(sql, books, batchSize, (stmt, book) -> {
+            stmt.setString(1, book.getIsbn());
+            stmt.setString(2, book.getTitle());
+            stmt.setInt(3, book.getEditionNumber());
+            stmt.setString(4, book.getCopyright());
+        });
+        //drop any cached misses for the new ISBNs
+        for (Book book : books) {
+            bookCache.invalidate(book.getIsbn());
+        }
+        recordBatch("addBooks", start, result);
+        return result;
+    }
 
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+    /**
+     * Inserts many authors into the <strong>authors</strong> table using JDBC batching,
+     * in chunks of {@value #DEFAULT_BATCH_SIZE} rows.
+     *
+     * @param authors the {@link Author} objects to be added.
+     * @return a {@link BatchResult} with the number of inserted rows and any per-row failures.
+     * @see #addAuthors(Collection, int)
+     */
+    @Override
+    public BatchResult<Author> addAuthors(Collection<Author> authors) {
+        return addAuthors(authors, DEFAULT_BATCH_SIZE);
+    }
 
-            while (rs.next()) {
-                Book book = new Book(
-                        rs.getString("isbn"),
-                        rs.getString("title"),
-                        rs.getInt("editionNumber"),
-                        rs.getString("copyright")
-                );
+    /**
+     * Adds many authors to the <strong>authors</strong> table using JDBC batching, skipping
+     * the names that already exist as {@link #addAuthor(Author)} does.
+     * <p>
+     * Chunking, transactions and failure handling work as in {@link #addBooks(Collection, int)}.
+     * The authorID of every added or found author is set in its {@link Author} object; an
+     * author that already existed counts as succeeded.
+     * </p>
+     *
+     * @param authors   the {@link Author} objects to be added.
+     * @param batchSize the number of rows per chunk and transaction.
+     * @return a {@link BatchResult} with the number of added or found authors and any per-row failures.
+     */
+    @Override
+    public BatchResult<Author> addAuthors(Collection<Author> authors, int batchSize) {
+        long start = System.nanoTime();
+        BatchResult<Author> result = resolveAuthorBatch(authors, batchSize);
+        recordBatch("addAuthors", start, result);
+        return result;
+    }
 
-                books.add(book);
-            }
+    private BatchResult<Author> resolveAuthorBatch(Collection<Author> authors, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        BatchResult<Author> result = new BatchResult<>();
+        List<Author> rows = new ArrayList<>(authors);
+        if (rows.isEmpty()) {
+            return result;
+        }
 
-            System.out.println("Fetched books: " + books); //debugger
+        int next = 0; //first row that is neither committed nor reported as failed
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
 
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Author> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                List<Author> saved = new ArrayList<>(chunk.size());
+                try {
+                    resolveAuthors(conn, chunk);
+                    conn.commit();
+                    saved.addAll(chunk);
+                } catch (SQLException e) {
+                    //retry this chunk row by row so only the offending rows fail
+                    conn.rollback();
+                    resetAuthorIDs(chunk);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        Author author = chunk.get(i);
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            resolveAuthors(conn, Collections.singletonList(author));
+                            saved.add(author);
+                        } catch (SQLException rowFailure) {
+                            conn.rollback(savepoint);
+                            author.setAuthorID(0);
+                            result.addFailure(from + i, author, rowFailure.getMessage());
+                        }
+                        conn.releaseSavepoint(savepoint);
+                    }
+                    conn.commit();
+                }
+                for (Author author : saved) {
+                    authorSaved(author);
+                }
+                if (!saved.isEmpty()) {
+                    catalogVersion.bump();
+                }
+                result.addSucceeded(saved.size());
+                next = from + chunk.size();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
+            for (int i = next; i < rows.size(); i++) {
+                rows.get(i).setAuthorID(0);
+                result.addFailure(i, rows.get(i), e.getMessage());
+            }
         }
-        return books;
+        return result;
     }
 
     /**
-     * Retrieves a single {@link Book} object from the <strong>books</strong> table
-     * based on the provided ISBN.
-     *
-     * @param isbn the ISBN of the book to retrieve.
-     * @return the matching {@link Book} if found, or null otherwise.
+     * Records a batch call with its written and its failed rows.
      */
-    public Book getBookByISBN(String isbn) {
-        String sql = "SELECT * FROM books WHERE isbn = ?";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
+    private void recordBatch(String operation, long start, BatchResult<?> result) {
+        metrics.get(operation).recordBatch(start, result.getSucceeded(), result.getFailures().size());
+    }
+
+    /**
+     * Binds one item to the parameters of an INSERT statement.
+     */
+    private interface RowBinder<T> {
+        void bind(PreparedStatement stmt, T item) throws SQLException;
+    }
+
+    /**
+     * Runs a batched INSERT over the given items, one transaction per chunk.
+     */
+    private <T> BatchResult<T> insertBatch(String sql, Collection<T> items, int batchSize, RowBinder<T> binder) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        BatchResult<T> result = new BatchResult<>();
+        List<T> rows = new ArrayList<>(items);
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        int next = 0; //first row that is neither committed nor reported as failed
+        try (Connection conn = pool.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, isbn);
-            ResultSet rs = stmt.executeQuery();
+            conn.setAutoCommit(false);
 
-            if (rs.next()) {
-                return new Book(
-                        rs.getString("isbn"),
-                        rs.getString("title"),
-                        rs.getInt("editionNumber"),
-                        rs.getString("copyright")
-                );
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<T> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                try {
+                    for (T item : chunk) {
+                        binder.bind(stmt, item);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    conn.commit();
+                    catalogVersion.bump();
+                    result.addSucceeded(chunk.size());
+                } catch (SQLException e) {
+                    //one bad row fails the whole multi-row statement, so retry this chunk row by row
+                    conn.rollback();
+                    stmt.clearBatch();
+                    insertRowByRow(conn, stmt, chunk, from, binder, result);
+                }
+                next = from + chunk.size();
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            for (int i = next; i < rows.size(); i++) {
+                result.addFailure(i, rows.get(i), e.getMessage());
+            }
         }
-        return null;
+        return result;
     }
 
     /**
-     * Retrieves a single {@link Author} object from the <strong>authors</strong> table
-     * based on the provided author ID.
+     * Inserts a failed chunk one row at a time inside a single transaction, rolling back
+     * to a savepoint for every row that fails. Nothing is added to the result unless the
+     * transaction commits.
+     */
+    private <T> void insertRowByRow(Connection conn, PreparedStatement stmt, List<T> chunk, int offset,
+                                    RowBinder<T> binder, BatchResult<T> result) throws SQLException {
+        int inserted = 0;
+        BatchResult<T> failed = new BatchResult<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            T item = chunk.get(i);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                binder.bind(stmt, item);
+                stmt.executeUpdate();
+                inserted++;
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                failed.addFailure(offset + i, item, e.getMessage());
+            }
+            //the server keeps every savepoint until the transaction ends otherwise
+            conn.releaseSavepoint(savepoint);
+        }
+        conn.commit();
+        if (inserted > 0) {
+            catalogVersion.bump();
+        }
+        result.addSucceeded(inserted);
+        for (BatchResult.Failure<T> failure : failed.getFailures()) {
+            result.addFailure(failure.getIndex(), failure.getItem(), failure.getMessage());
+        }
+    }
+
+    /**
+     * Inserts a book together with its authors and the <strong>authorISBN</strong> rows
+     * that link them, as one transaction on one connection.
+     * <p>
+     * Every author of the book whose authorID is 0 is looked up by first and last name;
+     * if no such author exists, it is inserted. The generated or found authorID is set
+     * in the {@link Author} object. Authors with a non-zero authorID are linked as they
+     * are. Each step is sent as a single batched statement, so a book costs at most four
+     * statements and one commit however many authors it has. If any step fails, nothing is
+     * written and the authorIDs that were 0 are reset to 0.
+     * </p>
      *
-     * @param authorID the ID of the author to retrieve.
-     * @return the matching {@link Author} if found, or null otherwise.
+     * @param book the {@link Book} object to be added, with its authors.
+     * @return true if the book, its authors and its links were written, false otherwise.
      */
-    public Author getAuthorByID(int authorID) {
-        String sql = "SELECT * FROM authors WHERE authorID = ?";
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, authorID);
-            ResultSet rs = stmt.executeQuery();
+    @Override
+    public boolean addBookWithAuthors(Book book) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = insertBooksWithAuthors(Collections.singletonList(book));
+        recordBatch("addBookWithAuthors", start, result);
+        return result.getFailures().isEmpty();
+    }
+
+    /**
+     * Inserts many books together with their authors and <strong>authorISBN</strong> links,
+     * as {@link #addBookWithAuthors(Book)} does for one book.
+     * <p>
+     * All books are first written in a single transaction. If that fails, it is rolled
+     * back and the books are retried one at a time in a new transaction, rolling back to a
+     * savepoint for every book that fails, so that only the offending books are reported
+     * as failures.
+     * </p>
+     *
+     * @param books the {@link Book} objects to be added, with their authors.
+     * @return a {@link BatchResult} with the number of inserted books and any per-book failures.
+     */
+    @Override
+    public BatchResult<Book> addBooksWithAuthors(Collection<Book> books) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = insertBooksWithAuthors(books);
+        recordBatch("addBooksWithAuthors", start, result);
+        return result;
+    }
+
+    private BatchResult<Book> insertBooksWithAuthors(Collection<Book> books) {
+        BatchResult<Book> result = new BatchResult<>();
+        List<Book> rows = new ArrayList<>(books);
+        if (rows.isEmpty()) {
+            return result;
+        }
 
-            if (rs.next()) {
-                return new Author(
-                        rs.getInt("authorID"),
-                        rs.getString("firstName"),
-                        rs.getString("lastName")
-                );
+        List<Book> inserted = new ArrayList<>();
+        List<Author> unresolved = unresolvedAuthors(rows);
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insertWithAuthors(conn, rows);
+                conn.commit();
+                inserted.addAll(rows);
+            } catch (SQLException e) {
+                conn.rollback();
+                resetAuthorIDs(unresolved);
+                for (int i = 0; i < rows.size(); i++) {
+                    Book book = rows.get(i);
+                    List<Author> bookUnresolved = unresolvedAuthors(Collections.singletonList(book));
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        insertWithAuthors(conn, Collections.singletonList(book));
+                        inserted.add(book);
+                    } catch (SQLException bookFailure) {
+                        conn.rollback(savepoint);
+                        resetAuthorIDs(bookUnresolved);
+                        result.addFailure(i, book, bookFailure.getMessage());
+                    }
+                    conn.releaseSavepoint(savepoint);
+                }
+                conn.commit();
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            resetAuthorIDs(unresolved);
+            inserted.clear();
+            result = new BatchResult<>();
+            for (int i = 0; i < rows.size(); i++) {
+                result.addFailure(i, rows.get(i), e.getMessage());
+            }
         }
-        return null;
+
+        for (Book book : inserted) {
+            bookCache.put(book.getIsbn(), copyOf(book));
+            for (Author author : book.getAuthors()) {
+                authorSaved(author);
+            }
+        }
+        if (!inserted.isEmpty()) {
+            catalogVersion.bump();
+        }
+        result.addSucceeded(inserted.size());
+        return result;
     }
 
     /**
-     * Retrieves all {@link Author} objects from the <strong>authors</strong> table.
-     *
-     * @return a {@link List} of all authors; if none found, an empty list is returned.
+     * Writes the titles, authors and links of the given books on the given connection
+     * without committing.
      */
-    public List<Author> getAllAuthors() {
-        List<Author> authors = new ArrayList<>();
-        String sql = "SELECT authorID, firstName, lastName FROM authors"; //ensure table name is correct
+    private void insertWithAuthors(Connection conn, List<Book> books) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)")) {
+            for (Book book : books) {
+                stmt.setString(1, book.getIsbn());
+                stmt.setString(2, book.getTitle());
+                stmt.setInt(3, book.getEditionNumber());
+                stmt.setString(4, book.getCopyright());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
 
-        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD);
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        resolveAuthors(conn, unresolvedAuthors(books));
 
-            while (rs.next()) {
-                Author author = new Author(
-                        rs.getInt("authorID"),
-                        rs.getString("firstName"),
-                        rs.getString("lastName")
-                );
+        boolean anyLinks = false;
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)")) {
+            for (Book book : books) {
+                //two unsaved authors with the same name resolve to the same row
+                Set<Integer> linked = new LinkedHashSet<>();
+                for (Author author : book.getAuthors()) {
+                    if (linked.add(author.getAuthorID())) {
+                        stmt.setInt(1, author.getAuthorID());
+                        stmt.setString(2, book.getIsbn());
+                        stmt.addBatch();
+                        anyLinks = true;
+                    }
+                }
+            }
+            if (anyLinks) {
+                stmt.executeBatch();
+            }
+        }
+    }
 
-                authors.add(author);
+    /**
+     * Sets the authorID of every given author to that of an existing author with the
+     * same name, inserting the authors that do not exist yet.
+     * <p>
+     * Names are cleaned first (see {@link AuthorNameIndex#clean(String)}) and written back
+     * to the authors. Names found in {@link #authorNames} need no database access. The
+     * rest are looked up with one query and the genuinely new ones inserted with one
+     * batch. If a concurrent request inserted one of those names in the meantime, the
+     * unique index on the name rejects the batch with a duplicate-key error; it is then
+     * rolled back to a savepoint and the new names are written one at a time with
+     * {@link #UPSERT_AUTHOR}, which returns the existing authorID instead of inserting a
+     * duplicate. Any other failure is passed on. The name index is updated by the caller
+     * once the transaction has committed.
+     * </p>
+     */
+    private void resolveAuthors(Connection conn, List<Author> authors) throws SQLException {
+        Map<String, List<Author>> byName = new LinkedHashMap<>();
+        for (Author author : authors) {
+            author.setFirstName(AuthorNameIndex.clean(author.getFirstName()));
+            author.setLastName(AuthorNameIndex.clean(author.getLastName()));
+            Integer authorID = authorNames.get(author.getFirstName(), author.getLastName());
+            if (authorID != null) {
+                author.setAuthorID(authorID);
+            } else {
+                byName.computeIfAbsent(AuthorNameIndex.key(author.getFirstName(), author.getLastName()),
+                        k -> new ArrayList<>()).add(author);
             }
+        }
+        if (byName.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> found = new HashMap<>();
+        List<List<Author>> groups = new ArrayList<>(byName.values());
+        for (int from = 0; from < groups.size(); from += MAX_IN_LIST_SIZE) {
+            List<List<Author>> chunk = groups.subList(from, Math.min(from + MAX_IN_LIST_SIZE, groups.size()));
+            StringBuilder sql = new StringBuilder(
+                    "SELECT authorID, firstName, lastName FROM authors WHERE (firstName, lastName) IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            }
+            sql.append(") ORDER BY authorID");
+            try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (List<Author> group : chunk) {
+                    stmt.setString(index++, group.get(0).getFirstName());
+                    stmt.setString(index++, group.get(0).getLastName());
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        found.putIfAbsent(AuthorNameIndex.key(rs.getString("firstName"), rs.getString("lastName")),
+                                rs.getInt("authorID"));
+                    }
+                }
+            }
+        }
 
-            System.out.println("Fetched authors: " + authors); //debugger
+        List<List<Author>> missing = new ArrayList<>();
+        for (Map.Entry<String, List<Author>> entry : byName.entrySet()) {
+            Integer authorID = found.get(entry.getKey());
+            if (authorID == null) {
+                missing.add(entry.getValue());
+            } else {
+                setAuthorIDs(entry.getValue(), authorID);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
 
+        Savepoint savepoint = conn.setSavepoint();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO authors (firstName, lastName) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (List<Author> group : missing) {
+                stmt.setString(1, group.get(0).getFirstName());
+                stmt.setString(2, group.get(0).getLastName());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (List<Author> group : missing) {
+                    if (!keys.next()) {
+                        throw new SQLException("No generated key for author " + group.get(0).getName());
+                    }
+                    setAuthorIDs(group, keys.getInt(1));
+                }
+            }
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            //a name inserted by another request since the lookup
+            conn.rollback(savepoint);
+            for (List<Author> group : missing) {
+                setAuthorIDs(group, upsertAuthor(conn, group.get(0)));
+            }
+        }
+        conn.releaseSavepoint(savepoint);
+    }
+
+    /**
+     * Returns whether a failure, or one of its causes or chained exceptions, is a
+     * duplicate-key error (MySQL error 1062). The driver reports it as a
+     * {@link SQLIntegrityConstraintViolationException}, wrapped in a
+     * {@link BatchUpdateException} when it comes from a batch.
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            for (Throwable cause = next; cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException && ((SQLException) cause).getErrorCode() == 1062) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts an author, or finds the existing author with the same name, and returns
+     * its authorID.
+     */
+    private static int upsertAuthor(Connection conn, Author author) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_AUTHOR, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, author.getFirstName());
+            stmt.setString(2, author.getLastName());
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No authorID returned for author " + author.getName());
+                }
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static void setAuthorIDs(List<Author> authors, int authorID) {
+        for (Author author : authors) {
+            author.setAuthorID(authorID);
+        }
+    }
+
+    /**
+     * Caches a saved author and indexes its name. Only called after its transaction has
+     * committed.
+     */
+    private void authorSaved(Author author) {
+        authorCache.put(author.getAuthorID(), copyOf(author));
+        authorNames.put(author);
+    }
+
+    /**
+     * Returns the authors of the given books that have not been saved yet.
+     */
+    private static List<Author> unresolvedAuthors(List<Book> books) {
+        List<Author> unresolved = new ArrayList<>();
+        for (Book book : books) {
+            for (Author author : book.getAuthors()) {
+                if (author.getAuthorID() == 0) {
+                    unresolved.add(author);
+                }
+            }
+        }
+        return unresolved;
+    }
+
+    private static void resetAuthorIDs(List<Author> authors) {
+        for (Author author : authors) {
+            author.setAuthorID(0);
+        }
+    }
+
+    /**
+     * Retrieves a list of all {@link Book} objects from the <strong>titles</strong> table.
+     * <p>
+     * Note that the SQL references the <strong>titles</strong> table, which may differ
+     * from the <strong>books</strong> table used elsewhere. Ensure your database schema
+     * matches these queries.
+     * </p>
+     *
+     * @return a {@link List} of all books; if none found, an empty list is returned.
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        long start = System.nanoTime();
+        List<Book> books = new ArrayList<>();
+        String sql = "SELECT isbn, title, editionNumber, copyright FROM titles"; //check if the table name is correct
+
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                Book book = mapBook(rs);
+
+                books.add(book);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getAllBooks").recordError(start);
+            return books;
+        }
+        metrics.get("getAllBooks").record(start, books.size());
+        return books;
+    }
+
+    /**
+     * Retrieves a single {@link Book} object from the <strong>titles</strong> table
+     * based on the provided ISBN.
+     * <p>
+     * Lookups go through a read-through cache, so repeated lookups of the same ISBN,
+     * including ISBNs that do not exist, are answered without a database round trip
+     * until the cache entry expires. Every call returns a fresh copy that the caller may modify.
+     * </p>
+     *
+     * @param isbn the ISBN of the book to retrieve.
+     * @return the matching {@link Book} if found, or null otherwise.
+     */
+    @Override
+    public Book getBookByISBN(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            Book book = bookCache.get(isbn, key -> {
+                List<Book> rows = queryList("SELECT isbn, title, editionNumber, copyright FROM titles WHERE isbn = ?",
+                        stmt -> stmt.setString(1, key), BookDatabaseManager::mapBook);
+                return rows.isEmpty() ? null : rows.get(0);
+            });
+            metrics.get("getBookByISBN").record(start, (book == null) ? 0 : 1);
+            return (book == null) ? null : copyOf(book);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getBookByISBN").recordError(start);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves a single {@link Author} object from the <strong>authors</strong> table
+     * based on the provided author ID.
+     *
+     * <p>
+     * Lookups go through a read-through cache, as in {@link #getBookByISBN(String)}.
+     * </p>
+     *
+     * @param authorID the ID of the author to retrieve.
+     * @return the matching {@link Author} if found, or null otherwise.
+     */
+    @Override
+    public Author getAuthorByID(int authorID) {
+        long start = System.nanoTime();
+        try {
+            Author author = authorCache.get(authorID, key -> {
+                List<Author> rows = queryList("SELECT authorID, firstName, lastName FROM authors WHERE authorID = ?",
+                        stmt -> stmt.setInt(1, key), BookDatabaseManager::mapAuthor);
+                return rows.isEmpty() ? null : rows.get(0);
+            });
+            metrics.get("getAuthorByID").record(start, (author == null) ? 0 : 1);
+            return (author == null) ? null : copyOf(author);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getAuthorByID").recordError(start);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves all {@link Author} objects from the <strong>authors</strong> table.
+     *
+     * @return a {@link List} of all authors; if none found, an empty list is returned.
+     */
+    @Override
+    public List<Author> getAllAuthors() {
+        long start = System.nanoTime();
+        List<Author> authors = new ArrayList<>();
+        String sql = "SELECT authorID, firstName, lastName FROM authors"; //ensure table name is correct
+
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                Author author = mapAuthor(rs);
+
+                authors.add(author);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getAllAuthors").recordError(start);
+            return authors;
+        }
+        metrics.get("getAllAuthors").record(start, authors.size());
+        return authors;
+    }
+
+    /**
+     * Retrieves every {@link Book} together with its authors in a single query.
+     * <p>
+     * The <strong>titles</strong>, <strong>authorISBN</strong> and <strong>authors</strong>
+     * tables are joined, and the rows are folded into a bidirectional object graph in one
+     * pass: each book's {@link Book#getAuthors()} is filled, and each author appears as
+     * a single shared object whose {@link Author#getBooks()} holds the books it was seen
+     * with. Books without authors are included with an empty author list.
+     * </p>
+     *
+     * @return a {@link List} of all books ordered by ISBN; an empty list if the query failed.
+     */
+    @Override
+    public List<Book> getBooksWithAuthors() {
+        long start = System.nanoTime();
+        Map<String, Book> books = new LinkedHashMap<>();
+        try {
+            fetchGraph(BOOKS_WITH_AUTHORS + " ORDER BY t.isbn", stmt -> { }, books, new LinkedHashMap<>());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getBooksWithAuthors").recordError(start);
+            return new ArrayList<>(books.values());
+        }
+        metrics.get("getBooksWithAuthors").record(start, books.size());
+        return new ArrayList<>(books.values());
+    }
+
+    /**
+     * Retrieves the books with the given ISBNs together with their authors.
+     * <p>
+     * The ISBNs are looked up in chunks of at most {@value #MAX_IN_LIST_SIZE} through
+     * {@code IN (...)} lists, so the number of queries depends only on the number of ISBNs
+     * passed in, never on how many authors they have. The graph is built as in
+     * {@link #getBooksWithAuthors()}; an author's book list holds only the requested books.
+     * ISBNs that do not exist are skipped.
+     * </p>
+     *
+     * @param isbns the ISBNs of the books to retrieve.
+     * @return the matching books ordered by ISBN within each chunk; an empty list if the query failed.
+     */
+    @Override
+    public List<Book> getBooksWithAuthors(Collection<String> isbns) {
+        long start = System.nanoTime();
+        Map<String, Book> books = new LinkedHashMap<>();
+        Map<Integer, Author> authors = new LinkedHashMap<>();
+        try {
+            for (List<Object> chunk : chunks(isbns)) {
+                fetchGraph(BOOKS_WITH_AUTHORS + " WHERE t.isbn IN (" + placeholders(chunk.size()) + ") ORDER BY t.isbn",
+                        stmt -> bindAll(stmt, chunk), books, authors);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getBooksWithAuthors").recordError(start);
+            return new ArrayList<>(books.values());
+        }
+        metrics.get("getBooksWithAuthors").record(start, books.size());
+        return new ArrayList<>(books.values());
+    }
+
+    /**
+     * Retrieves every {@link Author} together with their books in a single query.
+     * The graph is built as in {@link #getBooksWithAuthors()}; authors without books are
+     * included with an empty book list.
+     *
+     * @return a {@link List} of all authors ordered by ID; an empty list if the query failed.
+     */
+    @Override
+    public List<Author> getAuthorsWithBooks() {
+        long start = System.nanoTime();
+        Map<Integer, Author> authors = new LinkedHashMap<>();
+        try {
+            fetchGraph(AUTHORS_WITH_BOOKS + " ORDER BY a.authorID", stmt -> { }, new LinkedHashMap<>(), authors);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getAuthorsWithBooks").recordError(start);
+            return new ArrayList<>(authors.values());
+        }
+        metrics.get("getAuthorsWithBooks").record(start, authors.size());
+        return new ArrayList<>(authors.values());
+    }
+
+    /**
+     * Retrieves the authors with the given IDs together with their books, in chunks of
+     * at most {@value #MAX_IN_LIST_SIZE} IDs per query. See {@link #getBooksWithAuthors(Collection)}.
+     *
+     * @param authorIDs the IDs of the authors to retrieve.
+     * @return the matching authors ordered by ID within each chunk; an empty list if the query failed.
+     */
+    @Override
+    public List<Author> getAuthorsWithBooks(Collection<Integer> authorIDs) {
+        long start = System.nanoTime();
+        Map<String, Book> books = new LinkedHashMap<>();
+        Map<Integer, Author> authors = new LinkedHashMap<>();
+        try {
+            for (List<Object> chunk : chunks(authorIDs)) {
+                fetchGraph(AUTHORS_WITH_BOOKS + " WHERE a.authorID IN (" + placeholders(chunk.size()) + ") ORDER BY a.authorID",
+                        stmt -> bindAll(stmt, chunk), books, authors);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get("getAuthorsWithBooks").recordError(start);
+            return new ArrayList<>(authors.values());
+        }
+        metrics.get("getAuthorsWithBooks").record(start, authors.size());
+        return new ArrayList<>(authors.values());
+    }
+
+    /**
+     * Runs a join of books and authors and links every row into the given maps, reusing
+     * the objects already there so that each book and author is created only once.
+     * Either side of a row may be missing because of the outer join.
+     */
+    private void fetchGraph(String sql, ParameterSetter params, Map<String, Book> books,
+                            Map<Integer, Author> authors) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            params.set(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Book book = null;
+                    String isbn = rs.getString("isbn");
+                    if (isbn != null) {
+                        book = books.get(isbn);
+                        if (book == null) {
+                            book = mapBook(rs);
+                            books.put(isbn, book);
+                        }
+                    }
+
+                    Author author = null;
+                    int authorID = rs.getInt("authorID");
+                    if (!rs.wasNull()) {
+                        author = authors.get(authorID);
+                        if (author == null) {
+                            author = mapAuthor(rs);
+                            authors.put(authorID, author);
+                        }
+                    }
+
+                    if (book != null && author != null) {
+                        book.addAuthor(author);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits keys into de-duplicated chunks that fit in one {@code IN (...)} list.
+     */
+    private static List<List<Object>> chunks(Collection<?> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        distinct.remove(null);
+        List<List<Object>> chunks = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i += MAX_IN_LIST_SIZE) {
+            chunks.add(distinct.subList(i, Math.min(i + MAX_IN_LIST_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static void bindAll(PreparedStatement stmt, List<Object> values) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            stmt.setObject(i + 1, values.get(i));
+        }
+    }
+
+    /**
+     * Retrieves one page of books from the <strong>titles</strong> table, ordered by ISBN.
+     *
+     * @param pageToken the token from the previous page, or {@code null} for the first page.
+     * @param pageSize  the number of books per page.
+     * @return the requested {@link Page}; an empty page if the query failed.
+     * @throws IllegalArgumentException if the page token is malformed.
+     * @see #getBooksPage(BookSort, String, int)
+     */
+    @Override
+    public Page<Book> getBooksPage(String pageToken, int pageSize) {
+        return getBooksPage(BookSort.ISBN, pageToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of books from the <strong>titles</strong> table in the given order.
+     * <p>
+     * The database sorts the rows with <code>ORDER BY</code> on the columns of the
+     * {@link BookSort}, and pages are found by seeking past the sort key of the last row of
+     * the previous page (e.g. <code>WHERE title &gt; ? OR (title = ? AND isbn &gt; ?)</code>)
+     * rather than with OFFSET, so the database reads only the rows it returns and page 5,000
+     * costs the same as page 1.
+     * </p>
+     *
+     * @param sort      the order of the books.
+     * @param pageToken the token from the previous page, or {@code null} for the first page.
+     *                  A token only continues the order it was issued for.
+     * @param pageSize  the number of books per page; values below 1 use {@value #DEFAULT_PAGE_SIZE}
+     *                  and values above {@value #MAX_PAGE_SIZE} are capped.
+     * @return the requested {@link Page}; an empty page if the query failed.
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order.
+     */
+    @Override
+    public Page<Book> getBooksPage(BookSort sort, String pageToken, int pageSize) {
+        return seekPage("getBooksPage", "SELECT isbn, title, editionNumber, copyright FROM titles", "books." + sort.name(),
+                sort.getColumns(), sort::parseKey, pageToken, pageSize, BookDatabaseManager::mapBook, sort::keyOf);
+    }
+
+    /**
+     * Retrieves one page of authors from the <strong>authors</strong> table, ordered by
+     * <code>authorID</code>.
+     *
+     * @param pageToken the token from the previous page, or {@code null} for the first page.
+     * @param pageSize  the number of authors per page.
+     * @return the requested {@link Page}; an empty page if the query failed.
+     * @throws IllegalArgumentException if the page token is malformed.
+     * @see #getAuthorsPage(AuthorSort, String, int)
+     */
+    @Override
+    public Page<Author> getAuthorsPage(String pageToken, int pageSize) {
+        return getAuthorsPage(AuthorSort.ID, pageToken, pageSize);
+    }
+
+    /**
+     * Retrieves one page of authors from the <strong>authors</strong> table in the given order.
+     * Sorting and pagination work as in {@link #getBooksPage(BookSort, String, int)}.
+     *
+     * @param sort      the order of the authors.
+     * @param pageToken the token from the previous page, or {@code null} for the first page.
+     *                  A token only continues the order it was issued for.
+     * @param pageSize  the number of authors per page; values below 1 use {@value #DEFAULT_PAGE_SIZE}
+     *                  and values above {@value #MAX_PAGE_SIZE} are capped.
+     * @return the requested {@link Page}; an empty page if the query failed.
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order.
+     */
+    @Override
+    public Page<Author> getAuthorsPage(AuthorSort sort, String pageToken, int pageSize) {
+        return seekPage("getAuthorsPage", "SELECT authorID, firstName, lastName FROM authors", "authors." + sort.name(),
+                sort.getColumns(), sort::parseKey, pageToken, pageSize, BookDatabaseManager::mapAuthor, sort::keyOf);
+    }
+
+    /**
+     * Runs a keyset-paginated query: rows are ordered by the given columns, which must end
+     * in a unique key, and the page starts after the key stored in the page token.
+     */
+    private <T> Page<T> seekPage(String operation, String select, String kind, String[] columns,
+                                 Function<String[], Object[]> parseKey, String pageToken, int pageSize,
+                                 RowMapper<T> mapper, Function<T, Object[]> keyOf) {
+        long start = System.nanoTime();
+        int limit = clampPageSize(pageSize);
+        Object[] after = (pageToken == null) ? null : parseKey.apply(PageToken.decode(pageToken, kind, columns.length));
+
+        StringBuilder sql = new StringBuilder(select);
+        if (after != null) {
+            sql.append(" WHERE ").append(seekPredicate(columns, after));
+        }
+        sql.append(" ORDER BY ").append(String.join(", ", columns)).append(" LIMIT ?");
+
+        try {
+            List<T> rows = queryList(sql.toString(), stmt -> {
+                int index = 1;
+                if (after != null) {
+                    for (int i = 0; i < columns.length; i++) {
+                        for (int j = 0; j <= i; j++) {
+                            if (after[j] != null) {
+                                stmt.setObject(index++, after[j]);
+                            }
+                        }
+                    }
+                }
+                stmt.setInt(index, limit + 1);
+            }, mapper);
+            metrics.get(operation).record(start, rows.size());
+            return toPage(rows, limit, last -> PageToken.encodeKey(kind, keyOf.apply(last)));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            metrics.get(operation).recordError(start);
+        }
+        return new Page<>(new ArrayList<>(), null);
+    }
+
+    /**
+     * Builds the predicate that selects rows after a sort key, e.g. for (a, b):
+     * <code>(a &gt; ?) OR (a = ? AND b &gt; ?)</code>. The parameters are bound in order
+     * as key[0], then key[0..1], and so on, skipping {@code null} values: MySQL sorts NULL
+     * before every value, so "after NULL" is written <code>a IS NOT NULL</code> and
+     * "equal to NULL" <code>a IS NULL</code>, neither of which takes a parameter.
+     */
+    private static String seekPredicate(String[] columns, Object[] after) {
+        StringBuilder predicate = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                predicate.append(" OR ");
+            }
+            predicate.append('(');
+            for (int j = 0; j < i; j++) {
+                predicate.append(columns[j]).append((after[j] == null) ? " IS NULL AND " : " = ? AND ");
+            }
+            predicate.append(columns[i]).append((after[i] == null) ? " IS NOT NULL)" : " > ?)");
+        }
+        return predicate.append(')').toString();
+    }
+
+    /**
+     * Returns the page size actually used for a requested page size.
+     *
+     * @param pageSize the requested page size
+     * @return {@value #DEFAULT_PAGE_SIZE} if the request is below 1, otherwise the request
+     *         capped at {@value #MAX_PAGE_SIZE}
+     */
+    static int clampPageSize(int pageSize) {
+        if (pageSize < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Turns the rows of a query that asked for one row more than the page size into a
+     * {@link Page}; the extra row only signals that another page exists.
+     */
+    private static <T> Page<T> toPage(List<T> rows, int limit, Function<T, String> tokenForLast) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, limit));
+        return new Page<>(items, tokenForLast.apply(items.get(limit - 1)));
+    }
+
+    /**
+     * Streams every {@link Book} from the <strong>titles</strong> table without loading
+     * the whole table into memory.
+     * <p>
+     * Rows are read through a forward-only, read-only result set that is streamed from
+     * the server, or fetched through a cursor, as {@link #setFetchSize(int)} describes, so
+     * memory use stays the same however large the table is. The stream holds a pooled
+     * connection until it is closed, so it must be used in a try-with-resources block. The
+     * connection is also released as soon as the last row has been read.
+     * </p>
+     * <pre>
+     * try (Stream&lt;Book&gt; books = manager.streamBooks()) {
+     *     books.limit(10).forEach(System.out::println);
+     * }
+     * </pre>
+     *
+     * @return a {@link Stream} of all books that must be closed by the caller;
+     *         an empty stream if the query could not be run.
+     * @throws RuntimeException while iterating, if a row cannot be read.
+     */
+    @Override
+    public Stream<Book> streamBooks() {
+        return streamQuery("streamBooks", "SELECT isbn, title, editionNumber, copyright FROM titles",
+                BookDatabaseManager::mapBook);
+    }
+
+    /**
+     * Streams every {@link Author} from the <strong>authors</strong> table without loading
+     * the whole table into memory. See {@link #streamBooks()} for how the stream must be used.
+     *
+     * @return a {@link Stream} of all authors that must be closed by the caller;
+     *         an empty stream if the query could not be run.
+     * @throws RuntimeException while iterating, if a row cannot be read.
+     */
+    @Override
+    public Stream<Author> streamAuthors() {
+        return streamQuery("streamAuthors", "SELECT authorID, firstName, lastName FROM authors",
+                BookDatabaseManager::mapAuthor);
+    }
+
+    /**
+     * Passes every {@link Book} in the <strong>titles</strong> table to the given callback,
+     * one row at a time. The connection is released when this method returns, even if
+     * the callback throws.
+     *
+     * @param action the callback to receive each book.
+     * @return the number of books passed to the callback.
+     */
+    @Override
+    public int forEachBook(Consumer<Book> action) {
+        try {
+            return scanBooks(action);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Passes every {@link Author} in the <strong>authors</strong> table to the given callback,
+     * one row at a time. The connection is released when this method returns, even if
+     * the callback throws.
+     *
+     * @param action the callback to receive each author.
+     * @return the number of authors passed to the callback.
+     */
+    @Override
+    public int forEachAuthor(Consumer<Author> action) {
+        try {
+            return scanAuthors(action);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Passes every {@link Book} in the <strong>titles</strong> table to the given callback,
+     * like {@link #forEachBook(Consumer)}, but reports a database failure to the caller
+     * instead of treating it as an empty table. Use this when a partial read must not be
+     * mistaken for the whole catalog.
+     *
+     * @param action the callback to receive each book.
+     * @return the number of books passed to the callback.
+     * @throws SQLException if the table could not be read completely.
+     */
+    @Override
+    public int scanBooks(Consumer<Book> action) throws SQLException {
+        return scan("scanBooks", "SELECT isbn, title, editionNumber, copyright FROM titles", BookDatabaseManager::mapBook,
+                action);
+    }
+
+    /**
+     * Passes every {@link Author} in the <strong>authors</strong> table to the given callback,
+     * reporting a database failure to the caller. See {@link #scanBooks(Consumer)}. Every
+     * author read is also added to the name index used by {@link #addAuthor(Author)}, so
+     * a full scan warms it.
+     *
+     * @param action the callback to receive each author.
+     * @return the number of authors passed to the callback.
+     * @throws SQLException if the table could not be read completely.
+     */
+    @Override
+    public int scanAuthors(Consumer<Author> action) throws SQLException {
+        return scan("scanAuthors", "SELECT authorID, firstName, lastName FROM authors", BookDatabaseManager::mapAuthor, author -> {
+            authorNames.put(author);
+            action.accept(author);
+        });
+    }
+
+    /**
+     * Passes every row of the <strong>authorISBN</strong> table to the given callback as
+     * the ISBN and the authorID, reporting a database failure to the caller. See
+     * {@link #scanBooks(Consumer)}.
+     *
+     * @param action the callback to receive each link.
+     * @return the number of links passed to the callback.
+     * @throws SQLException if the table could not be read completely.
+     */
+    @Override
+    public int scanLinks(ObjIntConsumer<String> action) throws SQLException {
+        long start = System.nanoTime();
+        int count = 0;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT isbn, authorID FROM authorISBN",
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(rs.getString("isbn"), rs.getInt("authorID"));
+                    count++;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            metrics.get("scanLinks").recordError(start);
+            throw e;
+        }
+        metrics.get("scanLinks").record(start, count);
+        return count;
+    }
+
+    /**
+     * Reads every row of a query through a forward-only cursor and passes it to a callback.
+     */
+    private <T> int scan(String operation, String sql, RowMapper<T> mapper, Consumer<T> action) throws SQLException {
+        long start = System.nanoTime();
+        int count = 0;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(mapper.map(rs));
+                    count++;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            metrics.get(operation).recordError(start);
+            throw e;
+        }
+        metrics.get(operation).record(start, count);
+        return count;
+    }
+
+    /**
+     * Maps the current row of a result set with the columns of <strong>titles</strong>
+     * to a {@link Book}. Package-private so the benchmarks can measure it on its own.
+     */
+    static Book mapBook(ResultSet rs) throws SQLException {
+        return new Book(
+                rs.getString("isbn"),
+                rs.getString("title"),
+                rs.getInt("editionNumber"),
+                rs.getString("copyright")
+        );
+    }
+
+    /**
+     * Copies the columns of a book, but not its authors, so that cached books are never
+     * shared with callers.
+     */
+    private static Book copyOf(Book book) {
+        return new Book(book.getIsbn(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+    }
+
+    /**
+     * Copies the columns of an author, but not its books, so that cached authors are never
+     * shared with callers.
+     */
+    private static Author copyOf(Author author) {
+        return new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+    }
+
+    /**
+     * Maps the current row of a result set with the columns of <strong>authors</strong>
+     * to an {@link Author}.
+     */
+    static Author mapAuthor(ResultSet rs) throws SQLException {
+        return new Author(
+                rs.getInt("authorID"),
+                rs.getString("firstName"),
+                rs.getString("lastName")
+        );
+    }
+
+    /**
+     * Maps the current row of a {@link ResultSet} to an object.
+     */
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Binds the parameters of a query.
+     */
+    private interface ParameterSetter {
+        void set(PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Runs a query and maps every row of its result into a list.
+     */
+    private <T> List<T> queryList(String sql, ParameterSetter params, RowMapper<T> mapper) throws SQLException {
+        List<T> rows = new ArrayList<>();
+        try (Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            params.set(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(mapper.map(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a query and exposes its rows as a lazily read {@link Stream} that owns the
+     * connection, statement and result set until it is closed or exhausted.
+     */
+    private <T> Stream<T> streamQuery(String operation, String sql, RowMapper<T> mapper) {
+        long start = System.nanoTime();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = pool.getConnection();
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            closeQuietly(rs, stmt, conn);
+            metrics.get(operation).recordError(start);
+            return Stream.empty();
+        }
+        RowCursor<T> cursor = new RowCursor<>(conn, stmt, rs, mapper, metrics.get(operation), start);
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A spliterator that reads one row per advance and closes its JDBC resources once
+     * the rows run out, a row fails, or the stream is closed.
+     */
+    private static final class RowCursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private final OperationStats stats;
+        private final long start;
+        private long rows;
+        private boolean failed;
+        private boolean closed;
+
+        private RowCursor(Connection conn, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper,
+                          OperationStats stats, long start) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+            this.mapper = mapper;
+            this.stats = stats;
+            this.start = start;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            T row;
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                row = mapper.map(rs);
+                rows++;
+            } catch (SQLException e) {
+                failed = true;
+                close();
+                throw new RuntimeException("Failed to read the next row", e);
+            }
+            action.accept(row);
+            return true;
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                closeQuietly(rs, stmt, conn);
+                //a stream is timed from the query until it is exhausted or closed
+                if (failed) {
+                    stats.recordError(start);
+                } else {
+                    stats.record(start, rows);
+                }
+            }
         }
-        return authors;
     }
 }
@@ -0,0 +1,110 @@
+import java.util.Locale;
+
+/**
+ * The orders in which {@link BookDatabaseManager} can list books.
+ * <p>
+ * Each order is a list of columns that ends in the primary key, so that rows with the
+ * same title, copyright or edition still have a stable position. Sorting happens in the
+ * database through <code>ORDER BY</code> on indexed columns, which also makes the
+ * comparison follow the column collation, and keyset pagination seeks on the same columns.
+ * See <em>sql/catalog-indexes.sql</em> for the matching indexes.
+ * </p>
+ */
+public enum BookSort {
+    ISBN("isbn"),
+    TITLE("title", "isbn"),
+    COPYRIGHT("copyright", "isbn"),
+    EDITION("editionNumber", "isbn");
+
+    private final String[] columns;
+
+    BookSort(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the columns of the <strong>titles</strong> table this order sorts by.
+     *
+     * @return the sort columns, most significant first
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the value of the <code>sort</code> request parameter that selects this order.
+     *
+     * @return the request parameter value
+     */
+    public String getParameter() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the sort key of a book, one value per sort column.
+     *
+     * @param book the book to take the key from
+     * @return the values of the sort columns for the book
+     */
+    public Object[] keyOf(Book book) {
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case "title":
+                    key[i] = book.getTitle();
+                    break;
+                case "copyright":
+                    key[i] = book.getCopyright();
+                    break;
+                case "editionNumber":
+                    key[i] = book.getEditionNumber();
+                    break;
+                default:
+                    key[i] = book.getIsbn();
+                    break;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Converts the key values stored in a page token back to the types of the sort columns.
+     *
+     * @param values the key values as strings, one per sort column
+     * @return the typed key values
+     * @throws IllegalArgumentException if a value does not fit its column
+     */
+    public Object[] parseKey(String[] values) {
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals("editionNumber")) {
+                try {
+                    key[i] = Integer.valueOf(values[i]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed page token", e);
+                }
+            } else {
+                key[i] = values[i];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the order selected by a <code>sort</code> request parameter.
+     *
+     * @param parameter the request parameter value, e.g. <code>title</code>
+     * @param defaultSort the order to use if the parameter is missing or unknown
+     * @return the matching order, or <code>defaultSort</code>
+     */
+    public static BookSort fromParameter(String parameter, BookSort defaultSort) {
+        if (parameter != null) {
+            for (BookSort sort : values()) {
+                if (sort.getParameter().equalsIgnoreCase(parameter.trim())) {
+                    return sort;
+                }
+            }
+        }
+        return defaultSort;
+    }
+}
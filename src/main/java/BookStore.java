@@ -0,0 +1,279 @@
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * The operations on the catalog of books and authors, independent of where the catalog
+ * is stored.
+ * <p>
+ * {@link BookDatabaseManager} keeps the catalog in MySQL; {@link EmbeddedBookStore} keeps
+ * it in memory and in local files. {@link LibraryData} and {@link Library} work with
+ * either. The methods behave as documented on {@link BookDatabaseManager}: writes report
+ * failures through their return value or {@link BatchResult} rather than by throwing,
+ * and objects returned by reads belong to the caller. Page tokens are only understood
+ * by the implementation that issued them, since each orders pages its own way: the
+ * database by its collation, {@link EmbeddedBookStore} ignoring case.
+ * </p>
+ */
+public interface BookStore {
+
+    /**
+     * Returns the version of the catalog, which changes after every successful write made
+     * through this store.
+     *
+     * @return the {@link CatalogVersion} of this store
+     */
+    CatalogVersion getCatalogVersion();
+
+    /**
+     * Adds a new book without authors.
+     *
+     * @param book the book to add
+     * @return true if the book was added, false if it could not be, e.g. because its ISBN exists
+     */
+    boolean addBook(Book book);
+
+    /**
+     * Updates the title, edition and copyright of the book with the same ISBN.
+     *
+     * @param book the book with the new values
+     * @return true if the book was updated, false if it does not exist or could not be written
+     */
+    boolean updateBook(Book book);
+
+    /**
+     * Adds an author unless one with the same name exists, and sets its authorID.
+     *
+     * @param author the author to add
+     * @return true if the author was found or added, false otherwise
+     */
+    boolean addAuthor(Author author);
+
+    /**
+     * Updates the name of the author with the same authorID.
+     *
+     * @param author the author with the new name
+     * @return true if the author was updated, false if it does not exist or could not be written
+     */
+    boolean updateAuthor(Author author);
+
+    /**
+     * Adds many books without authors, in batches of the default size.
+     *
+     * @param books the books to add
+     * @return the number of added books and any per-book failures
+     */
+    BatchResult<Book> addBooks(Collection<Book> books);
+
+    /**
+     * Adds many books without authors, in batches of the given size.
+     *
+     * @param books     the books to add
+     * @param batchSize the number of books written together
+     * @return the number of added books and any per-book failures
+     */
+    BatchResult<Book> addBooks(Collection<Book> books, int batchSize);
+
+    /**
+     * Adds many authors as {@link #addAuthor(Author)} does, in batches of the default size.
+     *
+     * @param authors the authors to add
+     * @return the number of added or found authors and any per-author failures
+     */
+    BatchResult<Author> addAuthors(Collection<Author> authors);
+
+    /**
+     * Adds many authors as {@link #addAuthor(Author)} does, in batches of the given size.
+     *
+     * @param authors   the authors to add
+     * @param batchSize the number of authors written together
+     * @return the number of added or found authors and any per-author failures
+     */
+    BatchResult<Author> addAuthors(Collection<Author> authors, int batchSize);
+
+    /**
+     * Adds a book together with its authors and the links between them, all or nothing.
+     *
+     * @param book the book to add, with its authors
+     * @return true if everything was written, false otherwise
+     */
+    boolean addBookWithAuthors(Book book);
+
+    /**
+     * Adds many books together with their authors, as {@link #addBookWithAuthors(Book)}
+     * does for one book; only the books that cannot be written fail.
+     *
+     * @param books the books to add, with their authors
+     * @return the number of added books and any per-book failures
+     */
+    BatchResult<Book> addBooksWithAuthors(Collection<Book> books);
+
+    /**
+     * Returns every book, without authors.
+     *
+     * @return all books; an empty list if they could not be read
+     */
+    List<Book> getAllBooks();
+
+    /**
+     * Returns the book with the given ISBN, without authors.
+     *
+     * @param isbn the ISBN
+     * @return a copy of the book, or null if there is none
+     */
+    Book getBookByISBN(String isbn);
+
+    /**
+     * Returns the author with the given authorID, without books.
+     *
+     * @param authorID the authorID
+     * @return a copy of the author, or null if there is none
+     */
+    Author getAuthorByID(int authorID);
+
+    /**
+     * Returns every author, without books.
+     *
+     * @return all authors; an empty list if they could not be read
+     */
+    List<Author> getAllAuthors();
+
+    /**
+     * Returns every book linked to its authors, ordered by ISBN.
+     *
+     * @return all books with their authors; an empty list if they could not be read
+     */
+    List<Book> getBooksWithAuthors();
+
+    /**
+     * Returns the books with the given ISBNs linked to their authors; unknown ISBNs are skipped.
+     *
+     * @param isbns the ISBNs
+     * @return the matching books with their authors
+     */
+    List<Book> getBooksWithAuthors(Collection<String> isbns);
+
+    /**
+     * Returns every author linked to their books, ordered by authorID.
+     *
+     * @return all authors with their books; an empty list if they could not be read
+     */
+    List<Author> getAuthorsWithBooks();
+
+    /**
+     * Returns the authors with the given authorIDs linked to their books; unknown IDs are skipped.
+     *
+     * @param authorIDs the authorIDs
+     * @return the matching authors with their books
+     */
+    List<Author> getAuthorsWithBooks(Collection<Integer> authorIDs);
+
+    /**
+     * Returns one page of books ordered by ISBN.
+     *
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of books per page
+     * @return the requested page
+     * @throws IllegalArgumentException if the page token is malformed
+     */
+    Page<Book> getBooksPage(String pageToken, int pageSize);
+
+    /**
+     * Returns one page of books in the given order.
+     *
+     * @param sort      the order of the books
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of books per page
+     * @return the requested page
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order
+     */
+    Page<Book> getBooksPage(BookSort sort, String pageToken, int pageSize);
+
+    /**
+     * Returns one page of authors ordered by authorID.
+     *
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of authors per page
+     * @return the requested page
+     * @throws IllegalArgumentException if the page token is malformed
+     */
+    Page<Author> getAuthorsPage(String pageToken, int pageSize);
+
+    /**
+     * Returns one page of authors in the given order.
+     *
+     * @param sort      the order of the authors
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of authors per page
+     * @return the requested page
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order
+     */
+    Page<Author> getAuthorsPage(AuthorSort sort, String pageToken, int pageSize);
+
+    /**
+     * Streams every book. The stream must be closed.
+     *
+     * @return a stream of all books
+     */
+    Stream<Book> streamBooks();
+
+    /**
+     * Streams every author. The stream must be closed.
+     *
+     * @return a stream of all authors
+     */
+    Stream<Author> streamAuthors();
+
+    /**
+     * Passes every book to the given callback.
+     *
+     * @param action the callback to receive each book
+     * @return the number of books passed to the callback; 0 if they could not be read
+     */
+    int forEachBook(Consumer<Book> action);
+
+    /**
+     * Passes every author to the given callback.
+     *
+     * @param action the callback to receive each author
+     * @return the number of authors passed to the callback; 0 if they could not be read
+     */
+    int forEachAuthor(Consumer<Author> action);
+
+    /**
+     * Passes every book to the given callback, reporting a failure to read them all.
+     *
+     * @param action the callback to receive each book
+     * @return the number of books passed to the callback
+     * @throws SQLException if the books could not be read completely
+     */
+    int scanBooks(Consumer<Book> action) throws SQLException;
+
+    /**
+     * Passes every author to the given callback, reporting a failure to read them all.
+     *
+     * @param action the callback to receive each author
+     * @return the number of authors passed to the callback
+     * @throws SQLException if the authors could not be read completely
+     */
+    int scanAuthors(Consumer<Author> action) throws SQLException;
+
+    /**
+     * Passes every link between a book and an author to the given callback as the ISBN
+     * and the authorID, reporting a failure to read them all.
+     *
+     * @param action the callback to receive each link
+     * @return the number of links passed to the callback
+     * @throws SQLException if the links could not be read completely
+     */
+    int scanLinks(ObjIntConsumer<String> action) throws SQLException;
+
+    /**
+     * Releases what the store holds open. The default does nothing.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * The {@code CacheStats} class is an immutable snapshot of an {@link EntityCache}'s counters.
+ * <p>
+ * Hits, misses and evictions are cumulative since the cache was created; the size is
+ * the number of entries, including cached misses, at the moment the snapshot was taken.
+ * </p>
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+
+    /**
+     * Constructs a {@code CacheStats} snapshot.
+     *
+     * @param hits      the number of lookups answered from the cache
+     * @param misses    the number of lookups that went to the loader
+     * @param evictions the number of entries evicted to stay within the size bound
+     * @param size      the current number of entries
+     */
+    public CacheStats(long hits, long misses, long evictions, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that went to the loader.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the size bound.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries in the cache, including cached misses.
+     *
+     * @return the current size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns a string representation of the snapshot.
+     *
+     * @return a formatted string with the cache counters
+     */
+    @Override
+    public String toString() {
+        return "Hits: " + hits + ", Misses: " + misses + ", Evictions: " + evictions
+                + ", Size: " + size + ", Hit rate: " + String.format("%.3f", getHitRate());
+    }
+}
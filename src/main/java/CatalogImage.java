@@ -0,0 +1,497 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A read-only copy of the catalog (books, authors and the links between them) in a
+ * compact binary file, which is memory-mapped when it is opened so the catalog is
+ * available without reading the database.
+ * <p>
+ * {@link LibraryData} exports an image periodically and when it is taken out of service,
+ * and builds its in-memory indexes from the image on the next startup instead of reading
+ * the tables. Opening an image maps the file and verifies its checksum. The accessors
+ * such as {@link #getTitle(int)} return {@link CharSequence} views of the mapped file, so
+ * reading a title or a name copies nothing. {@link #forEachBook(Consumer)},
+ * {@link #forEachAuthor(Consumer)} and {@link #forEachBookWithAuthors(Consumer)} decode
+ * the rows straight from the mapping, but they do copy every string: {@link Book} and
+ * {@link Author} hold {@link String}s, and the indexes built from them keep those strings
+ * after the image is gone.
+ * </p>
+ *
+ * <p>
+ * The file starts with a header: a magic number, {@link #FORMAT_VERSION}, the time the
+ * export started, the number of books, authors, links and characters, and the position
+ * of a string naming the store the image was exported from. Then follow the books, the
+ * authors and the links (book position and authorID, grouped by book) as fixed-size
+ * records, the UTF-16 characters of every string, and a CRC-32 of everything before it. An image is written to a temporary file and renamed into place,
+ * so readers never see a partial file. Images of another format version are rejected,
+ * never converted.
+ * </p>
+ *
+ * <p>
+ * An image is immutable and may be read by many threads at once.
+ * </p>
+ */
+public final class CatalogImage {
+    /** The version of the file format written by this class. */
+    public static final int FORMAT_VERSION = 3;
+
+    private static final int MAGIC = 0x4C424349; //"LBCI"
+
+    //header: magic, version, writtenAtMillis, counts, source position
+    private static final int HEADER_SIZE = 40;
+
+    //isbn offset/length, title offset/length, edition, copyright offset/length
+    private static final int BOOK_RECORD_SIZE = 28;
+
+    //authorID, first name offset/length, last name offset/length
+    private static final int AUTHOR_RECORD_SIZE = 20;
+
+    //book position, authorID
+    private static final int LINK_RECORD_SIZE = 8;
+
+    private static final int CHECKSUM_SIZE = 8;
+
+    private final ByteBuffer books;
+    private final ByteBuffer authors;
+    private final ByteBuffer links;
+    private final CharBuffer chars;
+    private final int bookCount;
+    private final int authorCount;
+    private final int linkCount;
+    private final long writtenAtMillis;
+    private final String source;
+
+    private CatalogImage(MappedByteBuffer file, long writtenAtMillis, int bookCount, int authorCount,
+                         int linkCount, int charCount, int sourceOffset, int sourceLength) {
+        int position = HEADER_SIZE;
+        this.books = file.slice(position, bookCount * BOOK_RECORD_SIZE);
+        position += bookCount * BOOK_RECORD_SIZE;
+        this.authors = file.slice(position, authorCount * AUTHOR_RECORD_SIZE);
+        position += authorCount * AUTHOR_RECORD_SIZE;
+        this.links = file.slice(position, linkCount * LINK_RECORD_SIZE);
+        position += linkCount * LINK_RECORD_SIZE;
+        this.chars = file.slice(position, charCount * Character.BYTES).asCharBuffer();
+        this.bookCount = bookCount;
+        this.authorCount = authorCount;
+        this.linkCount = linkCount;
+        this.writtenAtMillis = writtenAtMillis;
+        this.source = (sourceLength < 0) ? null : view(sourceOffset, sourceLength).toString();
+    }
+
+    /**
+     * Maps an image file and checks that it is complete and of this format version.
+     *
+     * @param file the image file
+     * @return the image
+     * @throws java.nio.file.NoSuchFileException if the file does not exist
+     * @throws IOException if the file could not be read, is not an image, is of another
+     *                     format version or fails its checksum
+     */
+    public static CatalogImage open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a catalog image: " + file);
+            }
+            //the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a catalog image: " + file);
+            }
+            if (mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Catalog image " + file + " has format version " + mapped.getInt(4)
+                        + ", expected " + FORMAT_VERSION);
+            }
+            long writtenAtMillis = mapped.getLong(8);
+            int bookCount = mapped.getInt(16);
+            int authorCount = mapped.getInt(20);
+            int linkCount = mapped.getInt(24);
+            int charCount = mapped.getInt(28);
+            int sourceOffset = mapped.getInt(32);
+            int sourceLength = mapped.getInt(36);
+            long expectedSize = HEADER_SIZE + (long) bookCount * BOOK_RECORD_SIZE
+                    + (long) authorCount * AUTHOR_RECORD_SIZE + (long) linkCount * LINK_RECORD_SIZE
+                    + (long) charCount * Character.BYTES + CHECKSUM_SIZE;
+            if (bookCount < 0 || authorCount < 0 || linkCount < 0 || charCount < 0 || expectedSize != size) {
+                throw new IOException("Catalog image " + file + " is truncated or malformed");
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(0, (int) size - CHECKSUM_SIZE));
+            if (mapped.getLong((int) size - CHECKSUM_SIZE) != crc.getValue()) {
+                throw new IOException("Checksum mismatch in " + file);
+            }
+            return new CatalogImage(mapped, writtenAtMillis, bookCount, authorCount, linkCount, charCount,
+                    sourceOffset, sourceLength);
+        }
+    }
+
+    /**
+     * Reads the catalog from a store and writes it as an image. The store is read with
+     * {@link BookStore#scanAuthors}, {@link BookStore#scanBooks} and
+     * {@link BookStore#scanLinks}, so a failed read never produces an image of part of the
+     * catalog. Links to books or authors that were not read are left out.
+     *
+     * @param store  the store to read
+     * @param file   the image file to write; an existing image is replaced
+     * @param source the name of the store, returned by {@link #getSource()}
+     * @return the number of books written
+     * @throws SQLException if the store could not be read
+     * @throws IOException  if the image could not be written; an existing image is kept
+     */
+    public static int export(BookStore store, Path file, String source) throws SQLException, IOException {
+        long startedAtMillis = System.currentTimeMillis();
+        List<Author> authorList = new ArrayList<>();
+        List<Book> bookList = new ArrayList<>();
+        Map<String, List<Integer>> authorIDsByIsbn = new HashMap<>();
+        store.scanAuthors(authorList::add);
+        store.scanBooks(bookList::add);
+        store.scanLinks((isbn, authorID) -> authorIDsByIsbn.computeIfAbsent(isbn, key -> new ArrayList<>()).add(authorID));
+
+        Set<Integer> authorIDs = new HashSet<>();
+        for (Author author : authorList) {
+            authorIDs.add(author.getAuthorID());
+        }
+        //book position and authorID of every link, grouped by book
+        List<int[]> links = new ArrayList<>();
+        for (int i = 0; i < bookList.size(); i++) {
+            for (int authorID : authorIDsByIsbn.getOrDefault(bookList.get(i).getIsbn(), List.of())) {
+                if (authorIDs.contains(authorID)) {
+                    links.add(new int[]{i, authorID});
+                }
+            }
+        }
+        write(file, startedAtMillis, (source == null) ? "" : source, bookList, authorList, links);
+        return bookList.size();
+    }
+
+    private static void write(Path file, long writtenAtMillis, String source, List<Book> books,
+                              List<Author> authors, List<int[]> links) throws IOException {
+        long charCount = charsOf(source);
+        for (Book book : books) {
+            charCount += charsOf(book.getIsbn()) + charsOf(book.getTitle()) + charsOf(book.getCopyright());
+        }
+        for (Author author : authors) {
+            charCount += charsOf(author.getFirstName()) + charsOf(author.getLastName());
+        }
+        long size = HEADER_SIZE + (long) books.size() * BOOK_RECORD_SIZE + (long) authors.size() * AUTHOR_RECORD_SIZE
+                + (long) links.size() * LINK_RECORD_SIZE + charCount * Character.BYTES + CHECKSUM_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The catalog is too large for an image (" + size + " bytes)");
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(writtenAtMillis);
+            out.writeInt(books.size());
+            out.writeInt(authors.size());
+            out.writeInt(links.size());
+            out.writeInt((int) charCount);
+            out.writeInt(0);
+            out.writeInt(lengthOf(source));
+
+            //the strings are laid out in the order their records are written, after the source
+            int offset = charsOf(source);
+            for (Book book : books) {
+                offset = writeString(out, offset, book.getIsbn());
+                offset = writeString(out, offset, book.getTitle());
+                out.writeInt(book.getEditionNumber());
+                offset = writeString(out, offset, book.getCopyright());
+            }
+            for (Author author : authors) {
+                out.writeInt(author.getAuthorID());
+                offset = writeString(out, offset, author.getFirstName());
+                offset = writeString(out, offset, author.getLastName());
+            }
+            for (int[] link : links) {
+                out.writeInt(link[0]);
+                out.writeInt(link[1]);
+            }
+
+            writeChars(out, source);
+            for (Book book : books) {
+                writeChars(out, book.getIsbn());
+                writeChars(out, book.getTitle());
+                writeChars(out, book.getCopyright());
+            }
+            for (Author author : authors) {
+                writeChars(out, author.getFirstName());
+                writeChars(out, author.getLastName());
+            }
+            long checksum = checked.getChecksum().getValue();
+            out.writeLong(checksum);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes the offset and length of a string and returns the offset of the next one.
+     */
+    private static int writeString(DataOutputStream out, int offset, String value) throws IOException {
+        out.writeInt(offset);
+        out.writeInt(lengthOf(value));
+        return offset + charsOf(value);
+    }
+
+    private static void writeChars(DataOutputStream out, String value) throws IOException {
+        if (value != null) {
+            out.writeChars(value);
+        }
+    }
+
+    /**
+     * Returns when the export that wrote this image started; rows written after this time
+     * may be missing from it.
+     *
+     * @return the export time in milliseconds since the epoch
+     */
+    public long getWrittenAtMillis() {
+        return writtenAtMillis;
+    }
+
+    /**
+     * Returns the name of the store the image was exported from, as given to
+     * {@link #export(BookStore, Path, String)}.
+     *
+     * @return the name of the store
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the number of books in the image.
+     *
+     * @return the number of books
+     */
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    /**
+     * Returns the number of authors in the image.
+     *
+     * @return the number of authors
+     */
+    public int getAuthorCount() {
+        return authorCount;
+    }
+
+    /**
+     * Returns the number of links between books and authors in the image.
+     *
+     * @return the number of links
+     */
+    public int getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Returns the ISBN of a book as a view of the mapped file.
+     *
+     * @param book the position of the book, from 0 to {@link #getBookCount()} - 1
+     * @return the ISBN, or null if the store had none
+     * @throws IndexOutOfBoundsException if there is no book at that position
+     */
+    public CharSequence getIsbn(int book) {
+        return view(books, bookRecord(book), 0);
+    }
+
+    /**
+     * Returns the title of a book as a view of the mapped file.
+     *
+     * @param book the position of the book, from 0 to {@link #getBookCount()} - 1
+     * @return the title, or null if the store had none
+     * @throws IndexOutOfBoundsException if there is no book at that position
+     */
+    public CharSequence getTitle(int book) {
+        return view(books, bookRecord(book), 8);
+    }
+
+    /**
+     * Returns the first name of an author as a view of the mapped file.
+     *
+     * @param author the position of the author, from 0 to {@link #getAuthorCount()} - 1
+     * @return the first name, or null if the store had none
+     * @throws IndexOutOfBoundsException if there is no author at that position
+     */
+    public CharSequence getFirstName(int author) {
+        return view(authors, authorRecord(author), 4);
+    }
+
+    /**
+     * Returns the last name of an author as a view of the mapped file.
+     *
+     * @param author the position of the author, from 0 to {@link #getAuthorCount()} - 1
+     * @return the last name, or null if the store had none
+     * @throws IndexOutOfBoundsException if there is no author at that position
+     */
+    public CharSequence getLastName(int author) {
+        return view(authors, authorRecord(author), 12);
+    }
+
+    /**
+     * Passes a new {@link Book}, without authors, for every book in the image to the given
+     * callback, in the order the store returned them. The strings are copied out of the
+     * mapping, since a {@link Book} must stay valid after the image is gone.
+     *
+     * @param action the callback to receive each book
+     * @return the number of books passed to the callback
+     */
+    public int forEachBook(Consumer<Book> action) {
+        for (int i = 0; i < bookCount; i++) {
+            action.accept(book(i));
+        }
+        return bookCount;
+    }
+
+    /**
+     * Passes a new {@link Author}, without books, for every author in the image to the
+     * given callback, in the order the store returned them. The strings are copied as in
+     * {@link #forEachBook(Consumer)}.
+     *
+     * @param action the callback to receive each author
+     * @return the number of authors passed to the callback
+     */
+    public int forEachAuthor(Consumer<Author> action) {
+        for (int i = 0; i < authorCount; i++) {
+            action.accept(author(i));
+        }
+        return authorCount;
+    }
+
+    /**
+     * Passes every link to the given callback as the ISBN and the authorID, grouped by
+     * book.
+     *
+     * @param action the callback to receive each link
+     * @return the number of links passed to the callback
+     */
+    public int forEachLink(ObjIntConsumer<String> action) {
+        for (int i = 0; i < linkCount; i++) {
+            int record = i * LINK_RECORD_SIZE;
+            action.accept(getIsbn(links.getInt(record)).toString(), links.getInt(record + 4));
+        }
+        return linkCount;
+    }
+
+    /**
+     * Passes a new {@link Book} for every book in the image to the given callback, linked
+     * both ways to its authors as the database would return them. Each author is one
+     * {@link Author} object shared by all of its books, so the callback receives the whole
+     * graph without a query.
+     *
+     * @param action the callback to receive each book
+     * @return the number of books passed to the callback
+     */
+    public int forEachBookWithAuthors(Consumer<Book> action) {
+        Map<Integer, Author> authorsByID = new HashMap<>(authorCount * 2);
+        forEachAuthor(author -> authorsByID.put(author.getAuthorID(), author));
+        int link = 0;
+        for (int i = 0; i < bookCount; i++) {
+            Book book = book(i);
+            for (; link < linkCount && links.getInt(link * LINK_RECORD_SIZE) == i; link++) {
+                book.addAuthor(authorsByID.get(links.getInt(link * LINK_RECORD_SIZE + 4)));
+            }
+            action.accept(book);
+        }
+        return bookCount;
+    }
+
+    /**
+     * Builds a {@link CatalogSnapshot} of the books and authors in the image.
+     *
+     * @return a new snapshot
+     */
+    public CatalogSnapshot toSnapshot() {
+        List<Book> bookList = new ArrayList<>(bookCount);
+        List<Author> authorList = new ArrayList<>(authorCount);
+        forEachBook(bookList::add);
+        forEachAuthor(authorList::add);
+        return CatalogSnapshot.build(bookList, authorList);
+    }
+
+    private Book book(int book) {
+        int record = bookRecord(book);
+        return new Book(string(view(books, record, 0)), string(view(books, record, 8)), books.getInt(record + 16),
+                string(view(books, record, 20)));
+    }
+
+    private Author author(int author) {
+        int record = authorRecord(author);
+        return new Author(authors.getInt(record), string(view(authors, record, 4)), string(view(authors, record, 12)));
+    }
+
+    private int bookRecord(int book) {
+        return Objects.checkIndex(book, bookCount) * BOOK_RECORD_SIZE;
+    }
+
+    private int authorRecord(int author) {
+        return Objects.checkIndex(author, authorCount) * AUTHOR_RECORD_SIZE;
+    }
+
+    /**
+     * Returns the string whose offset and length are stored at the given position of a
+     * record; a length of -1 stands for null.
+     */
+    private CharSequence view(ByteBuffer records, int record, int field) {
+        int length = records.getInt(record + field + 4);
+        return (length < 0) ? null : view(records.getInt(record + field), length);
+    }
+
+    /**
+     * Returns part of the character section without copying it.
+     */
+    private CharBuffer view(int offset, int length) {
+        return chars.slice(offset, length);
+    }
+
+    private static String string(CharSequence value) {
+        return (value == null) ? null : value.toString();
+    }
+
+    private static int lengthOf(String value) {
+        return (value == null) ? -1 : value.length();
+    }
+
+    private static int charsOf(String value) {
+        return (value == null) ? 0 : value.length();
+    }
+}
@@ -0,0 +1,201 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds {@link CatalogSnapshot}s from the database and publishes them to readers.
+ * <p>
+ * Readers call {@link #getSnapshot()}, which is a single volatile read. A full rebuild
+ * streams both tables on a background thread and swaps the new snapshot in atomically,
+ * so readers keep getting the previous snapshot while the rebuild runs
+ * (stale-while-revalidate). Rebuilds run at startup (unless the first snapshot is loaded
+ * from a {@link CatalogImage}), on a fixed interval to pick up
+ * writes made outside this servlet, and whenever {@link #refresh()} is called; requests
+ * that arrive while a rebuild is running are folded into a single follow-up rebuild.
+ * </p>
+ *
+ * <p>
+ * Writes made through this servlet do not wait for a rebuild. {@link #bookAdded(Book)}
+ * and {@link #authorAdded(Author)} publish a copy-on-write snapshot with the new row
+ * immediately, and the row is carried over into any rebuild that was already reading
+ * the database when it was written.
+ * </p>
+ *
+ * <p>
+ * A rebuild that finds rows the published snapshot does not have, such as writes made by
+ * other processes, bumps the store's {@link CatalogVersion}, so conditional requests see
+ * the change.
+ * </p>
+ */
+public final class CatalogPublisher implements AutoCloseable {
+    private final BookStore dbManager;
+    private final AtomicReference<CatalogSnapshot> current = new AtomicReference<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+
+    //rows written while a rebuild is reading the database; null when no rebuild is running
+    private final Object writeLock = new Object();
+    private List<Object> writesDuringRebuild;
+
+    /**
+     * Constructs a {@code CatalogPublisher} and starts building the first snapshot in the
+     * background. Until it is ready, {@link #getSnapshot()} returns {@code null}.
+     *
+     * @param dbManager             the store used to read the catalog
+     * @param refreshIntervalMillis how often the snapshot is rebuilt from the database;
+     *                              0 rebuilds only at startup and on {@link #refresh()}
+     */
+    public CatalogPublisher(BookStore dbManager, long refreshIntervalMillis) {
+        this(dbManager, refreshIntervalMillis, null);
+    }
+
+    /**
+     * Constructs a {@code CatalogPublisher} that builds its first snapshot in the background
+     * from a {@link CatalogImage} instead of the database. The first rebuild from the
+     * database then runs after <code>refreshIntervalMillis</code> instead of at once.
+     *
+     * @param dbManager             the store used to read the catalog
+     * @param refreshIntervalMillis how often the snapshot is rebuilt from the database;
+     *                              0 rebuilds only on {@link #refresh()}
+     * @param image                 the image to build the first snapshot from, or
+     *                              {@code null} to read the database at once
+     */
+    public CatalogPublisher(BookStore dbManager, long refreshIntervalMillis, CatalogImage image) {
+        this.dbManager = dbManager;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (image != null) {
+            //collect writes from now on, not from when the load starts
+            writesDuringRebuild = new ArrayList<>();
+            executor.execute(() -> load(image));
+        } else {
+            refresh();
+        }
+        if (refreshIntervalMillis > 0) {
+            executor.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the most recently published snapshot.
+     *
+     * @return the current snapshot, or {@code null} if the first one has not been built yet
+     */
+    public CatalogSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Requests a rebuild from the database. Returns immediately; if a rebuild is already
+     * queued, this call is merged into it.
+     */
+    public void refresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Publishes a snapshot that includes a book that was just written to the database.
+     *
+     * @param book the book that was added or updated
+     */
+    public void bookAdded(Book book) {
+        Book copy = new Book(book.getIsbn(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+        synchronized (writeLock) {
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(copy);
+            }
+        }
+        current.updateAndGet(snapshot -> (snapshot == null) ? null : snapshot.withBook(copy));
+    }
+
+    /**
+     * Publishes a snapshot that includes an author that was just written to the database.
+     *
+     * @param author the author that was added or updated
+     */
+    public void authorAdded(Author author) {
+        Author copy = new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+        synchronized (writeLock) {
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(copy);
+            }
+        }
+        current.updateAndGet(snapshot -> (snapshot == null) ? null : snapshot.withAuthor(copy));
+    }
+
+    /**
+     * Stops the background refresh. The last published snapshot stays readable.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void rebuild() {
+        refreshPending.set(false);
+        synchronized (writeLock) {
+            writesDuringRebuild = new ArrayList<>();
+        }
+
+        List<Book> books = new ArrayList<>();
+        List<Author> authors = new ArrayList<>();
+        try {
+            dbManager.scanBooks(books::add);
+            dbManager.scanAuthors(authors::add);
+        } catch (SQLException | RuntimeException e) {
+            //keep serving the previous snapshot
+            e.printStackTrace();
+            synchronized (writeLock) {
+                writesDuringRebuild = null;
+            }
+            return;
+        }
+        publish(CatalogSnapshot.build(books, authors));
+    }
+
+    private void load(CatalogImage image) {
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = image.toSnapshot();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            synchronized (writeLock) {
+                writesDuringRebuild = null;
+            }
+            refresh();
+            return;
+        }
+        publish(snapshot);
+    }
+
+    /**
+     * Publishes a newly built snapshot after applying the writes made while it was built,
+     * and bumps the catalog version if its rows differ from the previous snapshot's.
+     */
+    private void publish(CatalogSnapshot snapshot) {
+        CatalogSnapshot previous;
+        synchronized (writeLock) {
+            for (Object write : writesDuringRebuild) {
+                snapshot = (write instanceof Book)
+                        ? snapshot.withBook((Book) write)
+                        : snapshot.withAuthor((Author) write);
+            }
+            writesDuringRebuild = null;
+            previous = current.getAndSet(snapshot);
+        }
+        if (previous != null && !previous.hasSameRows(snapshot)) {
+            dbManager.getCatalogVersion().bump();
+        }
+    }
+}
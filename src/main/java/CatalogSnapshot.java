@@ -0,0 +1,321 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * An immutable, in-memory copy of the catalog that can be read without locks or
+ * database round trips.
+ * <p>
+ * For every {@link BookSort} and {@link AuthorSort} the snapshot keeps an array of the
+ * books or authors already sorted in that order, so a page is a binary search for the
+ * continuation key followed by an array copy.
+ * </p>
+ *
+ * <p>
+ * String columns are compared case-insensitively. This approximates the database
+ * collation but does not match it: MySQL also ignores accents and breaks ties
+ * differently. A snapshot therefore issues page tokens of its own kind (see
+ * {@link #isSnapshotToken(String)}), which the database rejects and which reject database
+ * tokens in turn, so a pagination run stays with the source it started on instead of
+ * skipping or repeating rows.
+ * </p>
+ *
+ * <p>
+ * A snapshot is never modified after it is built. {@link #withBook(Book)} and
+ * {@link #withAuthor(Author)} return a new snapshot (copy-on-write), which
+ * {@link CatalogPublisher} swaps in atomically. Each of them copies every sort array,
+ * so a single write costs time and memory proportional to the size of the catalog;
+ * this suits a catalog that is read far more often than it is written. The {@link Book}
+ * and {@link Author} objects on a page are shared between readers and must not be modified.
+ * </p>
+ */
+public final class CatalogSnapshot {
+    private static final Comparator<Object[]> KEY_ORDER = CatalogSnapshot::compareKeys;
+
+    //prefix of the page token kinds, so the database never mistakes a snapshot token for its own
+    private static final String TOKEN_KIND_PREFIX = "snapshot.";
+
+    private final Book[][] booksBySort;
+    private final Author[][] authorsBySort;
+    private final long builtAtMillis;
+
+    private CatalogSnapshot(Book[][] booksBySort, Author[][] authorsBySort, long builtAtMillis) {
+        this.booksBySort = booksBySort;
+        this.authorsBySort = authorsBySort;
+        this.builtAtMillis = builtAtMillis;
+    }
+
+    /**
+     * Builds a snapshot from the given books and authors. The objects are copied, so the
+     * caller may keep using them.
+     *
+     * @param books   every book in the catalog
+     * @param authors every author in the catalog
+     * @return a new snapshot
+     */
+    public static CatalogSnapshot build(Collection<Book> books, Collection<Author> authors) {
+        Book[] bookCopies = new Book[books.size()];
+        int i = 0;
+        for (Book book : books) {
+            bookCopies[i++] = copyOf(book);
+        }
+        Author[] authorCopies = new Author[authors.size()];
+        i = 0;
+        for (Author author : authors) {
+            authorCopies[i++] = copyOf(author);
+        }
+
+        Book[][] booksBySort = new Book[BookSort.values().length][];
+        for (BookSort sort : BookSort.values()) {
+            Book[] sorted = bookCopies.clone();
+            Arrays.sort(sorted, Comparator.comparing(sort::keyOf, KEY_ORDER));
+            booksBySort[sort.ordinal()] = sorted;
+        }
+        Author[][] authorsBySort = new Author[AuthorSort.values().length][];
+        for (AuthorSort sort : AuthorSort.values()) {
+            Author[] sorted = authorCopies.clone();
+            Arrays.sort(sorted, Comparator.comparing(sort::keyOf, KEY_ORDER));
+            authorsBySort[sort.ordinal()] = sorted;
+        }
+        return new CatalogSnapshot(booksBySort, authorsBySort, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of books in the snapshot.
+     *
+     * @return the number of books
+     */
+    public int getBookCount() {
+        return booksBySort[0].length;
+    }
+
+    /**
+     * Returns the number of authors in the snapshot.
+     *
+     * @return the number of authors
+     */
+    public int getAuthorCount() {
+        return authorsBySort[0].length;
+    }
+
+    /**
+     * Returns when the snapshot was built from the database.
+     *
+     * @return the build time in milliseconds since the epoch
+     */
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    /**
+     * Returns one page of books in the given order.
+     *
+     * @param sort      the order of the books
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of books per page, clamped as in {@link BookDatabaseManager}
+     * @return the requested {@link Page}
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order
+     */
+    public Page<Book> getBooksPage(BookSort sort, String pageToken, int pageSize) {
+        String kind = TOKEN_KIND_PREFIX + "books." + sort.name();
+        Object[] after = (pageToken == null) ? null
+                : sort.parseKey(PageToken.decode(pageToken, kind, sort.getColumns().length));
+        return page(booksBySort[sort.ordinal()], kind, after, pageSize, sort::keyOf);
+    }
+
+    /**
+     * Returns one page of authors in the given order.
+     *
+     * @param sort      the order of the authors
+     * @param pageToken the token from the previous page, or {@code null} for the first page
+     * @param pageSize  the number of authors per page, clamped as in {@link BookDatabaseManager}
+     * @return the requested {@link Page}
+     * @throws IllegalArgumentException if the page token is malformed or belongs to another order
+     */
+    public Page<Author> getAuthorsPage(AuthorSort sort, String pageToken, int pageSize) {
+        String kind = TOKEN_KIND_PREFIX + "authors." + sort.name();
+        Object[] after = (pageToken == null) ? null
+                : sort.parseKey(PageToken.decode(pageToken, kind, sort.getColumns().length));
+        return page(authorsBySort[sort.ordinal()], kind, after, pageSize, sort::keyOf);
+    }
+
+    /**
+     * Returns whether a page token was issued by a snapshot. Other tokens must be continued
+     * by the store that issued them.
+     *
+     * @param pageToken the token to inspect
+     * @return true if {@link #getBooksPage} or {@link #getAuthorsPage} issued the token
+     */
+    public static boolean isSnapshotToken(String pageToken) {
+        String kind = PageToken.kindOf(pageToken);
+        return kind != null && kind.startsWith(TOKEN_KIND_PREFIX);
+    }
+
+    /**
+     * Returns whether another snapshot holds exactly the same books and authors, column
+     * for column. Takes time proportional to the size of the catalog.
+     *
+     * @param other the snapshot to compare with
+     * @return true if both snapshots hold the same rows
+     */
+    public boolean hasSameRows(CatalogSnapshot other) {
+        Book[] books = booksBySort[BookSort.ISBN.ordinal()];
+        Book[] otherBooks = other.booksBySort[BookSort.ISBN.ordinal()];
+        Author[] authors = authorsBySort[AuthorSort.ID.ordinal()];
+        Author[] otherAuthors = other.authorsBySort[AuthorSort.ID.ordinal()];
+        if (books.length != otherBooks.length || authors.length != otherAuthors.length) {
+            return false;
+        }
+        for (int i = 0; i < books.length; i++) {
+            Book a = books[i];
+            Book b = otherBooks[i];
+            if (!Objects.equals(a.getIsbn(), b.getIsbn()) || !Objects.equals(a.getTitle(), b.getTitle())
+                    || a.getEditionNumber() != b.getEditionNumber()
+                    || !Objects.equals(a.getCopyright(), b.getCopyright())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < authors.length; i++) {
+            Author a = authors[i];
+            Author b = otherAuthors[i];
+            if (a.getAuthorID() != b.getAuthorID() || !Objects.equals(a.getFirstName(), b.getFirstName())
+                    || !Objects.equals(a.getLastName(), b.getLastName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot that also contains the given book, replacing any book with the
+     * same ISBN. This snapshot is left unchanged. The sort arrays are copied, which takes
+     * time proportional to the number of books.
+     *
+     * @param book the book to add
+     * @return a new snapshot
+     */
+    public CatalogSnapshot withBook(Book book) {
+        Book copy = copyOf(book);
+        Book existing = find(booksBySort[BookSort.ISBN.ordinal()], BookSort.ISBN.keyOf(copy), BookSort.ISBN::keyOf);
+
+        Book[][] updated = new Book[booksBySort.length][];
+        for (BookSort sort : BookSort.values()) {
+            Book[] sorted = booksBySort[sort.ordinal()];
+            if (existing != null) {
+                sorted = remove(sorted, sort.keyOf(existing), sort::keyOf);
+            }
+            updated[sort.ordinal()] = insert(sorted, copy, sort::keyOf);
+        }
+        return new CatalogSnapshot(updated, authorsBySort, builtAtMillis);
+    }
+
+    /**
+     * Returns a snapshot that also contains the given author, replacing any author with
+     * the same ID. This snapshot is left unchanged. The sort arrays are copied, which
+     * takes time proportional to the number of authors.
+     *
+     * @param author the author to add
+     * @return a new snapshot
+     */
+    public CatalogSnapshot withAuthor(Author author) {
+        Author copy = copyOf(author);
+        Author existing = find(authorsBySort[AuthorSort.ID.ordinal()], AuthorSort.ID.keyOf(copy), AuthorSort.ID::keyOf);
+
+        Author[][] updated = new Author[authorsBySort.length][];
+        for (AuthorSort sort : AuthorSort.values()) {
+            Author[] sorted = authorsBySort[sort.ordinal()];
+            if (existing != null) {
+                sorted = remove(sorted, sort.keyOf(existing), sort::keyOf);
+            }
+            updated[sort.ordinal()] = insert(sorted, copy, sort::keyOf);
+        }
+        return new CatalogSnapshot(booksBySort, updated, builtAtMillis);
+    }
+
+    private static <T> Page<T> page(T[] sorted, String kind, Object[] after, int pageSize,
+                                    Function<T, Object[]> keyOf) {
+        int limit = BookDatabaseManager.clampPageSize(pageSize);
+        int from = (after == null) ? 0 : firstAfter(sorted, after, keyOf);
+        int to = Math.min(from + limit, sorted.length);
+
+        List<T> items = new ArrayList<>(Arrays.asList(sorted).subList(from, to));
+        String nextToken = (to < sorted.length && !items.isEmpty())
+                ? PageToken.encodeKey(kind, keyOf.apply(items.get(items.size() - 1)))
+                : null;
+        return new Page<>(items, nextToken);
+    }
+
+    /**
+     * Returns the index of the first element whose key is greater than the given key.
+     */
+    private static <T> int firstAfter(T[] sorted, Object[] key, Function<T, Object[]> keyOf) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKeys(keyOf.apply(sorted[mid]), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static <T> T find(T[] sorted, Object[] key, Function<T, Object[]> keyOf) {
+        int index = Arrays.binarySearch(sorted, null, (a, b) -> compareKeys(keyOf.apply(a), key));
+        return (index >= 0) ? sorted[index] : null;
+    }
+
+    private static <T> T[] insert(T[] sorted, T item, Function<T, Object[]> keyOf) {
+        int index = firstAfter(sorted, keyOf.apply(item), keyOf);
+        T[] result = Arrays.copyOf(sorted, sorted.length + 1);
+        System.arraycopy(sorted, index, result, index + 1, sorted.length - index);
+        result[index] = item;
+        return result;
+    }
+
+    private static <T> T[] remove(T[] sorted, Object[] key, Function<T, Object[]> keyOf) {
+        int index = Arrays.binarySearch(sorted, null, (a, b) -> compareKeys(keyOf.apply(a), key));
+        if (index < 0) {
+            return sorted;
+        }
+        T[] result = Arrays.copyOf(sorted, sorted.length - 1);
+        System.arraycopy(sorted, index + 1, result, index, sorted.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Compares two sort keys column by column; strings ignore case, numbers compare by value,
+     * and {@code null} comes before every value, as NULL does in a MySQL ascending order.
+     * {@link EmbeddedBookStore} pages in the same order.
+     */
+    static int compareKeys(Object[] a, Object[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int result;
+            if (a[i] == null || b[i] == null) {
+                result = (a[i] == null) ? ((b[i] == null) ? 0 : -1) : 1;
+            } else if (a[i] instanceof Integer && b[i] instanceof Integer) {
+                result = Integer.compare((Integer) a[i], (Integer) b[i]);
+            } else {
+                result = String.CASE_INSENSITIVE_ORDER.compare(String.valueOf(a[i]), String.valueOf(b[i]));
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getIsbn(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+    }
+
+    private static Author copyOf(Author author) {
+        return new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+    }
+}
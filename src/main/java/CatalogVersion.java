@@ -0,0 +1,54 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that changes whenever the catalog is written, used to answer conditional
+ * HTTP requests without reading the catalog.
+ * <p>
+ * {@link BookDatabaseManager} calls {@link #bump()} after every successful write, and
+ * {@link CatalogPublisher} calls it when a rebuild finds rows that changed some other
+ * way, such as writes made to the database by other processes; those are therefore seen
+ * within one snapshot refresh interval. The version is turned into an entity tag that
+ * also carries the time this object was created, so tags handed out before a restart
+ * never match the restarted counter.
+ * </p>
+ */
+public class CatalogVersion {
+    private final AtomicLong version = new AtomicLong();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private volatile long lastModifiedMillis = System.currentTimeMillis();
+
+    /**
+     * Records that the catalog has changed.
+     */
+    public void bump() {
+        lastModifiedMillis = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of writes recorded so far.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the time of the last recorded write, or of startup if there was none.
+     *
+     * @return the last-modified time in milliseconds since the epoch
+     */
+    public long getLastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    /**
+     * Returns a strong entity tag for the current version, including the quotes.
+     *
+     * @return the entity tag, e.g. {@code "lq3k2x1a-42"}
+     */
+    public String getETag() {
+        return "\"" + epoch + "-" + version.get() + "\"";
+    }
+}
@@ -0,0 +1,724 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A filter that compresses responses with gzip or deflate when the client accepts it.
+ * <p>
+ * The encoding is negotiated from the <code>Accept-Encoding</code> header, preferring
+ * gzip. A response is compressed only if its content type is one of the types listed
+ * in the <code>compression.mimeTypes</code> context parameter and its body reaches
+ * <code>compression.minSize</code> bytes; smaller bodies are sent as they are. The
+ * decision is made on the first {@code minSize} bytes only, and everything after that is
+ * compressed as it is written, so a streamed response is never held in memory.
+ * </p>
+ *
+ * <p>
+ * Creating a {@link Deflater} allocates a sizeable native buffer, so deflaters are
+ * pooled and reset between responses instead of being created per request. The gzip
+ * header and trailer are written by this class around a raw deflate stream, which lets
+ * gzip and deflate responses share the same pooled deflaters.
+ * </p>
+ *
+ * <p>
+ * Every response with a compressible content type carries <code>Vary: Accept-Encoding</code>,
+ * whether it ends up compressed or not: a shared cache that stored a small or a plain
+ * response without it would hand that representation to every client.
+ * </p>
+ *
+ * <p>
+ * A compressed body is a different representation from the plain one, so a strong
+ * <code>ETag</code> set by the servlet gets the coding appended (<code>"v-gzip"</code>).
+ * The suffix is removed from <code>If-None-Match</code> before the request reaches the
+ * servlet, which therefore only ever compares its own tags.
+ * </p>
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class CompressionFilter extends HttpFilter {
+    /** The default smallest body, in bytes, worth compressing. */
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    /** The content types compressed when <code>compression.mimeTypes</code> is not set. */
+    public static final String DEFAULT_MIME_TYPES =
+            "text/html,text/plain,text/css,text/javascript,application/javascript,application/json,application/x-ndjson";
+
+    private static final String WRAPPED = CompressionFilter.class.getName() + ".wrapped";
+
+    private int minSize = DEFAULT_MIN_SIZE;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private Set<String> mimeTypes;
+    private DeflaterPool gzipDeflaters;
+    private DeflaterPool zlibDeflaters;
+
+    /**
+     * Reads <code>compression.minSize</code>, <code>compression.mimeTypes</code> and
+     * <code>compression.level</code> from the context parameters; missing parameters keep
+     * their defaults.
+     */
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        super.init(filterConfig);
+        String size = filterConfig.getServletContext().getInitParameter("compression.minSize");
+        if (size != null && !size.trim().isEmpty()) {
+            minSize = Integer.parseInt(size.trim());
+        }
+        String compressionLevel = filterConfig.getServletContext().getInitParameter("compression.level");
+        if (compressionLevel != null && !compressionLevel.trim().isEmpty()) {
+            level = Integer.parseInt(compressionLevel.trim());
+        }
+        String types = filterConfig.getServletContext().getInitParameter("compression.mimeTypes");
+        mimeTypes = new HashSet<>();
+        for (String type : ((types == null || types.trim().isEmpty()) ? DEFAULT_MIME_TYPES : types).split(",")) {
+            mimeTypes.add(type.trim().toLowerCase(Locale.ROOT));
+        }
+
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        gzipDeflaters = new DeflaterPool(level, true, poolSize);
+        zlibDeflaters = new DeflaterPool(level, false, poolSize);
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (request.getAttribute(WRAPPED) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String encoding = negotiate(request.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            request.setAttribute(WRAPPED, Boolean.TRUE);
+            chain.doFilter(request, new VaryingResponse(response));
+            return;
+        }
+
+        request.setAttribute(WRAPPED, Boolean.TRUE);
+        CompressionResponse wrapper = new CompressionResponse(response, encoding);
+        boolean completed = false;
+        try {
+            chain.doFilter(new ConditionalRequest(request), wrapper);
+            completed = true;
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) throws IOException {
+                        wrapper.finish();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        wrapper.abandon();
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        wrapper.abandon();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else if (completed) {
+                wrapper.finish();
+            } else {
+                //let the container write its error page uncompressed
+                wrapper.abort();
+            }
+        }
+    }
+
+    /**
+     * Releases the pooled deflaters.
+     */
+    @Override
+    public void destroy() {
+        gzipDeflaters.close();
+        zlibDeflaters.close();
+    }
+
+    /**
+     * Picks gzip or deflate from an <code>Accept-Encoding</code> header, honouring
+     * <code>q=0</code> and preferring gzip when both are equally acceptable.
+     *
+     * @return "gzip", "deflate", or {@code null} if neither is acceptable
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("deflate")) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        //codings that are not listed get the weight of "*", if any
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        return (deflate > 0) ? "deflate" : null;
+    }
+
+    /**
+     * Removes a <code>-gzip</code> or <code>-deflate</code> suffix added by this filter from
+     * every entity tag in an <code>If-None-Match</code> header.
+     */
+    static String stripCodingSuffixes(String ifNoneMatch) {
+        StringBuilder result = new StringBuilder();
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            for (String coding : new String[] {"gzip", "deflate"}) {
+                String suffix = "-" + coding + "\"";
+                if (tag.endsWith(suffix)) {
+                    tag = tag.substring(0, tag.length() - suffix.length()) + "\"";
+                    break;
+                }
+            }
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(tag);
+        }
+        return result.toString();
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon < 0) ? contentType : contentType.substring(0, semicolon);
+        return mimeTypes.contains(mimeType.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * A request whose <code>If-None-Match</code> tags have the coding suffix removed.
+     */
+    private static final class ConditionalRequest extends HttpServletRequestWrapper {
+        private ConditionalRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return (value != null && "If-None-Match".equalsIgnoreCase(name)) ? stripCodingSuffixes(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            Enumeration<String> values = super.getHeaders(name);
+            if (values == null || !"If-None-Match".equalsIgnoreCase(name)) {
+                return values;
+            }
+            List<String> stripped = new ArrayList<>();
+            while (values.hasMoreElements()) {
+                stripped.add(stripCodingSuffixes(values.nextElement()));
+            }
+            return Collections.enumeration(stripped);
+        }
+    }
+
+    /**
+     * A response that adds <code>Vary: Accept-Encoding</code> as soon as it is given a
+     * compressible content type, since the body then depends on the request's
+     * <code>Accept-Encoding</code> header even when it is sent uncompressed.
+     */
+    private class VaryingResponse extends HttpServletResponseWrapper {
+        private VaryingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setContentType(String type) {
+            super.setContentType(type);
+            varyIfCompressible();
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            super.setHeader(name, value);
+            if ("Content-Type".equalsIgnoreCase(name)) {
+                varyIfCompressible();
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            super.addHeader(name, value);
+            if ("Content-Type".equalsIgnoreCase(name)) {
+                varyIfCompressible();
+            }
+        }
+
+        void varyIfCompressible() {
+            if (isCommitted() || !isCompressible(getContentType())) {
+                return;
+            }
+            for (String vary : getHeaders("Vary")) {
+                for (String field : vary.split(",")) {
+                    String trimmed = field.trim();
+                    if (trimmed.equals("*") || trimmed.equalsIgnoreCase("Accept-Encoding")) {
+                        return;
+                    }
+                }
+            }
+            addHeader("Vary", "Accept-Encoding");
+        }
+    }
+
+    /**
+     * A response whose body goes through a {@link CompressingStream}.
+     */
+    private final class CompressionResponse extends VaryingResponse {
+        private final String encoding;
+        private CompressingStream stream;
+        private PrintWriter writer;
+        private long contentLength = -1;
+
+        private CompressionResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                //let the container pick its default charset, as getWriter() would
+                getResponse().setCharacterEncoding(getCharacterEncoding());
+                writer = new PrintWriter(new OutputStreamWriter(stream(), Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            //held back until we know whether the body is compressed
+            contentLength = length;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setContentLengthLong((value == null) ? -1 : Long.parseLong(value.trim()));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            discard();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (stream != null) {
+                stream.discard();
+            }
+        }
+
+        private void discard() {
+            if (stream != null) {
+                stream.discard();
+            }
+            writer = null;
+            stream = null;
+            contentLength = -1;
+        }
+
+        private CompressingStream stream() throws IOException {
+            if (stream == null) {
+                stream = new CompressingStream(this);
+            }
+            return stream;
+        }
+
+        /**
+         * Decides whether the body is compressed, based on the headers set so far.
+         */
+        private boolean shouldCompress(int bufferedBytes, boolean complete) {
+            int status = getStatus();
+            if (status == SC_NO_CONTENT || status == SC_NOT_MODIFIED || status < 200
+                    || containsHeader("Content-Encoding") || !isCompressible(getContentType())) {
+                return false;
+            }
+            if (contentLength >= 0) {
+                return contentLength >= minSize;
+            }
+            return !complete || bufferedBytes >= minSize;
+        }
+
+        private void startCompressed() {
+            super.setHeader("Content-Encoding", encoding);
+            varyIfCompressible();
+            String etag = getHeader("ETag");
+            if (etag != null && etag.startsWith("\"") && etag.endsWith("\"") && etag.length() > 1) {
+                super.setHeader("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+            }
+        }
+
+        private void startUncompressed(int bufferedBytes, boolean complete) {
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            } else if (complete) {
+                super.setContentLengthLong(bufferedBytes);
+            }
+        }
+
+        /**
+         * Writes out whatever is still buffered and ends the compressed stream.
+         */
+        private void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.finish();
+            }
+        }
+
+        /**
+         * Drops the body after the filter chain failed, so the container's error page is
+         * not sent with this filter's headers.
+         */
+        private void abort() {
+            if (isCommitted()) {
+                discard();
+            } else {
+                reset();
+            }
+        }
+
+        /**
+         * Ends the body after an asynchronous request timed out or failed.
+         */
+        private void abandon() {
+            if (stream != null) {
+                stream.abandon();
+            }
+        }
+    }
+
+    /**
+     * Holds back the first {@code minSize} bytes of a body to decide whether it is worth
+     * compressing, then either compresses everything written after that or passes it
+     * through unchanged.
+     */
+    private final class CompressingStream extends ServletOutputStream {
+        private final CompressionResponse response;
+        private byte[] head = new byte[Math.max(minSize, 1)];
+        private int headLength;
+        private ServletOutputStream out;
+        private Deflater deflater;
+        private DeflaterPool pool;
+        private CRC32 crc;
+        private long uncompressedBytes;
+        private final byte[] buffer = new byte[8192];
+        private volatile boolean finished;
+
+        private CompressingStream(CompressionResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("The response has already been completed");
+            }
+            if (out == null) {
+                if (headLength + len < head.length) {
+                    System.arraycopy(b, off, head, headLength, len);
+                    headLength += len;
+                    return;
+                }
+                start(false);
+            }
+            if (deflater == null) {
+                out.write(b, off, len);
+            } else {
+                deflate(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (out == null) {
+                //a flush asks for the bytes to be sent now, so the decision cannot wait any longer
+                start(false);
+            }
+            if (deflater != null) {
+                drain(Deflater.SYNC_FLUSH);
+            }
+            out.flush();
+        }
+
+        /**
+         * Completes the body. A forwarded request closes the stream this way once the
+         * target has finished writing.
+         */
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out == null || out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                response.getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void start(boolean complete) throws IOException {
+            out = response.getResponse().getOutputStream();
+            if (response.shouldCompress(headLength, complete)) {
+                response.startCompressed();
+                if ("gzip".equals(response.encoding)) {
+                    pool = gzipDeflaters;
+                    crc = new CRC32();
+                    //magic, CM=deflate, no flags, no mtime, XFL=0, OS=unknown
+                    out.write(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+                } else {
+                    pool = zlibDeflaters;
+                }
+                deflater = pool.borrow();
+                if (headLength > 0) {
+                    deflate(head, 0, headLength);
+                }
+            } else {
+                response.startUncompressed(headLength, complete);
+                if (headLength > 0) {
+                    out.write(head, 0, headLength);
+                }
+            }
+            head = null;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            uncompressedBytes += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                if (n > 0) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+
+        private void drain(int flush) throws IOException {
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, flush);
+                out.write(buffer, 0, n);
+            } while (n == buffer.length);
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            if (out == null && headLength == 0) {
+                //nothing was written, e.g. a 304 or an error sent with sendError()
+                finished = true;
+                return;
+            }
+            try {
+                if (out == null) {
+                    start(true);
+                }
+                if (deflater != null) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(buffer);
+                        out.write(buffer, 0, n);
+                    }
+                    if (crc != null) {
+                        writeIntLE(crc.getValue());
+                        writeIntLE(uncompressedBytes);
+                    }
+                }
+            } finally {
+                finished = true;
+                release();
+            }
+        }
+
+        /**
+         * Drops buffered output after the response was reset. Nothing has been sent yet.
+         */
+        private void discard() {
+            headLength = 0;
+            release();
+        }
+
+        /**
+         * Ends the stream without writing anything more. The handler thread may still be
+         * using the deflater, so it is ended instead of returned to the pool.
+         */
+        private void abandon() {
+            finished = true;
+            Deflater abandoned = deflater;
+            deflater = null;
+            if (abandoned != null) {
+                abandoned.end();
+            }
+        }
+
+        private void release() {
+            if (deflater != null) {
+                pool.release(deflater);
+                deflater = null;
+            }
+        }
+
+        private void writeIntLE(long value) throws IOException {
+            out.write((int) (value & 0xff));
+            out.write((int) ((value >> 8) & 0xff));
+            out.write((int) ((value >> 16) & 0xff));
+            out.write((int) ((value >> 24) & 0xff));
+        }
+    }
+
+    /**
+     * A bounded pool of {@link Deflater}s with the same settings. Deflaters beyond the
+     * pool size are ended instead of kept.
+     */
+    private static final class DeflaterPool {
+        private final int level;
+        private final boolean nowrap;
+        private final int maxIdle;
+        private final Queue<Deflater> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private DeflaterPool(int level, boolean nowrap, int maxIdle) {
+            this.level = level;
+            this.nowrap = nowrap;
+            this.maxIdle = maxIdle;
+        }
+
+        private Deflater borrow() {
+            Deflater deflater = idle.poll();
+            if (deflater == null) {
+                return new Deflater(level, nowrap);
+            }
+            idleCount.decrementAndGet();
+            return deflater;
+        }
+
+        private void release(Deflater deflater) {
+            deflater.reset();
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offer(deflater);
+            } else {
+                idleCount.decrementAndGet();
+                deflater.end();
+            }
+        }
+
+        private void close() {
+            Deflater deflater;
+            while ((deflater = idle.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of JDBC connections shared by every {@link BookDatabaseManager} call.
+ * <p>
+ * Opening a MySQL connection costs a TCP handshake plus an authentication round trip,
+ * which is far more expensive than the queries this application runs. The pool opens
+ * {@code minSize} connections up front, grows on demand up to {@code maxSize}, and hands
+ * out the most recently returned connection first so that the warmest connections are
+ * reused. Callers that find the pool exhausted wait up to {@code acquireTimeoutMillis}
+ * before a {@link SQLTimeoutException} is thrown.
+ * </p>
+ *
+ * <p>
+ * Borrowed connections are proxies: calling {@link Connection#close()} returns the
+ * underlying connection to the pool instead of closing it, so existing
+ * try-with-resources blocks work unchanged. A connection that has sat unused for longer
+ * than {@code validationIntervalMillis} is checked with {@link Connection#isValid(int)}
+ * before it is handed out, and a background task closes connections that have been idle
+ * longer than {@code idleTimeoutMillis} while keeping at least {@code minSize} open.
+ * </p>
+ *
+ * <p>
+ * Unless {@code statementCacheSize} is 0, each physical connection keeps a
+ * {@link StatementCache} of its most recently used prepared statements, and
+ * {@code prepareStatement} on a borrowed connection is served from it. Closing such a
+ * statement returns it to the cache, so callers keep preparing and closing statements
+ * as usual.
+ * </p>
+ *
+ * <p>
+ * If a {@link Tracer} is set, the time spent waiting for a connection is added to the
+ * current trace, and the prepared statements of borrowed connections are wrapped so that
+ * their executions are traced and slow ones are logged.
+ * </p>
+ *
+ * <p><strong>Usage example:</strong></p>
+ * <pre>
+ * ConnectionPool pool = new ConnectionPool(new PoolConfig(url, user, password));
+ * try (Connection conn = pool.getConnection()) {
+ *     // use the connection
+ * }
+ * pool.close();
+ * </pre>
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final PoolConfig config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private volatile Tracer tracer;
+
+    //all counters below are guarded by lock
+    private int total;
+    private int active;
+    private int waiters;
+    private long acquisitions;
+    private long timeouts;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private boolean closed;
+
+    /**
+     * Constructs a {@code ConnectionPool}, opens the minimum number of connections and
+     * starts the idle eviction task.
+     * <p>
+     * If the database cannot be reached while pre-warming, the error is printed and the
+     * pool starts empty; connections are then opened on demand.
+     * </p>
+     *
+     * @param config the pool settings
+     */
+    public ConnectionPool(PoolConfig config) {
+        if (config.getMaxSize() < 1 || config.getMinSize() < 0 || config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + config.getMinSize()
+                    + ", max=" + config.getMaxSize());
+        }
+        this.config = config;
+
+        try {
+            fill();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getEvictionIntervalMillis();
+        evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool is below its
+     * maximum size and no idle connection is available.
+     * <p>
+     * The returned connection must be closed to give it back to the pool.
+     * </p>
+     *
+     * @return a pooled {@link Connection}
+     * @throws SQLTimeoutException if no connection became available within the acquisition timeout
+     * @throws SQLException        if the pool is closed or a new connection could not be opened
+     */
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(config.getAcquireTimeoutMillis());
+
+        while (true) {
+            PooledConnection candidate;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (total < config.getMaxSize()) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                                + " ms waiting for a pooled connection (active=" + active
+                                + ", max=" + config.getMaxSize() + ")");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    } finally {
+                        waiters--;
+                    }
+                }
+                active++;
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    candidate = new PooledConnection(openPhysical());
+                } catch (SQLException e) {
+                    discard(null);
+                    throw e;
+                }
+            } else if (!validate(candidate)) {
+                discard(candidate);
+                continue;
+            }
+
+            recordAcquisition(System.nanoTime() - start);
+            Tracer current = tracer;
+            if (current != null) {
+                current.span("db.acquire", start, create ? "opened" : null);
+            }
+            return candidate.lease();
+        }
+    }
+
+    /**
+     * Sets the tracer that records connection waits and statement executions.
+     *
+     * @param tracer the tracer, or {@code null} to stop tracing
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Returns the tracer that records connection waits and statement executions.
+     *
+     * @return the tracer, or {@code null} if there is none
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Returns a snapshot of the pool's counters.
+     *
+     * @return the current {@link PoolStats}
+     */
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return new PoolStats(active, idle.size(), total, waiters, acquisitions, timeouts,
+                    TimeUnit.NANOSECONDS.toMillis(totalWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+                    statementCacheHits.sum(), statementCacheMisses.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the eviction task. Connections that are
+     * still borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictor.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            closeQuietly(pc.physical);
+        }
+    }
+
+    /**
+     * Opens connections until the pool holds at least {@code minSize} of them.
+     */
+    private void fill() throws SQLException {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= config.getMinSize()) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+
+            Connection physical;
+            try {
+                physical = openPhysical();
+            } catch (SQLException e) {
+                lock.lock();
+                try {
+                    total--;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+
+            lock.lock();
+            try {
+                idle.addLast(new PooledConnection(physical));
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout, then tops the
+     * pool back up to its minimum size. Runs on the evictor thread.
+     */
+    private void evictIdle() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+
+        lock.lock();
+        try {
+            //the oldest connections sit at the tail because returned connections go to the head
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total > config.getMinSize()) {
+                PooledConnection pc = it.next();
+                if (pc.lastUsedNanos - cutoff > 0) {
+                    break;
+                }
+                it.remove();
+                total--;
+                expired.add(pc);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : expired) {
+            closeQuietly(pc.physical);
+        }
+
+        try {
+            fill();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+    }
+
+    private boolean validate(PooledConnection pc) {
+        long sinceLastUse = System.nanoTime() - pc.lastUsedNanos;
+        if (sinceLastUse < TimeUnit.MILLISECONDS.toNanos(config.getValidationIntervalMillis())) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gives up a borrowed slot, closing the physical connection if there is one.
+     */
+    private void discard(PooledConnection pc) {
+        if (pc != null) {
+            closeQuietly(pc.physical);
+        }
+        lock.lock();
+        try {
+            total--;
+            active--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean reusable = reset(pc.physical);
+
+        lock.lock();
+        try {
+            active--;
+            if (reusable && !closed) {
+                pc.lastUsedNanos = System.nanoTime();
+                idle.addFirst(pc);
+                available.signal();
+                return;
+            }
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(pc.physical);
+    }
+
+    /**
+     * Rolls back any open transaction and restores auto-commit so the next borrower
+     * gets a connection in its default state.
+     *
+     * @return true if the connection can be reused, false if it should be closed
+     */
+    private boolean reset(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordAcquisition(long waitNanos) {
+        lock.lock();
+        try {
+            acquisitions++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements; //null if statement caching is off
+        private long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = config.getStatementCacheSize() > 0
+                    ? new StatementCache(config.getStatementCacheSize(), statementCacheHits, statementCacheMisses)
+                    : null;
+        }
+
+        /**
+         * Wraps the physical connection in a proxy whose {@code close()} returns it to the pool.
+         */
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the lease is closed.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PooledConnection owner;
+        private boolean returned;
+
+        private LeaseHandler(PooledConnection owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        if (owner.statements != null) {
+                            owner.statements.closeCheckedOut();
+                        }
+                        release(owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || owner.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + owner.physical;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement")) {
+                String key = (owner.statements != null) ? statementKey(method, args) : null;
+                PreparedStatement statement = (key != null)
+                        ? owner.statements.prepare(key, (Connection) proxy, () -> prepare(method, args))
+                        : prepare(method, args);
+                Tracer current = tracer;
+                return (current != null) ? current.wrap(statement, (String) args[0]) : statement;
+            }
+            try {
+                return method.invoke(owner.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private PreparedStatement prepare(Method method, Object[] args) throws SQLException {
+            try {
+                return (PreparedStatement) method.invoke(owner.physical, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new SQLException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache key for a {@code prepareStatement} call: the SQL plus the options
+     * that change the statement, or null for the overloads that are not cached.
+     */
+    private static String statementKey(Method method, Object[] args) {
+        Class<?>[] types = method.getParameterTypes();
+        if (types.length == 1) {
+            return (String) args[0];
+        }
+        if (types.length == 2 && types[1] == int.class) {
+            return args[0] + "\u0000keys=" + args[1];
+        }
+        if (types.length == 3) {
+            return args[0] + "\u0000type=" + args[1] + "," + args[2];
+        }
+        return null;
+    }
+}
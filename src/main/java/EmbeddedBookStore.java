@@ -0,0 +1,1388 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A {@link BookStore} that keeps the whole catalog in memory and persists it to files in
+ * a local directory, for deployments that serve the catalog without a MySQL server.
+ * <p>
+ * Books and authors are held in hash indexes on their primary keys (ISBN and authorID),
+ * and the links between them in one index per direction, so a lookup by key is a hash
+ * probe and a copy of the row. Each {@link BookSort} and {@link AuthorSort} also has a
+ * sorted index, so a page is a seek and a walk of <code>pageSize</code> entries. Reads take no locks. Writes are serialized: each call is
+ * checked against the indexes, appended to a write-ahead log as one checksummed entry,
+ * forced to disk, and only then applied to the indexes. A write that returned true
+ * survives a crash, and a write that failed leaves nothing behind.
+ * </p>
+ *
+ * <p>
+ * When the log grows past {@link #setCompactionThresholdBytes(long) a threshold}, a
+ * background thread starts a new log and writes a snapshot of the indexes beside it, then
+ * deletes the older log and snapshot. Every log record is an idempotent put, so the
+ * snapshot may already contain some records of the new log and writers are not blocked
+ * while it is written. On startup the newest complete snapshot is loaded and the logs
+ * written after it are replayed; an incomplete entry at the end of the last log, left by
+ * a crash in the middle of a write, is cut off.
+ * </p>
+ *
+ * <p>
+ * Author names are de-duplicated with an {@link AuthorNameIndex}, which here holds every
+ * author and is therefore the final word. Pages are ordered as in {@link CatalogSnapshot}
+ * (strings ignore case, ties broken by the exact primary key) rather than by a MySQL
+ * collation, so their page tokens have their own kinds and are only understood by this
+ * class. Calls are recorded in the <code>library_db</code> metrics group, as for
+ * {@link BookDatabaseManager}.
+ * </p>
+ *
+ * <p>The directory holds
+ * <ul>
+ *     <li><em>catalog-N.snapshot</em>: every row as of the start of log N, and</li>
+ *     <li><em>catalog-N.log</em>: the writes made after that.</li>
+ * </ul>
+ * It must not be shared between processes.
+ * </p>
+ */
+public class EmbeddedBookStore implements BookStore {
+    /** The log size at which a snapshot is written and a new log started. */
+    public static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 64L * 1024 * 1024;
+
+    private static final Pattern FILE_NAME = Pattern.compile("catalog-(\\d+)\\.(log|snapshot)");
+    private static final int SNAPSHOT_MAGIC = 0x4C425331; //"LBS1"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    //record types, shared by log entries and snapshots
+    private static final byte PUT_AUTHOR = 1;
+    private static final byte PUT_BOOK = 2;
+    private static final byte LINK = 3;
+    private static final byte END = 0;
+
+    /** Prefixes the kind of every page token, so tokens of other stores are rejected. */
+    private static final String TOKEN_KIND_PREFIX = "embedded.";
+
+    /** The order of the sorted indexes: the page order, then the primary key as is. */
+    private static final Comparator<Object[]> INDEX_ORDER = ((Comparator<Object[]>) CatalogSnapshot::compareKeys)
+            .thenComparing(key -> String.valueOf(key[key.length - 1]));
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Book> books = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Author> authors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, int[]> authorIDsByIsbn = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<String>> isbnsByAuthor = new ConcurrentHashMap<>();
+    private final Map<BookSort, ConcurrentSkipListMap<Object[], Book>> booksBySort = new EnumMap<>(BookSort.class);
+    private final Map<AuthorSort, ConcurrentSkipListMap<Object[], Author>> authorsBySort = new EnumMap<>(AuthorSort.class);
+    private final AuthorNameIndex authorNames = new AuthorNameIndex();
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+    private final MetricsRegistry.Group metrics;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object compactionLock = new Object();
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+    private final ExecutorService compactor;
+    private volatile long compactionThresholdBytes = DEFAULT_COMPACTION_THRESHOLD_BYTES;
+    private volatile boolean syncOnWrite = true;
+
+    //guarded by writeLock
+    private FileChannel log;
+    private long generation;
+    private int nextAuthorID = 1;
+    private boolean writable = true;
+
+    /**
+     * Opens the store in the given directory, creating it if needed, and recovers the
+     * catalog from its snapshot and logs.
+     *
+     * @param directory the directory holding the snapshot and log files
+     * @throws IOException if the files could not be read or a log is damaged before its end
+     */
+    public EmbeddedBookStore(Path directory) throws IOException {
+        this(directory, new MetricsRegistry());
+    }
+
+    /**
+     * Opens the store in the given directory and records its metrics in the given registry.
+     *
+     * @param directory the directory holding the snapshot and log files
+     * @param metrics   the {@link MetricsRegistry} to record call latencies and counts in
+     * @throws IOException if the files could not be read or a log is damaged before its end
+     */
+    public EmbeddedBookStore(Path directory, MetricsRegistry metrics) throws IOException {
+        this.directory = directory;
+        this.metrics = metrics.group("library_db", "Calls to BookStore methods.", "operation", true);
+        for (BookSort sort : BookSort.values()) {
+            booksBySort.put(sort, new ConcurrentSkipListMap<>(INDEX_ORDER));
+        }
+        for (AuthorSort sort : AuthorSort.values()) {
+            authorsBySort.put(sort, new ConcurrentSkipListMap<>(INDEX_ORDER));
+        }
+        Files.createDirectories(directory);
+        recover();
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "embedded-store-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the log size in bytes at which a snapshot is written in the background and a
+     * new log started.
+     *
+     * @param compactionThresholdBytes the log size; 0 or less disables automatic compaction
+     */
+    public void setCompactionThresholdBytes(long compactionThresholdBytes) {
+        this.compactionThresholdBytes = compactionThresholdBytes;
+    }
+
+    /**
+     * Sets whether every write is forced to disk before it returns. Turning this off makes
+     * writes much faster, but the writes of the last moments before a power failure or
+     * operating system crash may be lost; a crash of the JVM alone loses nothing.
+     *
+     * @param syncOnWrite true to force every write to disk (the default)
+     */
+    public void setSyncOnWrite(boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Returns the number of books in the store.
+     *
+     * @return the number of books
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+
+    /**
+     * Returns the number of authors in the store.
+     *
+     * @return the number of authors
+     */
+    public int getAuthorCount() {
+        return authors.size();
+    }
+
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    /**
+     * Adds a new book without authors. Fails if a book with the same ISBN exists.
+     *
+     * @param book the book to add
+     * @return true if the book was added, false otherwise
+     */
+    @Override
+    public boolean addBook(Book book) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = writeBooks(Collections.singletonList(book), Integer.MAX_VALUE, false);
+        record("addBook", start, result);
+        return result.getSucceeded() == 1;
+    }
+
+    /**
+     * Replaces the title, edition and copyright of the book with the same ISBN.
+     *
+     * @param book the book with the new values
+     * @return true if the book was updated, false if it does not exist or could not be written
+     */
+    @Override
+    public boolean updateBook(Book book) {
+        long start = System.nanoTime();
+        writeLock.lock();
+        try {
+            if (book.getIsbn() == null || !books.containsKey(book.getIsbn()) || invalidBook(book) != null) {
+                metrics.get("updateBook").record(start, 0);
+                return false;
+            }
+            Entry entry = new Entry();
+            entry.putBook(copyOf(book));
+            if (!commit(entry)) {
+                metrics.get("updateBook").recordError(start);
+                return false;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        metrics.get("updateBook").record(start, 1);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Adds an author unless an author with the same name exists, comparing names as
+     * {@link AuthorNameIndex} does, and sets the new or existing authorID in the
+     * {@link Author} object.
+     *
+     * @param author the author to add
+     * @return true if the author was found or added, false otherwise
+     */
+    @Override
+    public boolean addAuthor(Author author) {
+        long start = System.nanoTime();
+        BatchResult<Author> result = writeAuthors(Collections.singletonList(author), Integer.MAX_VALUE);
+        record("addAuthor", start, result);
+        return result.getSucceeded() == 1;
+    }
+
+    /**
+     * Renames the author with the same authorID, cleaning the new name as
+     * {@link #addAuthor(Author)} does. Fails if another author already has the new name,
+     * as the unique name index of the database would.
+     *
+     * @param author the author with the new name
+     * @return true if the author was updated, false otherwise
+     */
+    @Override
+    public boolean updateAuthor(Author author) {
+        long start = System.nanoTime();
+        author.setFirstName(AuthorNameIndex.clean(author.getFirstName()));
+        author.setLastName(AuthorNameIndex.clean(author.getLastName()));
+        writeLock.lock();
+        try {
+            Integer sameName = authorNames.get(author.getFirstName(), author.getLastName());
+            if (!authors.containsKey(author.getAuthorID())
+                    || (sameName != null && sameName != author.getAuthorID())) {
+                metrics.get("updateAuthor").record(start, 0);
+                return false;
+            }
+            Entry entry = new Entry();
+            entry.putAuthor(copyOf(author));
+            if (!commit(entry)) {
+                metrics.get("updateAuthor").recordError(start);
+                return false;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        metrics.get("updateAuthor").record(start, 1);
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public BatchResult<Book> addBooks(Collection<Book> books) {
+        return addBooks(books, BookDatabaseManager.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Adds many books without authors. Each chunk of <code>batchSize</code> books is one
+     * log entry and one forced write; books that already exist, or appear twice, fail on
+     * their own.
+     *
+     * @param books     the books to add
+     * @param batchSize the number of books per log entry
+     * @return the number of added books and any per-book failures
+     */
+    @Override
+    public BatchResult<Book> addBooks(Collection<Book> books, int batchSize) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = writeBooks(books, batchSize, false);
+        record("addBooks", start, result);
+        return result;
+    }
+
+    @Override
+    public BatchResult<Author> addAuthors(Collection<Author> authors) {
+        return addAuthors(authors, BookDatabaseManager.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Adds many authors as {@link #addAuthor(Author)} does, one log entry per chunk of
+     * <code>batchSize</code> authors.
+     *
+     * @param authors   the authors to add
+     * @param batchSize the number of authors per log entry
+     * @return the number of added or found authors and any per-author failures
+     */
+    @Override
+    public BatchResult<Author> addAuthors(Collection<Author> authors, int batchSize) {
+        long start = System.nanoTime();
+        BatchResult<Author> result = writeAuthors(authors, batchSize);
+        record("addAuthors", start, result);
+        return result;
+    }
+
+    /**
+     * Adds a book with its authors and links as one log entry. Authors with authorID 0
+     * are found by name or added; authors with an authorID must exist.
+     *
+     * @param book the book to add, with its authors
+     * @return true if everything was written, false otherwise
+     */
+    @Override
+    public boolean addBookWithAuthors(Book book) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = writeBooks(Collections.singletonList(book), Integer.MAX_VALUE, true);
+        record("addBookWithAuthors", start, result);
+        return result.getFailures().isEmpty();
+    }
+
+    /**
+     * Adds many books with their authors and links as one log entry. Books that cannot be
+     * added fail on their own and leave the authorIDs of their new authors at 0.
+     *
+     * @param books the books to add, with their authors
+     * @return the number of added books and any per-book failures
+     */
+    @Override
+    public BatchResult<Book> addBooksWithAuthors(Collection<Book> books) {
+        long start = System.nanoTime();
+        BatchResult<Book> result = writeBooks(books, Integer.MAX_VALUE, true);
+        record("addBooksWithAuthors", start, result);
+        return result;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        long start = System.nanoTime();
+        List<Book> result = new ArrayList<>(books.size());
+        for (Book book : books.values()) {
+            result.add(copyOf(book));
+        }
+        metrics.get("getAllBooks").record(start, result.size());
+        return result;
+    }
+
+    /**
+     * Returns a copy of the book with the given ISBN; a single hash lookup.
+     *
+     * @param isbn the ISBN
+     * @return the book, or null if there is none
+     */
+    @Override
+    public Book getBookByISBN(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Book book = books.get(isbn);
+        metrics.get("getBookByISBN").record(start, (book == null) ? 0 : 1);
+        return (book == null) ? null : copyOf(book);
+    }
+
+    /**
+     * Returns a copy of the author with the given authorID; a single hash lookup.
+     *
+     * @param authorID the authorID
+     * @return the author, or null if there is none
+     */
+    @Override
+    public Author getAuthorByID(int authorID) {
+        long start = System.nanoTime();
+        Author author = authors.get(authorID);
+        metrics.get("getAuthorByID").record(start, (author == null) ? 0 : 1);
+        return (author == null) ? null : copyOf(author);
+    }
+
+    @Override
+    public List<Author> getAllAuthors() {
+        long start = System.nanoTime();
+        List<Author> result = new ArrayList<>(authors.size());
+        for (Author author : authors.values()) {
+            result.add(copyOf(author));
+        }
+        metrics.get("getAllAuthors").record(start, result.size());
+        return result;
+    }
+
+    @Override
+    public List<Book> getBooksWithAuthors() {
+        long start = System.nanoTime();
+        List<Book> result = linkBooks(new TreeSet<>(books.keySet()));
+        metrics.get("getBooksWithAuthors").record(start, result.size());
+        return result;
+    }
+
+    @Override
+    public List<Book> getBooksWithAuthors(Collection<String> isbns) {
+        long start = System.nanoTime();
+        TreeSet<String> keys = new TreeSet<>();
+        if (isbns != null) {
+            for (String isbn : isbns) {
+                if (isbn != null) {
+                    keys.add(isbn);
+                }
+            }
+        }
+        List<Book> result = linkBooks(keys);
+        metrics.get("getBooksWithAuthors").record(start, result.size());
+        return result;
+    }
+
+    @Override
+    public List<Author> getAuthorsWithBooks() {
+        long start = System.nanoTime();
+        List<Author> result = linkAuthors(new TreeSet<>(authors.keySet()));
+        metrics.get("getAuthorsWithBooks").record(start, result.size());
+        return result;
+    }
+
+    @Override
+    public List<Author> getAuthorsWithBooks(Collection<Integer> authorIDs) {
+        long start = System.nanoTime();
+        TreeSet<Integer> keys = new TreeSet<>();
+        if (authorIDs != null) {
+            for (Integer authorID : authorIDs) {
+                if (authorID != null) {
+                    keys.add(authorID);
+                }
+            }
+        }
+        List<Author> result = linkAuthors(keys);
+        metrics.get("getAuthorsWithBooks").record(start, result.size());
+        return result;
+    }
+
+    @Override
+    public Page<Book> getBooksPage(String pageToken, int pageSize) {
+        return getBooksPage(BookSort.ISBN, pageToken, pageSize);
+    }
+
+    @Override
+    public Page<Book> getBooksPage(BookSort sort, String pageToken, int pageSize) {
+        long start = System.nanoTime();
+        String kind = TOKEN_KIND_PREFIX + "books." + sort.name();
+        Object[] after = (pageToken == null) ? null
+                : sort.parseKey(PageToken.decode(pageToken, kind, sort.getColumns().length));
+        Page<Book> page = page(booksBySort.get(sort), kind, after, pageSize, sort::keyOf, EmbeddedBookStore::copyOf);
+        metrics.get("getBooksPage").record(start, page.getItems().size());
+        return page;
+    }
+
+    @Override
+    public Page<Author> getAuthorsPage(String pageToken, int pageSize) {
+        return getAuthorsPage(AuthorSort.ID, pageToken, pageSize);
+    }
+
+    @Override
+    public Page<Author> getAuthorsPage(AuthorSort sort, String pageToken, int pageSize) {
+        long start = System.nanoTime();
+        String kind = TOKEN_KIND_PREFIX + "authors." + sort.name();
+        Object[] after = (pageToken == null) ? null
+                : sort.parseKey(PageToken.decode(pageToken, kind, sort.getColumns().length));
+        Page<Author> page = page(authorsBySort.get(sort), kind, after, pageSize, sort::keyOf,
+                EmbeddedBookStore::copyOf);
+        metrics.get("getAuthorsPage").record(start, page.getItems().size());
+        return page;
+    }
+
+    /**
+     * Streams a copy of every book. The call is recorded when the stream is closed, with
+     * the time since this method was called and the number of books read.
+     *
+     * @return a {@link Stream} of all books, which should be closed by the caller
+     */
+    @Override
+    public Stream<Book> streamBooks() {
+        return recordedStream("streamBooks", books.values(), EmbeddedBookStore::copyOf);
+    }
+
+    /**
+     * Streams a copy of every author, recorded as {@link #streamBooks()} is.
+     *
+     * @return a {@link Stream} of all authors, which should be closed by the caller
+     */
+    @Override
+    public Stream<Author> streamAuthors() {
+        return recordedStream("streamAuthors", authors.values(), EmbeddedBookStore::copyOf);
+    }
+
+    @Override
+    public int forEachBook(Consumer<Book> action) {
+        return scanBooks(action);
+    }
+
+    @Override
+    public int forEachAuthor(Consumer<Author> action) {
+        return scanAuthors(action);
+    }
+
+    /**
+     * Passes a copy of every book to the given callback. Never fails for lack of a database.
+     *
+     * @param action the callback to receive each book
+     * @return the number of books passed to the callback
+     */
+    @Override
+    public int scanBooks(Consumer<Book> action) {
+        long start = System.nanoTime();
+        int count = 0;
+        for (Book book : books.values()) {
+            action.accept(copyOf(book));
+            count++;
+        }
+        metrics.get("scanBooks").record(start, count);
+        return count;
+    }
+
+    /**
+     * Passes a copy of every author to the given callback. Never fails for lack of a database.
+     *
+     * @param action the callback to receive each author
+     * @return the number of authors passed to the callback
+     */
+    @Override
+    public int scanAuthors(Consumer<Author> action) {
+        long start = System.nanoTime();
+        int count = 0;
+        for (Author author : authors.values()) {
+            action.accept(copyOf(author));
+            count++;
+        }
+        metrics.get("scanAuthors").record(start, count);
+        return count;
+    }
+
+    /**
+     * Passes every link to the given callback as the ISBN and the authorID. Never fails for
+     * lack of a database.
+     *
+     * @param action the callback to receive each link
+     * @return the number of links passed to the callback
+     */
+    @Override
+    public int scanLinks(ObjIntConsumer<String> action) {
+        long start = System.nanoTime();
+        int count = 0;
+        for (Map.Entry<String, int[]> links : authorIDsByIsbn.entrySet()) {
+            for (int authorID : links.getValue()) {
+                action.accept(links.getKey(), authorID);
+                count++;
+            }
+        }
+        metrics.get("scanLinks").record(start, count);
+        return count;
+    }
+
+    /**
+     * Writes a snapshot of the catalog and starts a new log, then deletes the files the
+     * snapshot replaces. Writers are only blocked while the new log is opened. Called
+     * automatically when the log reaches the compaction threshold.
+     *
+     * @throws IOException if the snapshot could not be written; the existing files are kept
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            long snapshotGeneration;
+            writeLock.lock();
+            try {
+                if (log == null) {
+                    throw new IOException("The store is closed");
+                }
+                snapshotGeneration = generation + 1;
+                FileChannel next = FileChannel.open(logFile(snapshotGeneration), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                try {
+                    syncDirectory();
+                } catch (IOException e) {
+                    next.close();
+                    throw e;
+                }
+                log.force(false);
+                log.close();
+                log = next;
+                generation = snapshotGeneration;
+            } finally {
+                writeLock.unlock();
+            }
+            writeSnapshot(snapshotGeneration);
+            deleteFilesBefore(snapshotGeneration);
+        }
+    }
+
+    /**
+     * Waits for a running compaction, then forces the log to disk and closes it. Writes
+     * made after this fail; reads keep working on the data in memory.
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (compactionLock) {
+            writeLock.lock();
+            try {
+                if (log != null) {
+                    log.force(false);
+                    log.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                log = null;
+                writable = false;
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds books in chunks, one log entry per chunk, optionally with their authors and
+     * links. Books that cannot be added are reported and left out of the entry.
+     */
+    private BatchResult<Book> writeBooks(Collection<Book> items, int batchSize, boolean withAuthors) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        BatchResult<Book> result = new BatchResult<>();
+        List<Book> rows = new ArrayList<>(items);
+        boolean written = false;
+        writeLock.lock();
+        try {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Book> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                Entry entry = new Entry();
+                int savedNextAuthorID = nextAuthorID;
+                Map<String, Integer> newNames = new HashMap<>();
+                Set<String> newIsbns = new HashSet<>();
+                List<Integer> accepted = new ArrayList<>();
+                List<Author> assigned = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Book book = chunk.get(i);
+                    String problem = invalidBook(book);
+                    if (problem == null && (books.containsKey(book.getIsbn()) || !newIsbns.add(book.getIsbn()))) {
+                        problem = "Duplicate ISBN " + book.getIsbn();
+                    }
+                    if (problem == null && withAuthors) {
+                        problem = resolveAuthors(book.getAuthors(), entry, newNames, assigned);
+                    }
+                    if (problem != null) {
+                        result.addFailure(from + i, book, problem);
+                        continue;
+                    }
+                    if (withAuthors) {
+                        for (Author author : book.getAuthors()) {
+                            entry.link(author.getAuthorID(), book.getIsbn());
+                        }
+                    }
+                    entry.putBook(copyOf(book));
+                    accepted.add(from + i);
+                }
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                if (commit(entry)) {
+                    result.addSucceeded(accepted.size());
+                    written = true;
+                } else {
+                    nextAuthorID = savedNextAuthorID;
+                    resetAuthorIDs(assigned);
+                    for (int index : accepted) {
+                        result.addFailure(index, rows.get(index), "The write-ahead log could not be written");
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (written) {
+            compactIfNeeded();
+        }
+        return result;
+    }
+
+    /**
+     * Finds or adds authors in chunks, one log entry per chunk.
+     */
+    private BatchResult<Author> writeAuthors(Collection<Author> items, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        BatchResult<Author> result = new BatchResult<>();
+        List<Author> rows = new ArrayList<>(items);
+        boolean written = false;
+        writeLock.lock();
+        try {
+            for (int from = 0; from < rows.size(); from += batchSize) {
+                List<Author> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                Entry entry = new Entry();
+                int savedNextAuthorID = nextAuthorID;
+                Map<String, Integer> newNames = new HashMap<>();
+                List<Author> assigned = new ArrayList<>();
+                List<Integer> accepted = new ArrayList<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Author author = chunk.get(i);
+                    author.setAuthorID(0);
+                    String problem = resolveAuthors(Collections.singletonList(author), entry, newNames, assigned);
+                    if (problem != null) {
+                        result.addFailure(from + i, author, problem);
+                    } else {
+                        accepted.add(from + i);
+                    }
+                }
+                if (entry.isEmpty() || commit(entry)) {
+                    result.addSucceeded(accepted.size());
+                    written |= !entry.isEmpty();
+                } else {
+                    nextAuthorID = savedNextAuthorID;
+                    for (int index : accepted) {
+                        rows.get(index).setAuthorID(0);
+                        result.addFailure(index, rows.get(index), "The write-ahead log could not be written");
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (written) {
+            compactIfNeeded();
+        }
+        return result;
+    }
+
+    /**
+     * Sets the authorID of every given author: existing authors with an ID must exist,
+     * authors with ID 0 get the ID of the author with the same name, and genuinely new
+     * names get the next free ID and are added to the entry. Names are cleaned first.
+     * Must be called with the write lock held.
+     *
+     * @param newNames the names added to the entry so far, so that a name repeated within
+     *                 one entry gets one ID
+     * @param assigned receives the authors whose ID was set here
+     * @return a description of the problem, or null if every author was resolved
+     */
+    private String resolveAuthors(Collection<Author> bookAuthors, Entry entry, Map<String, Integer> newNames,
+                                  List<Author> assigned) {
+        for (Author author : bookAuthors) {
+            if (author.getAuthorID() != 0 && !authors.containsKey(author.getAuthorID())) {
+                return "Unknown authorID " + author.getAuthorID();
+            }
+        }
+        for (Author author : bookAuthors) {
+            if (author.getAuthorID() != 0) {
+                continue;
+            }
+            author.setFirstName(AuthorNameIndex.clean(author.getFirstName()));
+            author.setLastName(AuthorNameIndex.clean(author.getLastName()));
+            String key = AuthorNameIndex.key(author.getFirstName(), author.getLastName());
+            Integer authorID = authorNames.get(author.getFirstName(), author.getLastName());
+            if (authorID == null) {
+                authorID = newNames.get(key);
+            }
+            if (authorID == null) {
+                authorID = nextAuthorID++;
+                newNames.put(key, authorID);
+                entry.putAuthor(new Author(authorID, author.getFirstName(), author.getLastName()));
+            }
+            author.setAuthorID(authorID);
+            assigned.add(author);
+        }
+        return null;
+    }
+
+    /**
+     * Appends an entry to the log and applies it to the indexes. Must be called with the
+     * write lock held.
+     *
+     * @return true if the entry is durable and applied, false if the log could not be written
+     */
+    private boolean commit(Entry entry) {
+        if (!writable) {
+            return false;
+        }
+        byte[] payload;
+        try {
+            payload = entry.toByteArray();
+        } catch (IOException e) {
+            //a string longer than writeUTF allows
+            e.printStackTrace();
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long position = 0;
+        try {
+            position = log.size();
+            log.position(position);
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (syncOnWrite) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                //drop the partial entry so later entries can still be replayed
+                log.truncate(position);
+            } catch (IOException truncateFailure) {
+                truncateFailure.printStackTrace();
+                writable = false;
+            }
+            return false;
+        }
+        for (Object row : entry.rows) {
+            apply(row);
+        }
+        catalogVersion.bump();
+        return true;
+    }
+
+    /**
+     * Applies one record to the indexes. Applying a record twice has the same effect as
+     * applying it once. Authors are indexed before links and links before books, so a
+     * concurrent reader never sees a new book without its authors.
+     */
+    private void apply(Object row) {
+        if (row instanceof Author) {
+            Author author = (Author) row;
+            Author previous = authors.put(author.getAuthorID(), author);
+            index(authorsBySort, AuthorSort::keyOf, previous, author);
+            authorNames.put(author);
+            nextAuthorID = Math.max(nextAuthorID, author.getAuthorID() + 1);
+        } else if (row instanceof Link) {
+            Link link = (Link) row;
+            authorIDsByIsbn.merge(link.isbn, new int[]{link.authorID}, EmbeddedBookStore::union);
+            isbnsByAuthor.computeIfAbsent(link.authorID, key -> ConcurrentHashMap.newKeySet()).add(link.isbn);
+        } else {
+            Book book = (Book) row;
+            Book previous = books.put(book.getIsbn(), book);
+            index(booksBySort, BookSort::keyOf, previous, book);
+        }
+    }
+
+    /**
+     * Puts a row into every sorted index and removes the row it replaces, if its key
+     * changed. The new key is added first, so a concurrent page never misses the row.
+     */
+    private static <S, T> void index(Map<S, ConcurrentSkipListMap<Object[], T>> indexes,
+                                     BiFunction<S, T, Object[]> keyOf, T previous, T row) {
+        for (Map.Entry<S, ConcurrentSkipListMap<Object[], T>> sorted : indexes.entrySet()) {
+            Object[] key = keyOf.apply(sorted.getKey(), row);
+            sorted.getValue().put(key, row);
+            if (previous != null) {
+                Object[] previousKey = keyOf.apply(sorted.getKey(), previous);
+                if (INDEX_ORDER.compare(previousKey, key) != 0) {
+                    sorted.getValue().remove(previousKey);
+                }
+            }
+        }
+    }
+
+    private static int[] union(int[] existing, int[] added) {
+        for (int authorID : existing) {
+            if (authorID == added[0]) {
+                return existing;
+            }
+        }
+        int[] result = Arrays.copyOf(existing, existing.length + 1);
+        result[existing.length] = added[0];
+        return result;
+    }
+
+    private void compactIfNeeded() {
+        long threshold = compactionThresholdBytes;
+        if (threshold <= 0 || !writable) {
+            return;
+        }
+        long size;
+        writeLock.lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            size = log.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+        if (size >= threshold && compactionPending.compareAndSet(false, true)) {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    compactionPending.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds the graph of the given books and their authors, sharing one {@link Author}
+     * object per author.
+     */
+    private List<Book> linkBooks(Collection<String> isbns) {
+        List<Book> result = new ArrayList<>(isbns.size());
+        Map<Integer, Author> shared = new HashMap<>();
+        for (String isbn : isbns) {
+            Book stored = books.get(isbn);
+            if (stored == null) {
+                continue;
+            }
+            Book book = copyOf(stored);
+            for (int authorID : authorIDsByIsbn.getOrDefault(isbn, new int[0])) {
+                Author author = shared.get(authorID);
+                if (author == null) {
+                    Author storedAuthor = authors.get(authorID);
+                    if (storedAuthor == null) {
+                        continue;
+                    }
+                    author = copyOf(storedAuthor);
+                    shared.put(authorID, author);
+                }
+                book.addAuthor(author);
+            }
+            result.add(book);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the graph of the given authors and their books, sharing one {@link Book}
+     * object per book.
+     */
+    private List<Author> linkAuthors(Collection<Integer> authorIDs) {
+        List<Author> result = new ArrayList<>(authorIDs.size());
+        Map<String, Book> shared = new HashMap<>();
+        for (Integer authorID : authorIDs) {
+            Author stored = authors.get(authorID);
+            if (stored == null) {
+                continue;
+            }
+            Author author = copyOf(stored);
+            for (String isbn : isbnsByAuthor.getOrDefault(authorID, Set.of())) {
+                Book book = shared.get(isbn);
+                if (book == null) {
+                    Book storedBook = books.get(isbn);
+                    if (storedBook == null) {
+                        continue;
+                    }
+                    book = copyOf(storedBook);
+                    shared.put(isbn, book);
+                }
+                book.addAuthor(author);
+            }
+            result.add(author);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rows that follow the given key in a sorted index.
+     */
+    private static <T> Page<T> page(ConcurrentSkipListMap<Object[], T> sorted, String kind, Object[] after,
+                                    int pageSize, Function<T, Object[]> keyOf, Function<T, T> copy) {
+        int limit = clampPageSize(pageSize);
+        NavigableMap<Object[], T> rows = (after == null) ? sorted : sorted.tailMap(after, false);
+        List<T> items = new ArrayList<>();
+        boolean more = false;
+        for (T row : rows.values()) {
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(copy.apply(row));
+        }
+        String nextToken = more ? PageToken.encodeKey(kind, keyOf.apply(items.get(limit - 1))) : null;
+        return new Page<>(items, nextToken);
+    }
+
+    /**
+     * Streams copies of the given rows and records the call when the stream is closed.
+     */
+    private <T> Stream<T> recordedStream(String operation, Collection<T> rows, Function<T, T> copy) {
+        long start = System.nanoTime();
+        AtomicLong count = new AtomicLong();
+        return rows.stream()
+                .map(copy)
+                .peek(row -> count.incrementAndGet())
+                .onClose(() -> metrics.get(operation).record(start, count.get()));
+    }
+
+    /**
+     * Clamps a page size as {@link BookDatabaseManager#clampPageSize(int)} does, without
+     * initializing that class, which needs the MySQL driver.
+     */
+    private static int clampPageSize(int pageSize) {
+        if (pageSize < 1) {
+            return BookDatabaseManager.DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, BookDatabaseManager.MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Returns why a book cannot be stored, or null if it can.
+     */
+    private static String invalidBook(Book book) {
+        if (book.getIsbn() == null || book.getIsbn().isEmpty()) {
+            return "Missing ISBN";
+        }
+        if (book.getTitle() == null || book.getCopyright() == null) {
+            return "Missing title or copyright for ISBN " + book.getIsbn();
+        }
+        return null;
+    }
+
+    private static void resetAuthorIDs(List<Author> authors) {
+        for (Author author : authors) {
+            author.setAuthorID(0);
+        }
+    }
+
+    private void record(String operation, long start, BatchResult<?> result) {
+        metrics.get(operation).recordBatch(start, result.getSucceeded(), result.getFailures().size());
+    }
+
+    /**
+     * Loads the newest readable snapshot and replays the logs written after it, then
+     * opens the newest log for appending and deletes the files that are no longer needed.
+     */
+    private void recover() throws IOException {
+        List<Long> snapshots = new ArrayList<>();
+        List<Long> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = FILE_NAME.matcher(name);
+                if (matcher.matches()) {
+                    (matcher.group(2).equals("log") ? logs : snapshots).add(Long.parseLong(matcher.group(1)));
+                } else if (name.startsWith("catalog-") && name.endsWith(".tmp")) {
+                    //a snapshot that was being written when the process stopped
+                    Files.delete(file);
+                }
+            }
+        }
+        snapshots.sort(Comparator.reverseOrder());
+        logs.sort(null);
+
+        long snapshotGeneration = -1;
+        for (long candidate : snapshots) {
+            try {
+                readSnapshot(snapshotFile(candidate));
+                snapshotGeneration = candidate;
+                break;
+            } catch (IOException e) {
+                //try the next older snapshot; its logs are only deleted once a newer one is complete
+                e.printStackTrace();
+                books.clear();
+                authors.clear();
+                authorIDsByIsbn.clear();
+                isbnsByAuthor.clear();
+                booksBySort.values().forEach(Map::clear);
+                authorsBySort.values().forEach(Map::clear);
+            }
+        }
+
+        generation = Math.max(snapshotGeneration, 0);
+        for (int i = 0; i < logs.size(); i++) {
+            long logGeneration = logs.get(i);
+            if (logGeneration >= snapshotGeneration) {
+                replay(logFile(logGeneration), i == logs.size() - 1);
+                generation = logGeneration;
+            }
+        }
+        log = FileChannel.open(logFile(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.position(log.size());
+        syncDirectory();
+        if (snapshotGeneration > 0) {
+            deleteFilesBefore(snapshotGeneration);
+        }
+    }
+
+    /**
+     * Applies every complete entry of a log. An incomplete or corrupt entry at the end of
+     * the newest log is the trace of a crash during a write and is cut off; anywhere else
+     * it means the file is damaged.
+     */
+    private void replay(Path file, boolean newest) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            long size = channel.size();
+            long valid = 0;
+            while (valid < size) {
+                byte[] payload = readEntry(in, size - valid);
+                if (payload == null) {
+                    if (!newest) {
+                        throw new IOException("Damaged entry at offset " + valid + " of " + file);
+                    }
+                    System.err.println("Discarding an incomplete entry at offset " + valid + " of " + file);
+                    channel.truncate(valid);
+                    break;
+                }
+                for (Object row : readRecords(new DataInputStream(new ByteArrayInputStream(payload)))) {
+                    apply(row);
+                }
+                valid += 8 + payload.length;
+            }
+        }
+    }
+
+    /**
+     * Writes every row to a temporary file, forces it to disk and renames it to the
+     * snapshot of the given generation, so a snapshot file is always complete.
+     */
+    private void writeSnapshot(long snapshotGeneration) throws IOException {
+        Path temporary = directory.resolve("catalog-" + snapshotGeneration + ".snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            for (Author author : authors.values()) {
+                writeAuthor(out, author);
+            }
+            for (Map.Entry<String, int[]> links : authorIDsByIsbn.entrySet()) {
+                for (int authorID : links.getValue()) {
+                    writeLink(out, authorID, links.getKey());
+                }
+            }
+            for (Book book : books.values()) {
+                writeBook(out, book);
+            }
+            out.writeByte(END);
+            long checksum = checked.getChecksum().getValue();
+            out.writeLong(checksum);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, snapshotFile(snapshotGeneration), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+    }
+
+    /**
+     * Forces the directory entries to disk, so a file that was just created or renamed
+     * is still there after a crash.
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void readSnapshot(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+            while (true) {
+                byte type = in.readByte();
+                if (type == END) {
+                    break;
+                }
+                apply(readRecord(in, type));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch in " + file);
+            }
+        }
+    }
+
+    private void deleteFilesBefore(long keepGeneration) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < keepGeneration) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("catalog-" + logGeneration + ".log");
+    }
+
+    private Path snapshotFile(long snapshotGeneration) {
+        return directory.resolve("catalog-" + snapshotGeneration + ".snapshot");
+    }
+
+    /**
+     * Reads the next log entry, or returns null if it is cut short or fails its checksum.
+     *
+     * @param remaining the number of bytes left in the file
+     */
+    private static byte[] readEntry(DataInputStream in, long remaining) throws IOException {
+        if (remaining < 8) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length > remaining - 8) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ((int) crc.getValue() == checksum) ? payload : null;
+    }
+
+    private static List<Object> readRecords(DataInputStream in) throws IOException {
+        List<Object> rows = new ArrayList<>();
+        while (in.available() > 0) {
+            rows.add(readRecord(in, in.readByte()));
+        }
+        return rows;
+    }
+
+    private static Object readRecord(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case PUT_AUTHOR:
+                return new Author(in.readInt(), in.readUTF(), in.readUTF());
+            case PUT_BOOK:
+                return new Book(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF());
+            case LINK:
+                return new Link(in.readInt(), in.readUTF());
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private static void writeAuthor(DataOutputStream out, Author author) throws IOException {
+        out.writeByte(PUT_AUTHOR);
+        out.writeInt(author.getAuthorID());
+        out.writeUTF(author.getFirstName());
+        out.writeUTF(author.getLastName());
+    }
+
+    private static void writeBook(DataOutputStream out, Book book) throws IOException {
+        out.writeByte(PUT_BOOK);
+        out.writeUTF(book.getIsbn());
+        out.writeUTF(book.getTitle());
+        out.writeInt(book.getEditionNumber());
+        out.writeUTF(book.getCopyright());
+    }
+
+    private static void writeLink(DataOutputStream out, int authorID, String isbn) throws IOException {
+        out.writeByte(LINK);
+        out.writeInt(authorID);
+        out.writeUTF(isbn);
+    }
+
+    private static Book copyOf(Book book) {
+        return new Book(book.getIsbn(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+    }
+
+    private static Author copyOf(Author author) {
+        return new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+    }
+
+    /**
+     * A link between an author and a book, as stored in <strong>authorISBN</strong>.
+     */
+    private static final class Link {
+        private final int authorID;
+        private final String isbn;
+
+        private Link(int authorID, String isbn) {
+            this.authorID = authorID;
+            this.isbn = isbn;
+        }
+    }
+
+    /**
+     * The records of one write: encoded for the log, and kept as rows to apply once the
+     * log entry is durable. Records are ordered authors, links, books.
+     */
+    private static final class Entry {
+        private final List<Object> rows = new ArrayList<>();
+
+        private void putAuthor(Author author) {
+            rows.add(author);
+        }
+
+        private void link(int authorID, String isbn) {
+            rows.add(new Link(authorID, isbn));
+        }
+
+        private void putBook(Book book) {
+            rows.add(book);
+        }
+
+        private boolean isEmpty() {
+            return rows.isEmpty();
+        }
+
+        private byte[] toByteArray() throws IOException {
+            List<Object> ordered = new ArrayList<>(rows.size());
+            for (Class<?> kind : new Class<?>[]{Author.class, Link.class, Book.class}) {
+                for (Object row : rows) {
+                    if (kind.isInstance(row)) {
+                        ordered.add(row);
+                    }
+                }
+            }
+            rows.clear();
+            rows.addAll(ordered);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Object row : rows) {
+                if (row instanceof Author) {
+                    writeAuthor(out, (Author) row);
+                } else if (row instanceof Link) {
+                    writeLink(out, ((Link) row).authorID, ((Link) row).isbn);
+                } else {
+                    writeBook(out, (Book) row);
+                }
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, concurrent read-through cache for entities looked up by key, such as
+ * books by ISBN or authors by ID.
+ * <p>
+ * The cache is split into segments, each an access-ordered {@link LinkedHashMap} guarded
+ * by its own lock, so lookups of different keys rarely contend. When a segment is full,
+ * its least recently used entry is evicted. Entries expire after a time-to-live, and
+ * lookups that found nothing are cached too (negative caching) with their own, usually
+ * shorter, time-to-live so that repeated lookups of a missing key do not reach the database.
+ * </p>
+ *
+ * <p>
+ * Loading happens outside the segment lock. If the key is written or invalidated while a
+ * load is in flight, the loaded value is returned to the caller but not cached, so a
+ * concurrent update is never overwritten by an older read.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class EntityCache<K, V> {
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Loads the value for a key on a cache miss.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    public interface Loader<K, V> {
+        /**
+         * Loads the value for a key.
+         *
+         * @param key the key to load
+         * @return the value, or {@code null} if there is none
+         * @throws SQLException if the value could not be loaded; nothing is cached in that case
+         */
+        V load(K key) throws SQLException;
+    }
+
+    /**
+     * Constructs an {@code EntityCache}.
+     *
+     * @param maxSize           the maximum number of entries, including cached misses
+     * @param ttlMillis         how long a loaded value stays in the cache
+     * @param negativeTtlMillis how long a miss stays in the cache; 0 disables negative caching
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public EntityCache(int maxSize, long ttlMillis, long negativeTtlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    /**
+     * Returns the value for a key, loading and caching it on a miss.
+     *
+     * @param key    the key to look up
+     * @param loader loads the value if it is not cached
+     * @return the value, or {@code null} if the loader found none
+     * @throws SQLException if the loader failed
+     */
+    public V get(K key, Loader<K, V> loader) throws SQLException {
+        Segment<K, V> segment = segmentFor(key);
+        long stamp;
+        synchronized (segment) {
+            CacheEntry<V> entry = segment.map.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                segment.map.remove(key);
+            }
+            stamp = segment.writes;
+        }
+
+        misses.increment();
+        V value = loader.load(key);
+        long ttl = (value != null) ? ttlNanos : negativeTtlNanos;
+        if (ttl > 0) {
+            synchronized (segment) {
+                if (segment.writes == stamp) {
+                    segment.map.put(key, new CacheEntry<>(value, System.nanoTime() + ttl));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Stores a value for a key, replacing any cached value or cached miss.
+     *
+     * @param key   the key
+     * @param value the value to cache
+     */
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.writes++;
+            segment.map.put(key, new CacheEntry<>(value, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /**
+     * Removes a key from the cache.
+     *
+     * @param key the key to remove
+     */
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.writes++;
+            segment.map.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.writes++;
+                segment.map.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return the current {@link CacheStats}
+     */
+    public CacheStats getStats() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    /**
+     * A cached value, or a cached miss if the value is {@code null}.
+     */
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private CacheEntry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * One lock-protected, access-ordered part of the cache.
+     */
+    private static final class Segment<K, V> {
+        private final LinkedHashMap<K, CacheEntry<V>> map;
+        //bumped on every put or invalidation so in-flight loads know their result may be stale
+        private long writes;
+
+        private Segment(int capacity, LongAdder evictions) {
+            this.map = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal streaming JSON writer.
+ * <p>
+ * Values are written straight to the underlying {@link Writer} as they are produced, so
+ * a large array never has to be held in memory. The writer inserts the commas between
+ * array elements and object members; the caller is responsible for nesting
+ * {@code begin}/{@code end} calls correctly. Arrays and objects may be nested up to
+ * 63 levels deep.
+ * </p>
+ *
+ * <p><strong>Usage example:</strong></p>
+ * <pre>
+ * JsonWriter json = new JsonWriter(response.getWriter());
+ * json.beginObject().name("title").value(book.getTitle()).endObject();
+ * </pre>
+ */
+public class JsonWriter {
+    private final Writer out;
+    //one bit per open array/object: set once the first element has been written
+    private long hasElements;
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Constructs a {@code JsonWriter} that writes to the given writer.
+     *
+     * @param out the destination of the JSON text
+     */
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a JSON array.
+     *
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    /**
+     * Ends the innermost JSON array.
+     *
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Starts a JSON object.
+     *
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Ends the innermost JSON object.
+     *
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /**
+     * Writes the name of the next object member.
+     *
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null}.
+     *
+     * @param value the value to write
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a numeric value.
+     *
+     * @param value the value to write
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value to write
+     * @return this writer
+     * @throws IOException if the underlying writer fails
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Flushes the underlying writer.
+     *
+     * @throws IOException if the underlying writer fails
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        out.write(bracket);
+        depth++;
+        hasElements &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        out.write(bracket);
+        depth--;
+        return this;
+    }
+
+    /**
+     * Writes the comma before an element unless it is the first in its container or
+     * follows a member name.
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            long bit = 1L << depth;
+            if ((hasElements & bit) != 0) {
+                out.write(',');
+            }
+            hasElements |= bit;
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029' || c == '<') {
+                        //control characters, JS line separators and '<' (so "</script>" is harmless)
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -1,10 +1,14 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
 /**
  * The {@code Library} class provides methods for managing books and authors.
  *
- * <p>This class interacts with the {@code BookDatabaseManager} to perform the following operations:
+ * <p>This class interacts with a {@code BookStore} to perform the following operations:
  * <ul>
  *     <li>Print all books with their authors.</li>
  *     <li>Print all authors with their books.</li>
@@ -13,54 +17,117 @@ import java.util.Scanner;
  *     <li>Add a new book along with its authors.</li>
  * </ul>
  * </p>
+ *
+ * <p>{@link #openStore()} picks the store from system properties, so the console can run
+ * against MySQL or against the embedded store without a database.</p>
  */
 public class Library {
 
-    private final BookDatabaseManager dbManager;
+    private final BookStore dbManager;
 
     /**
-     * Constructs a {@code Library} object and associates it with a {@code BookDatabaseManager}.
+     * Constructs a {@code Library} object and associates it with a {@code BookStore}.
      *
-     * @param dbManager the {@code BookDatabaseManager} instance used for database operations
+     * @param dbManager the {@code BookStore} instance used for database operations
      */
-    public Library(BookDatabaseManager dbManager) {
+    public Library(BookStore dbManager) {
         this.dbManager = dbManager;
     }
 
+    /**
+     * Opens the store selected by the {@code library.store} system property: {@code mysql}
+     * (the default) for a {@code BookDatabaseManager} with the default connection settings,
+     * or {@code embedded} for an {@code EmbeddedBookStore} in the directory named by
+     * {@code library.store.dir} (default {@code library-store}).
+     *
+     * @return the store; the caller closes it
+     * @throws IOException if the embedded store could not be opened
+     */
+    public static BookStore openStore() throws IOException {
+        if ("embedded".equalsIgnoreCase(System.getProperty("library.store", "mysql"))) {
+            return new EmbeddedBookStore(Path.of(System.getProperty("library.store.dir", "library-store")));
+        }
+        return new BookDatabaseManager();
+    }
+
     /**
      * Prints all books along with their associated authors.
+     * Books are scanned one row at a time, and the authors of every
+     * {@value BookDatabaseManager#MAX_IN_LIST_SIZE} books are loaded with one join query,
+     * so memory use does not grow with the size of the catalog.
      * If no books are found, a message is displayed.
      */
     public void printAllBooks() throws ClassNotFoundException {
-        List<Book> books = dbManager.getAllBooks();
+        List<String> isbns = new ArrayList<>();
+        int count;
+        try {
+            count = dbManager.scanBooks(book -> {
+                isbns.add(book.getIsbn());
+                if (isbns.size() == BookDatabaseManager.MAX_IN_LIST_SIZE) {
+                    printBooks(isbns);
+                }
+            });
+            printBooks(isbns);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.out.println("Error reading books.");
+            return;
+        }
 
-        if (books.isEmpty()) {
+        if (count == 0) {
             System.out.println("No books found.");
-        } else {
-            for (Book book : books) {
-                System.out.println(book);
-                System.out.println("------------------------------");
-            }
         }
     }
 
     /**
-     * Prints all authors along with the books they have written.
+     * Prints all authors along with the books they have written, scanning the authors
+     * and loading their books in chunks as {@link #printAllBooks()} does.
      * If no authors are found, a message is displayed.
      */
     public void printAllAuthors() throws ClassNotFoundException {
-        List<Author> authors = dbManager.getAllAuthors();
+        List<Integer> authorIDs = new ArrayList<>();
+        int count;
+        try {
+            count = dbManager.scanAuthors(author -> {
+                authorIDs.add(author.getAuthorID());
+                if (authorIDs.size() == BookDatabaseManager.MAX_IN_LIST_SIZE) {
+                    printAuthors(authorIDs);
+                }
+            });
+            printAuthors(authorIDs);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.out.println("Error reading authors.");
+            return;
+        }
 
-        if (authors.isEmpty()) {
+        if (count == 0) {
             System.out.println("No authors found.");
-        } else {
-            for (Author author : authors) {
-                System.out.println(author);
-                System.out.println("------------------------------");
-            }
         }
     }
 
+    private void printBooks(List<String> isbns) {
+        if (isbns.isEmpty()) {
+            return;
+        }
+        for (Book book : dbManager.getBooksWithAuthors(isbns)) {
+            System.out.println(book);
+            System.out.println("------------------------------");
+        }
+        isbns.clear();
+    }
+
+    private void printAuthors(List<Integer> authorIDs) {
+        if (authorIDs.isEmpty()) {
+            return;
+        }
+        for (Author author : dbManager.getAuthorsWithBooks(authorIDs)) {
+            System.out.println(author);
+            System.out.println("------------------------------");
+        }
+        authorIDs.clear();
+    }
+
     /**
      * Edits a book's attributes based on user input.
      *
@@ -212,13 +279,9 @@ public class Library {
                 String firstName = scanner.nextLine();
                 System.out.print("Enter last name: ");
                 String lastName = scanner.nextLine();
-                Author newAuthor = new Author(0, firstName, lastName);
-                if (dbManager.addAuthor(newAuthor)) {
-                    newBook.addAuthor(newAuthor);
-                    System.out.println("New author created and added.");
-                } else {
-                    System.out.println("Error creating new author.");
-                }
+                //saved together with the book
+                newBook.addAuthor(new Author(0, firstName, lastName));
+                System.out.println("New author added.");
             } else if (authChoice.equals("3")) {
                 addingAuthors = false;
             } else {
@@ -226,7 +289,7 @@ public class Library {
             }
         }
 
-        if (dbManager.addBook(newBook)) {
+        if (dbManager.addBookWithAuthors(newBook)) {
             System.out.println("Book added successfully.");
         } else {
             System.out.println("Error adding book.");
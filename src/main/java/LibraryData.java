@@ -1,11 +1,33 @@
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 
 
 /**
@@ -14,7 +36,10 @@ import jakarta.servlet.http.HttpServletResponse;
  * Mapped to the <code>/LibraryData</code> path, this servlet processes:
  * <ul>
  *     <li>POST requests for adding new books (with minimal author info).</li>
- *     <li>GET requests for viewing all books or authors.</li>
+ *     <li>GET requests for viewing books or authors, page by page.</li>
+ *     <li>GET requests for searching titles and author names.</li>
+ *     <li>GET requests for autocomplete suggestions, answered as JSON.</li>
+ *     <li>GET requests for every book or author as a streamed JSON array or NDJSON.</li>
  * </ul>
  * </p>
  *
@@ -29,22 +54,462 @@ import jakarta.servlet.http.HttpServletResponse;
  *
  * <p><strong>Example usage (GET):</strong></p>
  * <pre>
- *   GET /LibraryData?view=books
+ *   GET /LibraryData?view=books&amp;sort=title
  *   or
- *   GET /LibraryData?view=authors
+ *   GET /LibraryData?view=authors&amp;sort=lastname&amp;size=100
+ *   or
+ *   GET /LibraryData?view=search&amp;q=effective+ja
+ *   or
+ *   GET /LibraryData?view=suggest&amp;field=author&amp;q=jos
+ *   or
+ *   GET /LibraryData?view=books&amp;format=ndjson
  * </pre>
  */
-@WebServlet("/LibraryData")
+@WebServlet(value = "/LibraryData", asyncSupported = true, loadOnStartup = 1)
 public class LibraryData extends HttpServlet {
-    private BookDatabaseManager dbManager;
+    private static final Logger LOGGER = Logger.getLogger(LibraryData.class.getName());
+
+    private ConnectionPool pool;
+    private MetricsRegistry metrics;
+    private MetricsRegistry.Group routes;
+    private Tracer tracer;
+    private BookStore dbManager;
+    private CatalogPublisher catalog;
+    private ExecutorService executor;
+    private WriteBehindQueue writeQueue;
+    private long asyncTimeoutMillis;
+    private String storeSource;
+    private Path catalogImageFile;
+    private ScheduledExecutorService imageTasks;
+    private boolean startedFromImage;
+    private volatile SearchIndex searchIndex = new SearchIndex();
+    private volatile AutocompleteIndex authorSuggestions = new AutocompleteIndex();
+    private volatile AutocompleteIndex titleSuggestions = new AutocompleteIndex();
+    private final Object indexLock = new Object();
+    private List<Object> writesDuringReindex; //guarded by indexLock
+
+    /** The default time an asynchronous request may take before the container times it out. */
+    private static final long DEFAULT_ASYNC_TIMEOUT_MILLIS = 30_000L;
+
+    /** The number of search hits shown when the request does not ask for a limit. */
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    /** The largest number of search hits a request may ask for. */
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    /** The number of autocomplete suggestions returned when the request does not ask for a limit. */
+    private static final int DEFAULT_SUGGEST_LIMIT = 10;
+
+    /** The largest number of autocomplete suggestions a request may ask for. */
+    private static final int MAX_SUGGEST_LIMIT = 50;
+
+    /** The default age after which a catalog image is ignored at startup. */
+    private static final long DEFAULT_CATALOG_IMAGE_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /** The default interval between two exports of the catalog image, so a crash loses at most this much. */
+    private static final long DEFAULT_CATALOG_IMAGE_EXPORT_MILLIS = 15 * 60 * 1000L;
 
     /**
-     * Initializes the servlet and instantiates a {@link BookDatabaseManager} to handle
-     * database interactions for this servlet.
+     * Initializes the servlet, creates the shared {@link ConnectionPool} and instantiates a
+     * {@link BookDatabaseManager} that borrows its connections from it.
+     * <p>
+     * If <code>store.backend</code> is <code>embedded</code>, no database is used: the
+     * catalog is kept by an {@link EmbeddedBookStore} in the directory
+     * <code>store.embedded.dir</code>, which compacts its log at
+     * <code>store.embedded.compactionThresholdBytes</code> and forces every write to disk
+     * unless <code>store.embedded.syncOnWrite</code> is <code>false</code>. The
+     * <code>db.*</code> and <code>cache.*</code> parameters are then ignored.
+     * </p>
+     * <p>
+     * The pool is configured from the <code>db.pool.*</code> context parameters in
+     * <em>web.xml</em>, the database from <code>db.url</code>, <code>db.user</code> and
+     * <code>db.password</code>, the streaming fetch size from <code>db.fetchSize</code> and the
+     * lookup caches from the <code>cache.*</code> parameters; any parameter that is missing
+     * keeps its default.
+     * The pool is also published as the <code>connectionPool</code> context attribute so
+     * its {@link PoolStats} can be inspected.
+     * </p>
+     * <p>
+     * Unless <code>catalog.snapshot.enabled</code> is <code>false</code>, a {@link CatalogPublisher}
+     * is started so list views can be served from an in-memory {@link CatalogSnapshot}; it is
+     * rebuilt every <code>catalog.snapshot.refreshMillis</code> milliseconds.
+     * </p>
+     * <p>
+     * Finally, every book and author is read once to build the {@link SearchIndex} behind
+     * <code>view=search</code> and the {@link AutocompleteIndex}es behind <code>view=suggest</code>.
+     * </p>
+     * <p>
+     * Unless <code>catalog.image.enabled</code> is <code>false</code>, the catalog is also
+     * exported to the {@link CatalogImage} <code>catalog.image.file</code> when the servlet
+     * is taken out of service and every <code>catalog.image.exportMillis</code> milliseconds
+     * (0 exports only on shutdown; each export reads all three tables in full), so a
+     * servlet that was killed still finds a recent image. If that file holds an image
+     * of the same store that is no older than <code>catalog.image.maxAgeMillis</code>, the
+     * indexes and the first catalog snapshot are built from it instead of the store, and
+     * both the snapshot and the indexes are rebuilt from the store in the background after
+     * <code>catalog.snapshot.refreshMillis</code> milliseconds, so writes the image missed
+     * show up. A missing, stale or damaged image falls back to reading the store.
+     * </p>
+     * <p>
+     * Requests that may touch the database are handled on virtual threads, one per request,
+     * and time out after <code>async.timeoutMillis</code> milliseconds.
+     * </p>
+     * <p>
+     * If <code>writeBehind.enabled</code> is <code>true</code>, submitted books and authors are
+     * inserted through a {@link WriteBehindQueue} configured by the other
+     * <code>writeBehind.*</code> parameters instead of one insert per request.
+     * </p>
+     * <p>
+     * The servlet is loaded at startup. Its {@link MetricsRegistry}, which also holds the
+     * database metrics, is published as the <code>metrics</code> context attribute and
+     * served by the {@link MetricsServlet}.
+     * </p>
+     * <p>
+     * A {@link Tracer} traces the fraction <code>tracing.sampleRate</code> of the requests
+     * handled on virtual threads and logs statements that take
+     * <code>tracing.slowQueryMillis</code> or longer (the fraction
+     * <code>tracing.slowQuerySampleRate</code> of them). Both go to the file named by
+     * <code>tracing.logFile</code>, or to the <code>java.util.logging</code> logger of
+     * {@link TraceLog} if it is not set, through a buffer of <code>tracing.bufferSize</code> lines.
+     * </p>
      */
     @Override
-    public void init() {
-        dbManager = new BookDatabaseManager();
+    public void init() throws ServletException {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        asyncTimeoutMillis = longParam("async.timeoutMillis", DEFAULT_ASYNC_TIMEOUT_MILLIS);
+
+        metrics = new MetricsRegistry();
+        routes = metrics.group("library_http", "Requests handled by LibraryData, including JSP rendering.",
+                "route", false);
+        tracer = createTracer();
+        if ("embedded".equalsIgnoreCase(stringParam("store.backend", "mysql"))) {
+            dbManager = openEmbeddedStore();
+        } else {
+            dbManager = openDatabase();
+        }
+
+        CatalogImage image = null;
+        if (!"false".equalsIgnoreCase(getServletContext().getInitParameter("catalog.image.enabled"))) {
+            catalogImageFile = Path.of(stringParam("catalog.image.file",
+                    Path.of(System.getProperty("user.home"), "library-catalog.img").toString()));
+            image = openCatalogImage(longParam("catalog.image.maxAgeMillis", DEFAULT_CATALOG_IMAGE_MAX_AGE_MILLIS));
+            startedFromImage = (image != null);
+        }
+
+        long refreshMillis = longParam("catalog.snapshot.refreshMillis", 60_000L);
+        if (!"false".equalsIgnoreCase(getServletContext().getInitParameter("catalog.snapshot.enabled"))) {
+            catalog = new CatalogPublisher(dbManager, refreshMillis, image);
+        }
+
+        if ("true".equalsIgnoreCase(getServletContext().getInitParameter("writeBehind.enabled"))) {
+            writeQueue = new WriteBehindQueue(dbManager,
+                    intParam("writeBehind.capacity", 10_000),
+                    intParam("writeBehind.maxBatchSize", BookDatabaseManager.DEFAULT_BATCH_SIZE),
+                    longParam("writeBehind.maxDelayMillis", 5L),
+                    longParam("writeBehind.offerTimeoutMillis", 1_000L));
+        }
+        registerGauges();
+        getServletContext().setAttribute("metrics", metrics);
+
+        List<String> titles = new ArrayList<>();
+        List<String> authorNames = new ArrayList<>();
+        Consumer<Book> indexBook = book -> {
+            searchIndex.addBook(book);
+            titles.add(book.getTitle());
+        };
+        Consumer<Author> indexAuthor = author -> {
+            searchIndex.addAuthor(author);
+            authorNames.add(author.getName());
+        };
+        if (image != null) {
+            image.forEachBook(indexBook);
+            image.forEachAuthor(indexAuthor);
+        } else {
+            dbManager.forEachBook(indexBook);
+            dbManager.forEachAuthor(indexAuthor);
+        }
+        titleSuggestions.rebuild(titles);
+        authorSuggestions.rebuild(authorNames);
+
+        long exportMillis = longParam("catalog.image.exportMillis", DEFAULT_CATALOG_IMAGE_EXPORT_MILLIS);
+        if (startedFromImage || (catalogImageFile != null && exportMillis > 0)) {
+            imageTasks = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "catalog-image");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (startedFromImage) {
+            imageTasks.schedule(this::reindexFromStore, Math.max(0, refreshMillis), TimeUnit.MILLISECONDS);
+        }
+        if (catalogImageFile != null && exportMillis > 0) {
+            imageTasks.scheduleWithFixedDelay(this::exportCatalogImage, exportMillis, exportMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replaces the search index and both autocomplete indexes with new ones built from the
+     * store, for a servlet started from a catalog image. Books and authors written while
+     * the store is read are added to the new indexes before they are swapped in; if the
+     * store cannot be read, the indexes built from the image are kept.
+     */
+    private void reindexFromStore() {
+        synchronized (indexLock) {
+            writesDuringReindex = new ArrayList<>();
+        }
+        try {
+            SearchIndex search = new SearchIndex();
+            List<String> titles = new ArrayList<>();
+            List<String> authorNames = new ArrayList<>();
+            dbManager.scanBooks(book -> {
+                search.addBook(book);
+                titles.add(book.getTitle());
+            });
+            dbManager.scanAuthors(author -> {
+                search.addAuthor(author);
+                authorNames.add(author.getName());
+            });
+            AutocompleteIndex titleIndex = new AutocompleteIndex();
+            AutocompleteIndex authorIndex = new AutocompleteIndex();
+            titleIndex.rebuild(titles);
+            authorIndex.rebuild(authorNames);
+
+            synchronized (indexLock) {
+                for (Object written : writesDuringReindex) {
+                    if (written instanceof Book book) {
+                        search.addBook(book);
+                        titleIndex.add(book.getTitle());
+                    } else if (written instanceof Author author) {
+                        search.addAuthor(author);
+                        authorIndex.add(author.getName());
+                    }
+                }
+                searchIndex = search;
+                titleSuggestions = titleIndex;
+                authorSuggestions = authorIndex;
+            }
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (indexLock) {
+                writesDuringReindex = null;
+            }
+        }
+    }
+
+    /**
+     * Opens the catalog image, or returns null if there is none or it was exported from
+     * another store or more than <code>maxAgeMillis</code> ago (0 accepts any age).
+     */
+    private CatalogImage openCatalogImage(long maxAgeMillis) {
+        if (!Files.exists(catalogImageFile)) {
+            return null;
+        }
+        try {
+            CatalogImage image = CatalogImage.open(catalogImageFile);
+            if (!image.getSource().equals(storeSource)) {
+                return null;
+            }
+            if (maxAgeMillis > 0 && System.currentTimeMillis() - image.getWrittenAtMillis() > maxAgeMillis) {
+                return null;
+            }
+            return image;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the catalog image from the store; a failure keeps the previous image.
+     */
+    private void exportCatalogImage() {
+        try {
+            CatalogImage.export(dbManager, catalogImageFile, storeSource);
+        } catch (SQLException | IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Opens the {@link EmbeddedBookStore} in <code>store.embedded.dir</code> (by default
+     * <em>library-store</em> in the user's home directory).
+     */
+    private EmbeddedBookStore openEmbeddedStore() throws ServletException {
+        Path directory = Path.of(stringParam("store.embedded.dir",
+                Path.of(System.getProperty("user.home"), "library-store").toString()));
+        storeSource = "embedded:" + directory.toAbsolutePath();
+        try {
+            EmbeddedBookStore store = new EmbeddedBookStore(directory, metrics);
+            store.setCompactionThresholdBytes(longParam("store.embedded.compactionThresholdBytes",
+                    EmbeddedBookStore.DEFAULT_COMPACTION_THRESHOLD_BYTES));
+            store.setSyncOnWrite(!"false".equalsIgnoreCase(getServletContext().getInitParameter("store.embedded.syncOnWrite")));
+            return store;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new ServletException("Could not open the embedded store in " + directory, e);
+        }
+    }
+
+    /**
+     * Creates the shared {@link ConnectionPool} from the <code>db.*</code> parameters and a
+     * {@link BookDatabaseManager} that borrows its connections from it, and warns if the
+     * unique index that author de-duplication relies on is missing.
+     */
+    private BookDatabaseManager openDatabase() {
+        PoolConfig defaults = BookDatabaseManager.defaultPoolConfig();
+        String password = getServletContext().getInitParameter("db.password"); //may be deliberately empty
+        PoolConfig config = new PoolConfig(stringParam("db.url", defaults.getUrl()),
+                stringParam("db.user", defaults.getUser()), password == null ? defaults.getPassword() : password);
+        storeSource = config.getUrl();
+        config.setMinSize(intParam("db.pool.minSize", config.getMinSize()));
+        config.setMaxSize(intParam("db.pool.maxSize", config.getMaxSize()));
+        config.setIdleTimeoutMillis(longParam("db.pool.idleTimeoutMillis", config.getIdleTimeoutMillis()));
+        config.setAcquireTimeoutMillis(longParam("db.pool.acquireTimeoutMillis", config.getAcquireTimeoutMillis()));
+        config.setEvictionIntervalMillis(longParam("db.pool.evictionIntervalMillis", config.getEvictionIntervalMillis()));
+        config.setValidationIntervalMillis(longParam("db.pool.validationIntervalMillis", config.getValidationIntervalMillis()));
+        config.setStatementCacheSize(intParam("db.pool.statementCacheSize", config.getStatementCacheSize()));
+
+        pool = new ConnectionPool(config);
+        pool.setTracer(tracer);
+        BookDatabaseManager database = new BookDatabaseManager(pool, metrics);
+        database.setFetchSize(intParam("db.fetchSize", database.getFetchSize()));
+        database.configureCaches(
+                intParam("cache.maxSize", BookDatabaseManager.DEFAULT_CACHE_SIZE),
+                longParam("cache.ttlMillis", BookDatabaseManager.DEFAULT_CACHE_TTL_MILLIS),
+                longParam("cache.negativeTtlMillis", BookDatabaseManager.DEFAULT_NEGATIVE_CACHE_TTL_MILLIS));
+        getServletContext().setAttribute("connectionPool", pool);
+        try {
+            if (!database.hasUniqueAuthorNameIndex()) {
+                LOGGER.warning("The authors table has no unique index on (firstName, lastName)."
+                        + " Concurrent submissions of the same author can create duplicate rows."
+                        + " Run sql/author-dedupe.sql to merge the duplicates and create the index.");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return database;
+    }
+
+    /**
+     * Stops the catalog refresh, lets requests in flight finish, exports the catalog image
+     * and closes the store and the connection pool when the servlet is taken out of service.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(asyncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+        if (catalog != null) {
+            catalog.close();
+        }
+        if (imageTasks != null) {
+            imageTasks.shutdownNow(); //a pending reindex is dropped; the export below replaces an interrupted one
+            try {
+                imageTasks.awaitTermination(asyncTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (catalogImageFile != null) {
+            exportCatalogImage();
+        }
+        getServletContext().removeAttribute("connectionPool");
+        getServletContext().removeAttribute("metrics");
+        dbManager.close();
+        if (pool != null) {
+            pool.close();
+        }
+        tracer.close();
+    }
+
+    private Tracer createTracer() {
+        String logFile = getServletContext().getInitParameter("tracing.logFile");
+        int bufferSize = intParam("tracing.bufferSize", 1024);
+        TraceLog log;
+        try {
+            log = new TraceLog((logFile == null || logFile.trim().isEmpty()) ? null : Path.of(logFile.trim()), bufferSize);
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                log = new TraceLog(null, bufferSize);
+            } catch (IOException impossible) {
+                throw new UncheckedIOException(impossible);
+            }
+        }
+        return new Tracer(doubleParam("tracing.sampleRate", 0.01),
+                longParam("tracing.slowQueryMillis", 250L),
+                doubleParam("tracing.slowQuerySampleRate", 1.0),
+                log);
+    }
+
+    /**
+     * Exposes the connection pool and the lookup caches (with the MySQL store), the tracer,
+     * the catalog image and the write-behind queue as gauges and counters, read whenever the metrics are scraped.
+     */
+    private void registerGauges() {
+        if (pool != null) {
+            BookDatabaseManager database = (BookDatabaseManager) dbManager;
+            metrics.gauge("library_pool_connections_active", "Borrowed connections.",
+                    () -> pool.getStats().getActive());
+            metrics.gauge("library_pool_connections_idle", "Idle connections.",
+                    () -> pool.getStats().getIdle());
+            metrics.gauge("library_pool_waiters", "Callers waiting for a connection.",
+                    () -> pool.getStats().getWaiters());
+            metrics.counter("library_pool_acquire_timeouts_total", "Connection borrows that timed out.",
+                    () -> pool.getStats().getTimeouts());
+            metrics.counter("library_pool_statement_cache_hits_total", "Prepared statements reused from a statement cache.",
+                    () -> pool.getStats().getStatementCacheHits());
+            metrics.counter("library_pool_statement_cache_misses_total", "Prepared statements prepared by the server.",
+                    () -> pool.getStats().getStatementCacheMisses());
+            metrics.counter("library_cache_book_hits_total", "Book lookups answered from the cache.",
+                    () -> database.getBookCacheStats().getHits());
+            metrics.counter("library_cache_book_misses_total", "Book lookups that went to the database.",
+                    () -> database.getBookCacheStats().getMisses());
+            metrics.counter("library_cache_author_hits_total", "Author lookups answered from the cache.",
+                    () -> database.getAuthorCacheStats().getHits());
+            metrics.counter("library_cache_author_misses_total", "Author lookups that went to the database.",
+                    () -> database.getAuthorCacheStats().getMisses());
+        }
+        metrics.counter("library_slow_queries_total", "Statements slower than tracing.slowQueryMillis.",
+                () -> tracer.getSlowQueries());
+        metrics.counter("library_trace_log_dropped_total", "Trace and slow-query lines dropped because the log buffer was full.",
+                () -> tracer.getDroppedLines());
+        if (catalogImageFile != null) {
+            metrics.gauge("library_catalog_image_loaded", "1 if startup read the catalog image instead of the store.",
+                    () -> startedFromImage ? 1 : 0);
+        }
+        if (writeQueue != null) {
+            metrics.gauge("library_write_queue_depth", "Rows waiting in the write-behind queue.",
+                    () -> writeQueue.getQueueDepth());
+        }
+    }
+
+    private String stringParam(String name, String defaultValue) {
+        String value = getServletContext().getInitParameter(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    private int intParam(String name, int defaultValue) {
+        String value = getServletContext().getInitParameter(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private long longParam(String name, long defaultValue) {
+        String value = getServletContext().getInitParameter(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private double doubleParam(String name, double defaultValue) {
+        String value = getServletContext().getInitParameter(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : Double.parseDouble(value.trim());
     }
 
     /**
@@ -56,7 +521,7 @@ public class LibraryData extends HttpServlet {
      *     <ul>
      *       <li>Expects the following parameters: <code>isbn</code>, <code>title</code>, <code>editionNumber</code>, <code>copyright</code>, and <code>author</code>.</li>
      *       <li>Validates the input (e.g., ensuring none are blank, parsing editionNumber).</li>
-     *       <li>Constructs a {@link Book} and an {@link Author}, associates them, and calls {@code dbManager.addBook(book)} to insert into the database.</li>
+     *       <li>Constructs a {@link Book} and an {@link Author}, associates them, and calls {@code dbManager.addBookWithAuthors(book)} to insert the book, the author and their link in one transaction.</li>
      *       <li>Redirects to <em>index.jsp</em> with a success or failure message.</li>
      *     </ul>
      *   </li>
@@ -72,6 +537,11 @@ public class LibraryData extends HttpServlet {
      * If either <code>type</code> or a required parameter is missing or invalid,
      * the user is redirected to an <em>error.jsp</em> page with an explanatory message.
      * </p>
+     * <p>
+     * The database writes run on a virtual thread; see {@link #dispatchAsync}. In write-behind
+     * mode the request waits until the batch holding its rows has committed, and a full
+     * queue is answered with <code>503 Service Unavailable</code>.
+     * </p>
      *
      * @param request  the {@link HttpServletRequest} containing form data
      * @param response the {@link HttpServletResponse} used for redirects or forwarding
@@ -81,6 +551,13 @@ public class LibraryData extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        long start = System.nanoTime();
+        String type = request.getParameter("type");
+        String route = ("book".equals(type) || "author".equals(type)) ? "POST " + type : "POST other";
+        dispatchAsync(request, response, this::handlePost, route, start);
+    }
+
+    private String handlePost(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
         String type = request.getParameter("type"); //hidden field to distinguish between book & author
 
@@ -98,7 +575,7 @@ public class LibraryData extends HttpServlet {
                     copyright == null || copyright.trim().isEmpty())
             {
                 response.sendRedirect("index.jsp?msg=Missing+one+or+more+required+fields");
-                return;
+                return null;
             }
 
             int editionNumber;
@@ -106,7 +583,7 @@ public class LibraryData extends HttpServlet {
                 editionNumber = Integer.parseInt(editionStr);
             } catch (NumberFormatException e) {
                 response.sendRedirect("index.jsp?msg=Invalid+edition+number");
-                return;
+                return null;
             }
 
             //split the author name into first/last
@@ -118,12 +595,20 @@ public class LibraryData extends HttpServlet {
             Author author = new Author(0, firstName, lastName);
             book.addAuthor(author);
 
-            //insert the author and book into the db
-            boolean successfullyAddedBook = dbManager.addBook(book);
-            boolean successfullyAddedAuthor = dbManager.addAuthor(author);
-
-
-            if (successfullyAddedBook && successfullyAddedAuthor) {
+            //insert the book, its author (unless one with that name exists) and the link in one transaction
+            boolean successfullyAdded;
+            try {
+                if (writeQueue != null) {
+                    successfullyAdded = writeQueue.submitBook(book).join();
+                } else {
+                    successfullyAdded = dbManager.addBookWithAuthors(book);
+                }
+            } catch (RejectedExecutionException e) {
+                return busy(response);
+            }
+            if (successfullyAdded) {
+                bookWritten(book);
+                authorWritten(author);
                 response.sendRedirect("index.jsp?msg=Book+and+author+added+successfully");
             } else {
                 response.sendRedirect("index.jsp?msg=Database+insertion+failed");
@@ -134,7 +619,7 @@ public class LibraryData extends HttpServlet {
 
             if (authorName == null || authorName.trim().isEmpty()) {
                 response.sendRedirect("index.jsp?msg=Missing+author+name");
-                return;
+                return null;
             }
 
             //split into first/last names
@@ -145,7 +630,15 @@ public class LibraryData extends HttpServlet {
             Author author = new Author(0, firstName, lastName);
 
             //insert into the DB
-            boolean success = dbManager.addAuthor(author);
+            boolean success;
+            try {
+                success = (writeQueue != null) ? writeQueue.submitAuthor(author).join() : dbManager.addAuthor(author);
+            } catch (RejectedExecutionException e) {
+                return busy(response);
+            }
+            if (success) {
+                authorWritten(author);
+            }
 
             if (success) {
                 response.sendRedirect("index.jsp?msg=Author+added+successfully");
@@ -153,18 +646,92 @@ public class LibraryData extends HttpServlet {
                 response.sendRedirect("index.jsp?msg=Database+insertion+failed");
             }
         }
+        return null;
     }
 
+    /**
+     * Answers a submission that could not be queued because the write queue is full.
+     */
+    private static String busy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many submissions, try again shortly");
+        return null;
+    }
 
+    /**
+     * Makes a book that was just written visible to the catalog snapshot, the search index
+     * and title suggestions.
+     */
+    private void bookWritten(Book book) {
+        if (catalog != null) {
+            catalog.bookAdded(book);
+        }
+        synchronized (indexLock) {
+            searchIndex.addBook(book);
+            titleSuggestions.add(book.getTitle());
+            if (writesDuringReindex != null) {
+                writesDuringReindex.add(book);
+            }
+        }
+    }
 
     /**
-     * Handles HTTP GET requests to view all books or all authors.
+     * Makes an author that was just written visible to the catalog snapshot, the search index
+     * and author suggestions.
+     */
+    private void authorWritten(Author author) {
+        if (catalog != null) {
+            catalog.authorAdded(author);
+        }
+        synchronized (indexLock) {
+            searchIndex.addAuthor(author);
+            authorSuggestions.add(author.getName());
+            if (writesDuringReindex != null) {
+                writesDuringReindex.add(author);
+            }
+        }
+    }
+
+
+
+    /**
+     * Handles HTTP GET requests to view books or authors, one page at a time, or to search them.
      * <p>
      * Expects a <code>view</code> parameter:
      * <ul>
-     *   <li><code>?view=books</code> - retrieves all books, setting the <code>books</code> attribute for forwarding to <code>viewbooks.jsp</code>.</li>
-     *   <li><code>?view=authors</code> - retrieves all authors, setting the <code>authors</code> attribute for forwarding to <code>viewauthors.jsp</code>.</li>
+     *   <li><code>?view=books</code> - retrieves a page of books, setting the <code>books</code> attribute for forwarding to <code>viewbooks.jsp</code>.</li>
+     *   <li><code>?view=authors</code> - retrieves a page of authors, setting the <code>authors</code> attribute for forwarding to <code>viewauthors.jsp</code>.</li>
+     *   <li><code>?view=search&amp;q=...</code> - looks the words of <code>q</code> up in the {@link SearchIndex}, setting
+     *   the best <code>limit</code> matches (20 by default, at most 100) as the <code>results</code> attribute for forwarding to <code>search.jsp</code>.</li>
+     *   <li><code>?view=suggest&amp;field=author|title&amp;q=...</code> - writes up to <code>limit</code> author names
+     *   or book titles that have a word starting with <code>q</code> as a JSON array of strings.</li>
      * </ul>
+     * The rows arrive already sorted by the database in the order named by the optional
+     * <code>sort</code> parameter (see {@link BookSort} and {@link AuthorSort}), so the JSPs
+     * render them as they are. Books default to title order and authors to first-name order.
+     * Pages come from the in-memory {@link CatalogSnapshot} when one has been published, and
+     * from the database otherwise; later pages come from the source of the first one, whose
+     * tokens they carry. The optional <code>size</code> parameter sets the page size (capped at
+     * {@value BookDatabaseManager#MAX_PAGE_SIZE}) and <code>page</code> carries the continuation
+     * token of the page to show. The link to the next page is passed to the JSP in the
+     * <code>nextPage</code> attribute, and a link back to the first page in <code>firstPage</code>.
+     * An invalid token is answered with <code>400 Bad Request</code>.
+     * </p>
+     * <p>
+     * With <code>format=json</code> or <code>format=ndjson</code>, <code>view=books</code> and
+     * <code>view=authors</code> return the whole table instead of an HTML page; see
+     * {@link #streamJson(HttpServletResponse, String, String)}.
+     * </p>
+     * <p>
+     * Book and author responses carry an <code>ETag</code> taken from the {@link CatalogVersion},
+     * and a <code>Last-Modified</code> header once the second of the last write is over, so
+     * two writes never share a date. A request whose <code>If-None-Match</code> or
+     * <code>If-Modified-Since</code> header is still current is answered with
+     * <code>304 Not Modified</code> before the database or the snapshot is touched.
+     * </p>
+     * <p>
+     * Conditional requests and <code>view=suggest</code> are answered on the container
+     * thread; everything else runs on a virtual thread (see {@link #dispatchAsync}).
      * </p>
      *
      * @param request  the {@link HttpServletRequest} containing the query parameter
@@ -174,25 +741,631 @@ public class LibraryData extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        long start = System.nanoTime();
         String view = request.getParameter("view");
+        String route = getRoute(view, request.getParameter("format"));
+        if (("books".equals(view) || "authors".equals(view)) && notModified(request, response)) {
+            routes.get(route + " 304").record(start, 0);
+            return;
+        }
+        if ("suggest".equals(view)) {
+            //answered from memory on the container thread; keystroke traffic must stay cheap
+            try {
+                suggest(request, response);
+            } catch (IOException | RuntimeException e) {
+                routes.get(route).recordError(start);
+                throw e;
+            }
+            routes.get(route).record(start, 0);
+            return;
+        }
+        dispatchAsync(request, response, this::handleGet, route, start);
+    }
+
+    /**
+     * Returns the metrics label of a GET request. Unknown views share one label, so
+     * arbitrary parameters cannot create new time series.
+     */
+    private static String getRoute(String view, String format) {
+        if ("books".equals(view) || "authors".equals(view)) {
+            return ("json".equals(format) || "ndjson".equals(format)) ? "GET " + view + "." + format : "GET " + view;
+        }
+        if ("search".equals(view) || "suggest".equals(view)) {
+            return "GET " + view;
+        }
+        return "GET other";
+    }
+
+    private String handleGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String view = request.getParameter("view");
+        String format = request.getParameter("format");
+        if (("books".equals(view) || "authors".equals(view)) && ("json".equals(format) || "ndjson".equals(format))) {
+            streamJson(response, view, format);
+            return null;
+        }
+
+        String pageToken = request.getParameter("page");
+        int pageSize = parsePageSize(request.getParameter("size"));
+        if (pageToken != null && PageToken.kindOf(pageToken) == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page token");
+            return null;
+        }
 
         if ("books".equals(view)) {
-            List<Book> books = dbManager.getAllBooks();
-            List<String> bookStrings = new ArrayList<>();
-            for (Book book : books) {
-                bookStrings.add(book.getTitle() + " (ISBN: " + book.getIsbn() + ")");
+            BookSort sort = BookSort.fromParameter(request.getParameter("sort"), BookSort.TITLE);
+            CatalogSnapshot snapshot = snapshotFor(pageToken);
+            Page<Book> page;
+            try {
+                //the token is decoded here; it may still belong to another list, order or source
+                page = (snapshot != null)
+                        ? snapshot.getBooksPage(sort, pageToken, pageSize)
+                        : dbManager.getBooksPage(sort, pageToken, pageSize);
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page token");
+                return null;
             }
-            request.setAttribute("books", bookStrings);
-            request.getRequestDispatcher("viewbooks.jsp").forward(request, response);
+            request.setAttribute("books", describeBooks(page.getItems()));
+            setPageLinks(request, view, sort.getParameter(), page, pageToken, pageSize);
+            return "viewbooks.jsp";
         } else if ("authors".equals(view)) {
-            List<Author> authors = dbManager.getAllAuthors();
-            List<String> authorStrings = new ArrayList<>();
-            for (Author author : authors) {
-                authorStrings.add(author.getFirstName() + " " + author.getLastName());
+            AuthorSort sort = AuthorSort.fromParameter(request.getParameter("sort"), AuthorSort.FIRST_NAME);
+            CatalogSnapshot snapshot = snapshotFor(pageToken);
+            Page<Author> page;
+            try {
+                page = (snapshot != null)
+                        ? snapshot.getAuthorsPage(sort, pageToken, pageSize)
+                        : dbManager.getAuthorsPage(sort, pageToken, pageSize);
+            } catch (IllegalArgumentException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page token");
+                return null;
             }
-            request.setAttribute("authors", authorStrings);
-            request.getRequestDispatcher("viewauthors.jsp").forward(request, response);
+            request.setAttribute("authors", describeAuthors(page.getItems()));
+            setPageLinks(request, view, sort.getParameter(), page, pageToken, pageSize);
+            return "viewauthors.jsp";
+        } else if ("search".equals(view)) {
+            String query = request.getParameter("q");
+            int limit = searchLimit(request.getParameter("limit"));
+            List<String> results = new ArrayList<>();
+            for (SearchIndex.Hit hit : searchIndex.search(query, limit)) {
+                results.add(hit.toString());
+            }
+            request.setAttribute("query", (query == null) ? "" : query);
+            request.setAttribute("results", results);
+            return "search.jsp";
         }
+        return null;
+    }
+
+    /**
+     * Returns the snapshot to serve a page from, or null if the page must come from the
+     * store. A run of pages stays with the source that issued its first token, because the
+     * snapshot and the database do not sort strings identically.
+     */
+    private CatalogSnapshot snapshotFor(String pageToken) {
+        CatalogSnapshot snapshot = (catalog != null) ? catalog.getSnapshot() : null;
+        if (snapshot == null || pageToken == null || CatalogSnapshot.isSnapshotToken(pageToken)) {
+            return snapshot;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the lines <em>viewbooks.jsp</em> shows for a page of books.
+     */
+    static List<String> describeBooks(List<Book> books) {
+        List<String> bookStrings = new ArrayList<>(books.size());
+        for (Book book : books) {
+            bookStrings.add(book.getTitle() + " (ISBN: " + book.getIsbn() + ")");
+        }
+        return bookStrings;
+    }
+
+    /**
+     * Returns the lines <em>viewauthors.jsp</em> shows for a page of authors.
+     */
+    static List<String> describeAuthors(List<Author> authors) {
+        List<String> authorStrings = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            authorStrings.add(author.getFirstName() + " " + author.getLastName());
+        }
+        return authorStrings;
+    }
+
+    private void suggest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AutocompleteIndex index = "title".equals(request.getParameter("field")) ? titleSuggestions : authorSuggestions;
+        int limit = Math.max(1, Math.min(parseInt(request.getParameter("limit"), DEFAULT_SUGGEST_LIMIT), MAX_SUGGEST_LIMIT));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        JsonWriter json = new JsonWriter(response.getWriter());
+        json.beginArray();
+        for (String suggestion : index.suggest(request.getParameter("q"), limit)) {
+            json.value(suggestion);
+        }
+        json.endArray().flush();
+    }
+
+    /**
+     * Handles a request on one thread of the virtual-thread executor and renders or
+     * completes it from there.
+     */
+    private interface AsyncHandler {
+        /**
+         * @return the JSP to render, or {@code null} if the response is already complete
+         */
+        String handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    /**
+     * Puts the request into asynchronous mode and runs the handler on a virtual thread.
+     * <p>
+     * The container thread is released as soon as the handler has been submitted, so a
+     * request that waits for a pooled connection or a slow query holds only a cheap virtual
+     * thread, and the number of requests in flight is no longer capped by the container's
+     * thread pool. JSP views are rendered with {@link AsyncContext#dispatch(String)}, which
+     * hands the request back to the container. The request and response passed to the
+     * handler are the ones this servlet received, so wrappers such as the
+     * {@link CompressionFilter} stay in place.
+     * </p>
+     * <p>
+     * The request is recorded under its {@code route} when the asynchronous cycle
+     * completes, so the time includes rendering the JSP. Timeouts, errors and 5xx responses
+     * count as failures.
+     * </p>
+     * <p>
+     * If the request is sampled by the {@link Tracer}, its trace is attached to the virtual
+     * thread while the handler runs, so the database spans land in it, and is written when
+     * the cycle completes, with the handler and the JSP as spans of their own.
+     * </p>
+     * <p>
+     * When the request times out or fails, the container completes it and may recycle the
+     * request and response while the handler is still running. The handler therefore writes
+     * through a {@link GuardedResponse}, which refuses every write once the request has been
+     * abandoned, and its virtual thread is interrupted. A timed-out request is answered with
+     * <code>503 Service Unavailable</code> unless the response was already committed.
+     * </p>
+     */
+    private void dispatchAsync(HttpServletRequest request, HttpServletResponse response, AsyncHandler handler,
+                               String route, long start) throws IOException {
+        OperationStats stats = routes.get(route);
+        Tracer.Trace trace = tracer.start(route, start);
+        AtomicLong renderStart = new AtomicLong();
+        GuardedResponse guarded = new GuardedResponse(response);
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(asyncTimeoutMillis);
+        CompletableFuture<Future<?>> task = new CompletableFuture<>();
+        async.addListener(new AsyncListener() {
+            private volatile boolean failed;
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                if (failed || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+                    stats.recordError(start);
+                } else {
+                    stats.record(start, 0);
+                }
+                if (trace != null) {
+                    if (renderStart.get() != 0) {
+                        trace.add("render", renderStart.get(), System.nanoTime(), null);
+                    }
+                    tracer.finish(trace);
+                }
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                abandon(event, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) throws IOException {
+                abandon(event, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+
+            private void abandon(AsyncEvent event, int status) throws IOException {
+                failed = true;
+                guarded.abandon();
+                task.thenAccept(future -> future.cancel(true));
+                if (!response.isCommitted()) {
+                    response.sendError(status);
+                }
+                event.getAsyncContext().complete();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                //not restarted
+            }
+        });
+        try {
+            task.complete(executor.submit(() -> {
+                String view = null;
+                tracer.attach(trace);
+                long handleStart = System.nanoTime();
+                try {
+                    view = handler.handle(request, guarded);
+                } catch (Exception e) {
+                    if (guarded.isAbandoned()) {
+                        //timed out; the container has answered the request
+                        return;
+                    }
+                    e.printStackTrace();
+                    if (!response.isCommitted()) {
+                        try {
+                            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        } catch (IOException ignored) {
+                            //the client is gone
+                        }
+                    }
+                } finally {
+                    tracer.span("handle", handleStart, null);
+                    tracer.detach();
+                }
+                if (guarded.isAbandoned()) {
+                    return;
+                }
+                try {
+                    if (view != null) {
+                        renderStart.set(System.nanoTime());
+                        async.dispatch("/" + view);
+                    } else {
+                        async.complete();
+                    }
+                } catch (IllegalStateException e) {
+                    //the request timed out and the container has already completed it
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            //the servlet is being taken out of service
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            async.complete();
+        }
+    }
+
+    /**
+     * The response an {@link AsyncHandler} writes to. After {@link #abandon()} every write
+     * and every change to the status or headers fails with an exception instead of reaching
+     * the response, which the container may already have recycled.
+     */
+    private static final class GuardedResponse extends HttpServletResponseWrapper {
+        private volatile boolean abandoned;
+        private PrintWriter writer;
+        private ServletOutputStream stream;
+
+        private GuardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void abandon() {
+            abandoned = true;
+        }
+
+        boolean isAbandoned() {
+            return abandoned;
+        }
+
+        private void check() {
+            if (abandoned) {
+                throw new UncheckedIOException(new IOException("The request timed out or failed"));
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            check();
+            if (writer == null) {
+                writer = new GuardedWriter(super.getWriter());
+            }
+            return writer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            check();
+            if (stream == null) {
+                stream = new GuardedStream(super.getOutputStream());
+            }
+            return stream;
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            check();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            check();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            check();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void setStatus(int status) {
+            check();
+            super.setStatus(status);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            check();
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void setContentType(String type) {
+            check();
+            super.setContentType(type);
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            check();
+            super.setCharacterEncoding(charset);
+        }
+
+        @Override
+        public void reset() {
+            check();
+            super.reset();
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return abandoned || super.isCommitted();
+        }
+
+        private final class GuardedWriter extends PrintWriter {
+            private GuardedWriter(PrintWriter out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int c) {
+                check();
+                super.write(c);
+            }
+
+            @Override
+            public void write(char[] buf, int off, int len) {
+                check();
+                super.write(buf, off, len);
+            }
+
+            @Override
+            public void write(String s, int off, int len) {
+                check();
+                super.write(s, off, len);
+            }
+
+            @Override
+            public void flush() {
+                check();
+                super.flush();
+            }
+        }
+
+        private final class GuardedStream extends ServletOutputStream {
+            private final ServletOutputStream out;
+
+            private GuardedStream(ServletOutputStream out) {
+                this.out = out;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                check();
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                check();
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                check();
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                check();
+                out.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return out.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                out.setWriteListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Sets the validators for the current catalog version on the response and answers
+     * <code>304 Not Modified</code> if the client's copy is still current.
+     * <code>If-None-Match</code> takes precedence over <code>If-Modified-Since</code>, as
+     * required by RFC 9110.
+     *
+     * @return true if the response is complete and nothing else must be written
+     */
+    private boolean notModified(HttpServletRequest request, HttpServletResponse response) {
+        //read the version before the catalog, so a write during rendering yields a newer tag next time
+        CatalogVersion version = dbManager.getCatalogVersion();
+        String etag = version.getETag();
+        //HTTP dates have whole seconds, so the time of the last write is rounded up, and only
+        //sent once that second is over: a later write then always gets a later date
+        long lastModified = (version.getLastModifiedMillis() + 999) / 1000 * 1000;
+        boolean lastModifiedFinal = lastModified <= System.currentTimeMillis();
+        response.setHeader("ETag", etag);
+        if (lastModifiedFinal) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        response.setHeader("Cache-Control", "no-cache");
+
+        boolean current;
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            current = etagMatches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                ifModifiedSince = -1;
+            }
+            current = lastModifiedFinal && ifModifiedSince >= lastModified;
+        }
+
+        if (current) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return current;
+    }
+
+    /**
+     * Compares an <code>If-None-Match</code> list with an entity tag, ignoring weak prefixes.
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every book or author to the response as it is read from the database.
+     * <p>
+     * Rows go straight from a forward-only cursor into a {@link JsonWriter} on the response,
+     * so nothing is collected in between: the first rows are sent while the query is still
+     * running and memory use does not grow with the table. <code>json</code> produces a
+     * single array, <code>ndjson</code> one object per line followed by a last line
+     * <code>{"end":true,"count":<em>rows</em>}</code>.
+     * </p>
+     * <p>
+     * If the query fails before anything was sent, the client gets
+     * <code>500 Internal Server Error</code>; a failure after that truncates the body,
+     * which JSON clients detect as a parse error and NDJSON clients by the missing end line.
+     * </p>
+     */
+    private void streamJson(HttpServletResponse response, String view, String format) throws IOException {
+        boolean ndjson = "ndjson".equals(format);
+        response.setContentType(ndjson ? "application/x-ndjson" : "application/json");
+        response.setCharacterEncoding("UTF-8");
+        Writer out = response.getWriter();
+        JsonWriter json = new JsonWriter(out);
+        if (!ndjson) {
+            json.beginArray();
+        }
+
+        int count;
+        try {
+            if ("books".equals(view)) {
+                count = dbManager.scanBooks(jsonRows(out, ndjson, book -> json.beginObject()
+                        .name("isbn").value(book.getIsbn())
+                        .name("title").value(book.getTitle())
+                        .name("editionNumber").value(book.getEditionNumber())
+                        .name("copyright").value(book.getCopyright())
+                        .endObject()));
+            } else {
+                count = dbManager.scanAuthors(jsonRows(out, ndjson, author -> json.beginObject()
+                        .name("authorID").value(author.getAuthorID())
+                        .name("firstName").value(author.getFirstName())
+                        .name("lastName").value(author.getLastName())
+                        .endObject()));
+            }
+        } catch (UncheckedIOException e) {
+            //the client went away; the cursor has already been closed
+            throw e.getCause();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not read the catalog");
+            }
+            return;
+        }
+
+        if (ndjson) {
+            json.beginObject().name("end").value(true).name("count").value(count).endObject();
+            out.write('\n');
+        } else {
+            json.endArray();
+        }
+        json.flush();
+    }
+
+    /**
+     * Writes one row as JSON, followed by a line break in NDJSON.
+     */
+    private interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+
+    private static <T> Consumer<T> jsonRows(Writer out, boolean ndjson, RowWriter<T> writer) {
+        return row -> {
+            try {
+                writer.write(row);
+                if (ndjson) {
+                    out.write('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static int parsePageSize(String size) {
+        return parseInt(size, BookDatabaseManager.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Parses the <code>limit</code> of a search, using {@link #DEFAULT_SEARCH_LIMIT} for a
+     * missing or non-positive value and capping it at {@link #MAX_SEARCH_LIMIT}.
+     */
+    private static int searchLimit(String value) {
+        int limit = parseInt(value, DEFAULT_SEARCH_LIMIT);
+        return (limit < 1) ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Sets the <code>nextPage</code> and <code>firstPage</code> links for a list view.
+     * Continuation tokens are URL-safe, so they are appended as they are.
+     */
+    private static void setPageLinks(HttpServletRequest request, String view, String sort, Page<?> page,
+                                     String pageToken, int pageSize) {
+        String base = "LibraryData?view=" + view + "&sort=" + sort + "&size=" + pageSize;
+        request.setAttribute("nextPage", page.hasNext() ? base + "&page=" + page.getNextToken() : null);
+        request.setAttribute("firstPage", (pageToken != null) ? base : null);
     }
 
 }
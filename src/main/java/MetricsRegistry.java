@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds the application's metrics and writes them in the Prometheus text exposition
+ * format.
+ * <p>
+ * Instrumented operations are organized in groups, such as the calls of
+ * {@link BookDatabaseManager} or the routes of {@link LibraryData}. Each operation in a
+ * group has its own {@link OperationStats}, created on first use. A group named
+ * {@code library_db} is exported as a {@code library_db_seconds} summary with the 0.5,
+ * 0.9 and 0.99 quantiles plus {@code _sum} and {@code _count}, a
+ * {@code library_db_seconds_max} gauge, a {@code library_db_errors_total} counter and,
+ * if the group counts rows, a {@code library_db_rows_total} counter, all labelled with
+ * the operation name. Gauges and counters registered with a supplier read their value
+ * when the metrics are written.
+ * </p>
+ *
+ * <p>
+ * Components keep their {@link Group}; looking up an operation in it is a single
+ * {@link ConcurrentHashMap} read, so it can be done on every call. The registry is safe
+ * for concurrent use.
+ * </p>
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99"};
+
+    private final ConcurrentSkipListMap<String, Group> groups = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the group with the given name, creating it if it does not exist yet.
+     *
+     * @param name       the metric name prefix, e.g. {@code library_db}
+     * @param help       a description of what the group measures
+     * @param label      the name of the label that carries the operation name
+     * @param countsRows whether a rows counter is exported for the group
+     * @return the group
+     */
+    public Group group(String name, String help, String label, boolean countsRows) {
+        return groups.computeIfAbsent(name, key -> new Group(help, label, countsRows));
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     *
+     * @param name  the metric name
+     * @param help  a description of the value
+     * @param value supplies the current value when the metrics are written
+     */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge("gauge", help, value));
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere, such as a cumulative count in
+     * {@link PoolStats}, replacing any metric with the same name.
+     *
+     * @param name  the metric name, ending in <code>_total</code>
+     * @param help  a description of what is counted
+     * @param value supplies the current count when the metrics are written
+     */
+    public void counter(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge("counter", help, value));
+    }
+
+    /**
+     * Writes every group and gauge in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @param out the destination
+     * @throws IOException if the writer fails
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            entry.getValue().write(entry.getKey(), out);
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            String name = entry.getKey();
+            header(out, name, entry.getValue().help, entry.getValue().type);
+            out.write(name + " " + format(entry.getValue().value.getAsDouble()) + "\n");
+        }
+    }
+
+    private static void header(Writer out, String name, String help, String type) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * The operations of one instrumented component.
+     */
+    public static final class Group {
+        private final String help;
+        private final String label;
+        private final boolean countsRows;
+        private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+        private Group(String help, String label, boolean countsRows) {
+            this.help = help;
+            this.label = label;
+            this.countsRows = countsRows;
+        }
+
+        /**
+         * Returns the stats of the named operation, creating them on first use.
+         *
+         * @param operation the operation name, used as the label value
+         * @return the operation's stats
+         */
+        public OperationStats get(String operation) {
+            OperationStats stats = operations.get(operation);
+            return (stats != null) ? stats : operations.computeIfAbsent(operation, key -> new OperationStats());
+        }
+
+        private void write(String name, Writer out) throws IOException {
+            Map<String, OperationStats> sorted = new TreeMap<>(operations);
+
+            header(out, name + "_seconds", help, "summary");
+            for (Map.Entry<String, OperationStats> entry : sorted.entrySet()) {
+                String labels = label + "=\"" + escape(entry.getKey()) + "\"";
+                LatencyHistogram latency = entry.getValue().getLatency();
+                long[] values = latency.getQuantileNanos(QUANTILES);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    out.write(name + "_seconds{" + labels + ",quantile=\"" + QUANTILE_LABELS[i] + "\"} "
+                            + seconds(values[i]) + "\n");
+                }
+                out.write(name + "_seconds_sum{" + labels + "} " + seconds(latency.getSumNanos()) + "\n");
+                out.write(name + "_seconds_count{" + labels + "} " + latency.getCount() + "\n");
+            }
+
+            header(out, name + "_seconds_max", "Longest single call. " + help, "gauge");
+            for (Map.Entry<String, OperationStats> entry : sorted.entrySet()) {
+                out.write(name + "_seconds_max{" + label + "=\"" + escape(entry.getKey()) + "\"} "
+                        + seconds(entry.getValue().getLatency().getMaxNanos()) + "\n");
+            }
+
+            header(out, name + "_errors_total", "Failed calls. " + help, "counter");
+            for (Map.Entry<String, OperationStats> entry : sorted.entrySet()) {
+                out.write(name + "_errors_total{" + label + "=\"" + escape(entry.getKey()) + "\"} "
+                        + entry.getValue().getErrors() + "\n");
+            }
+
+            if (countsRows) {
+                header(out, name + "_rows_total", "Rows read or written. " + help, "counter");
+                for (Map.Entry<String, OperationStats> entry : sorted.entrySet()) {
+                    out.write(name + "_rows_total{" + label + "=\"" + escape(entry.getKey()) + "\"} "
+                            + entry.getValue().getRows() + "\n");
+                }
+
+                header(out, name + "_failed_rows_total", "Rows a batch call failed to write. " + help, "counter");
+                for (Map.Entry<String, OperationStats> entry : sorted.entrySet()) {
+                    out.write(name + "_failed_rows_total{" + label + "=\"" + escape(entry.getKey()) + "\"} "
+                            + entry.getValue().getFailedRows() + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * A gauge or counter that is read when the metrics are written.
+     */
+    private static final class Gauge {
+        private final String type;
+        private final String help;
+        private final DoubleSupplier value;
+
+        private Gauge(String type, String help, DoubleSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.IOException;
+import java.io.Writer;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the application's metrics at <code>/metrics</code> in the Prometheus text
+ * exposition format.
+ * <p>
+ * The metrics come from the {@link MetricsRegistry} that {@link LibraryData} publishes as
+ * the <code>metrics</code> context attribute: latency percentiles, call, error and row
+ * counts for every {@link BookDatabaseManager} operation and {@link LibraryData} route,
+ * plus gauges for the connection pool, the lookup caches and the write-behind queue.
+ * Until <code>LibraryData</code> has been initialized the endpoint answers
+ * <code>503 Service Unavailable</code>. <em>web.xml</em> restricts the endpoint to users
+ * in the <code>metrics</code> role, with BASIC authentication against the container realm.
+ * </p>
+ *
+ * <p><strong>Example usage:</strong></p>
+ * <pre>
+ *   GET /metrics
+ * </pre>
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    /**
+     * Writes the current metrics.
+     *
+     * @param request  the {@link HttpServletRequest}
+     * @param response the {@link HttpServletResponse} the metrics are written to
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MetricsRegistry metrics = (MetricsRegistry) getServletContext().getAttribute("metrics");
+        if (metrics == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Metrics are not available yet");
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        Writer out = response.getWriter();
+        metrics.writePrometheus(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latency, error and row counters of one instrumented operation, such as a
+ * {@link BookDatabaseManager} method or a {@link LibraryData} view.
+ * <p>
+ * Callers read {@link System#nanoTime()} when the operation starts and pass it to
+ * {@link #record(long, long)} or {@link #recordError(long)} when it ends, or to
+ * {@link #recordBatch(long, long, long)} for a batch whose rows may fail one by one. Every
+ * call is counted in the {@link LatencyHistogram}, so the call count and throughput
+ * include failed calls. All counters are lock-free.
+ * </p>
+ *
+ * <p><strong>Usage example:</strong></p>
+ * <pre>
+ * long start = System.nanoTime();
+ * List&lt;Book&gt; books = loadBooks();
+ * stats.record(start, books.size());
+ * </pre>
+ */
+public class OperationStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+
+    /**
+     * Records a call that succeeded.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the call started
+     * @param rowCount   the number of rows the call read or wrote
+     */
+    public void record(long startNanos, long rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    /**
+     * Records a call that failed.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the call started
+     */
+    public void recordError(long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+        errors.increment();
+    }
+
+    /**
+     * Records a batch call. The rows that were written count as rows; if any row failed,
+     * the call also counts as an error and the failed rows are counted on their own.
+     *
+     * @param startNanos     the value of {@link System#nanoTime()} when the call started
+     * @param succeededCount the number of rows written
+     * @param failedCount    the number of rows that could not be written
+     */
+    public void recordBatch(long startNanos, long succeededCount, long failedCount) {
+        latency.record(System.nanoTime() - startNanos);
+        if (succeededCount > 0) {
+            rows.add(succeededCount);
+        }
+        if (failedCount > 0) {
+            errors.increment();
+            failedRows.add(failedCount);
+        }
+    }
+
+    /**
+     * Returns the histogram of call durations.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of calls that failed.
+     *
+     * @return the error count
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of rows read or written, including the written rows of batches
+     * that partly failed.
+     *
+     * @return the row count
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Returns the number of rows that batch calls failed to write.
+     *
+     * @return the failed row count
+     */
+    public long getFailedRows() {
+        return failedRows.sum();
+    }
+}
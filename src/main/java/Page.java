@@ -0,0 +1,55 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code Page} class holds one page of a keyset-paginated list, such as the
+ * result of {@link BookDatabaseManager#getBooksPage(String, int)}.
+ * <p>
+ * Besides its items, a page carries an opaque continuation token that is passed back
+ * to fetch the next page. The token is {@code null} on the last page.
+ * </p>
+ *
+ * @param <T> the type of the items on the page
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    /**
+     * Constructs a {@code Page} with the given items and continuation token.
+     *
+     * @param items     the items on this page
+     * @param nextToken the token for the next page, or {@code null} if this is the last page
+     */
+    public Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Returns the items on this page.
+     *
+     * @return an unmodifiable list of items
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the token that fetches the page after this one.
+     *
+     * @return the continuation token, or {@code null} if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Returns whether there is a page after this one.
+     *
+     * @return true if {@link #getNextToken()} is not {@code null}, false otherwise
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,112 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used for keyset pagination.
+ * <p>
+ * A token records the sort key of the last row on a page together with a kind
+ * prefix, so that a token issued for one list cannot be replayed against another.
+ * Tokens are URL-safe Base64 and can be put in a query string as they are.
+ * Clients must treat them as opaque; their layout may change between releases.
+ * </p>
+ * <p>
+ * A key value may be {@code null} (a NULL title, for instance); it is stored as a lone
+ * NUL character, and a real value starting with NUL gets a second one in front, so the
+ * two never collide with each other or with the string {@code "null"}.
+ * </p>
+ */
+public final class PageToken {
+    private static final char SEPARATOR = '\u001F';
+    private static final char NULL_MARKER = '\u0000';
+
+    private PageToken() {
+    }
+
+    /**
+     * Builds a token from a kind and the key values of the last row on a page.
+     *
+     * @param kind   identifies the list the token belongs to
+     * @param values the key values of the last row; any of them may be {@code null}
+     * @return the encoded token
+     */
+    public static String encode(String kind, String... values) {
+        StringBuilder sb = new StringBuilder(kind);
+        for (String value : values) {
+            sb.append(SEPARATOR);
+            if (value == null) {
+                sb.append(NULL_MARKER);
+            } else {
+                if (!value.isEmpty() && value.charAt(0) == NULL_MARKER) {
+                    sb.append(NULL_MARKER);
+                }
+                sb.append(value);
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds a token from a kind and a typed sort key, converting each value to a string.
+     * {@code null} values stay {@code null}.
+     *
+     * @param kind identifies the list the token belongs to
+     * @param key  the sort key of the last row
+     * @return the encoded token
+     */
+    public static String encodeKey(String kind, Object[] key) {
+        String[] values = new String[key.length];
+        for (int i = 0; i < key.length; i++) {
+            values[i] = (key[i] == null) ? null : String.valueOf(key[i]);
+        }
+        return encode(kind, values);
+    }
+
+    /**
+     * Returns the kind a token was issued for, without checking its key values.
+     *
+     * @param token the token to inspect
+     * @return the kind, or {@code null} if the token is malformed
+     */
+    public static String kindOf(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int end = decoded.indexOf(SEPARATOR);
+            return (end < 0) ? decoded : decoded.substring(0, end);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes a token and returns its key values.
+     *
+     * @param token      the token to decode
+     * @param kind       the kind the token must belong to
+     * @param valueCount the number of key values the token must hold
+     * @return the key values stored in the token, {@code null} where the key value was {@code null}
+     * @throws IllegalArgumentException if the token is malformed or belongs to another list
+     */
+    public static String[] decode(String token, String kind, int valueCount) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+        String[] parts = decoded.split(String.valueOf(SEPARATOR), -1);
+        if (parts.length != valueCount + 1 || !parts[0].equals(kind)) {
+            throw new IllegalArgumentException("Page token does not belong to this list");
+        }
+        String[] values = new String[valueCount];
+        for (int i = 0; i < valueCount; i++) {
+            String part = parts[i + 1];
+            if (part.isEmpty() || part.charAt(0) != NULL_MARKER) {
+                values[i] = part;
+            } else {
+                values[i] = (part.length() == 1) ? null : part.substring(1);
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * The {@code PoolConfig} class holds the settings used by a {@link ConnectionPool}.
+ * <p>
+ * The JDBC URL and credentials are required; every other setting has a default
+ * that is reasonable for a small servlet deployment and can be changed through
+ * the setters before the pool is created.
+ * </p>
+ *
+ * <p><strong>Usage example:</strong></p>
+ * <pre>
+ * PoolConfig config = new PoolConfig(url, user, password);
+ * config.setMaxSize(20);
+ * ConnectionPool pool = new ConnectionPool(config);
+ * </pre>
+ */
+public class PoolConfig {
+    private final String url;
+    private final String user;
+    private final String password;
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long idleTimeoutMillis = 10 * 60 * 1000L;
+    private long acquireTimeoutMillis = 5_000L;
+    private long evictionIntervalMillis = 30_000L;
+    private long validationIntervalMillis = 500L;
+    private int validationTimeoutSeconds = 2;
+    private int statementCacheSize = 64;
+
+    /**
+     * Constructs a {@code PoolConfig} for the given database.
+     *
+     * @param url      the JDBC URL of the database
+     * @param user     the database user
+     * @param password the database password
+     */
+    public PoolConfig(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Returns the JDBC URL of the database.
+     *
+     * @return the JDBC URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the database user.
+     *
+     * @return the database user
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the database password.
+     *
+     * @return the database password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Returns the number of connections the pool opens at startup and keeps open while idle.
+     *
+     * @return the minimum pool size
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Sets the number of connections the pool opens at startup and keeps open while idle.
+     *
+     * @param minSize the minimum pool size
+     */
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * Returns the maximum number of open connections, borrowed or idle.
+     *
+     * @return the maximum pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of open connections, borrowed or idle.
+     *
+     * @param maxSize the maximum pool size
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns how long a connection may sit idle before it is closed, as long as
+     * the pool stays at or above its minimum size.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a connection may sit idle before it is closed.
+     *
+     * @param idleTimeoutMillis the idle timeout in milliseconds
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Returns how long a caller waits for a connection before giving up.
+     *
+     * @return the acquisition timeout in milliseconds
+     */
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a caller waits for a connection before giving up.
+     *
+     * @param acquireTimeoutMillis the acquisition timeout in milliseconds
+     */
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Returns how often the background task evicts idle connections and tops the
+     * pool back up to its minimum size.
+     *
+     * @return the eviction interval in milliseconds
+     */
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    /**
+     * Sets how often the background task evicts idle connections.
+     *
+     * @param evictionIntervalMillis the eviction interval in milliseconds
+     */
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    /**
+     * Returns how long a connection may go unused before it is validated on borrow.
+     * Connections returned more recently than this are handed out without a ping.
+     *
+     * @return the validation interval in milliseconds
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    /**
+     * Sets how long a connection may go unused before it is validated on borrow.
+     * Use 0 to validate on every borrow.
+     *
+     * @param validationIntervalMillis the validation interval in milliseconds
+     */
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    /**
+     * Returns the timeout passed to {@link java.sql.Connection#isValid(int)} when validating.
+     *
+     * @return the validation timeout in seconds
+     */
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    /**
+     * Sets the timeout passed to {@link java.sql.Connection#isValid(int)} when validating.
+     *
+     * @param validationTimeoutSeconds the validation timeout in seconds
+     */
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * Returns the number of prepared statements each connection keeps open for reuse.
+     *
+     * @return the statement cache size per connection
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Sets the number of prepared statements each connection keeps open for reuse.
+     * Use 0 to close every statement when it is closed. Every cached statement holds a
+     * server-side statement, so {@code maxSize} times this value must stay below the
+     * server's <code>max_prepared_stmt_count</code>.
+     *
+     * @param statementCacheSize the statement cache size per connection
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * The {@code PoolStats} class is an immutable snapshot of a {@link ConnectionPool}'s state.
+ * <p>
+ * Counters such as {@code acquisitions} and {@code totalWaitMillis} are cumulative
+ * since the pool was created; the remaining values describe the pool at the moment
+ * the snapshot was taken.
+ * </p>
+ */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiters;
+    private final long acquisitions;
+    private final long timeouts;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    /**
+     * Constructs a {@code PoolStats} snapshot.
+     *
+     * @param active          the number of borrowed connections
+     * @param idle            the number of idle connections
+     * @param total           the number of open connections
+     * @param waiters         the number of callers waiting for a connection
+     * @param acquisitions    the number of successful borrows
+     * @param timeouts        the number of borrows that timed out
+     * @param totalWaitMillis the total time callers spent waiting for a connection
+     * @param maxWaitMillis   the longest time a single caller waited for a connection
+     * @param statementCacheHits   the number of prepared statements reused from a statement cache
+     * @param statementCacheMisses the number of prepared statements that had to be prepared
+     */
+    public PoolStats(int active, int idle, int total, int waiters, long acquisitions,
+                     long timeouts, long totalWaitMillis, long maxWaitMillis,
+                     long statementCacheHits, long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiters = waiters;
+        this.acquisitions = acquisitions;
+        this.timeouts = timeouts;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    /**
+     * Returns the number of borrowed connections.
+     *
+     * @return the number of borrowed connections
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return the number of idle connections
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return the number of open connections
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of callers waiting for a connection.
+     *
+     * @return the number of callers waiting for a connection
+     */
+    public int getWaiters() {
+        return waiters;
+    }
+
+    /**
+     * Returns the number of successful borrows.
+     *
+     * @return the number of successful borrows
+     */
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * Returns the number of borrows that timed out.
+     *
+     * @return the number of borrows that timed out
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the total wait time in milliseconds.
+     *
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /**
+     * Returns the longest single wait in milliseconds.
+     *
+     * @return the longest single wait in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the number of prepared statements reused from a statement cache.
+     *
+     * @return the number of statement cache hits
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    /**
+     * Returns the number of prepared statements that had to be prepared by the server.
+     *
+     * @return the number of statement cache misses
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    /**
+     * Returns the average time a caller waited for a connection.
+     *
+     * @return the average wait in milliseconds, or 0 if no connection has been borrowed
+     */
+    public double getAverageWaitMillis() {
+        return acquisitions == 0 ? 0 : (double) totalWaitMillis / acquisitions;
+    }
+
+    /**
+     * Returns a string representation of the snapshot.
+     *
+     * @return a formatted string with the pool counters
+     */
+    @Override
+    public String toString() {
+        return "Active: " + active + ", Idle: " + idle + ", Total: " + total
+                + ", Waiters: " + waiters + ", Acquisitions: " + acquisitions
+                + ", Timeouts: " + timeouts + ", Total wait: " + totalWaitMillis + " ms"
+                + ", Max wait: " + maxWaitMillis + " ms"
+                + ", Statement cache hits: " + statementCacheHits + ", misses: " + statementCacheMisses;
+    }
+}
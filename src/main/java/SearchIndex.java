@@ -0,0 +1,402 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index for full-text search over book titles and author names.
+ * <p>
+ * Text is split into tokens at every character that is not a letter or digit, folded to
+ * lower case and stripped of accents, so "&Eacute;ric" matches "eric". Each token maps to a
+ * posting list of the documents that contain it. The term dictionary is kept sorted,
+ * so prefix matching is a range scan: the query "jav" also matches "java" and "javascript".
+ * </p>
+ *
+ * <p>
+ * A query matches a document only if every query token matches one of the document's
+ * tokens, either exactly or as a prefix of at least {@value #MIN_PREFIX_LENGTH}
+ * characters. Matches are ranked by the sum of their token weights. Rare tokens weigh
+ * more than common ones (inverse document frequency), exact matches weigh more than
+ * prefix matches, and shorter texts rank above longer texts with the same matches.
+ * Only the best {@code limit} hits are kept, in a bounded heap.
+ * </p>
+ *
+ * <p>
+ * The index is safe for concurrent use. Searches share a read lock and updates take a
+ * write lock. Adding a book or author whose key is already indexed replaces the old
+ * entry, so the index can be updated with every write. A replaced entry is left in the
+ * posting lists until more than {@value #COMPACTION_MIN_TOMBSTONES} of them, and more
+ * than a quarter of the index, have piled up; the index is then rebuilt without them.
+ * </p>
+ */
+public class SearchIndex {
+    /** Query tokens shorter than this are matched exactly, never as a prefix. */
+    public static final int MIN_PREFIX_LENGTH = 2;
+
+    /**
+     * The largest number of dictionary terms a single prefix is expanded to; the terms
+     * found in the most documents are kept.
+     */
+    public static final int MAX_PREFIX_TERMS = 128;
+
+    /** The number of replaced entries that must pile up before the index is compacted. */
+    public static final int COMPACTION_MIN_TOMBSTONES = 1024;
+
+    private static final float PREFIX_WEIGHT = 0.5f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeMap<String, Postings> terms = new TreeMap<>();
+    //documents by internal ID; replaced documents are set to null and skipped by searches
+    private List<Document> documents = new ArrayList<>();
+    private final Map<String, Integer> bookDocs = new HashMap<>();
+    private final Map<Integer, Integer> authorDocs = new HashMap<>();
+    private int liveDocuments;
+
+    /**
+     * Indexes a book under its title, replacing any earlier entry with the same ISBN.
+     *
+     * @param book the book to index
+     */
+    public void addBook(Book book) {
+        Book copy = new Book(book.getIsbn(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+        lock.writeLock().lock();
+        try {
+            Integer previous = bookDocs.put(copy.getIsbn(), add(new Document(copy, null, copy.getTitle())));
+            remove(previous);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes an author under their first and last name, replacing any earlier entry
+     * with the same author ID.
+     *
+     * @param author the author to index
+     */
+    public void addAuthor(Author author) {
+        Author copy = new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+        lock.writeLock().lock();
+        try {
+            Integer previous = authorDocs.put(copy.getAuthorID(),
+                    add(new Document(null, copy, copy.getFirstName() + " " + copy.getLastName())));
+            remove(previous);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of books and authors in the index.
+     *
+     * @return the number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocuments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the books and authors that best match a query.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of hits to return
+     * @return the hits ordered by descending score; empty if the query has no tokens
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<List<Match>> matchesPerToken = new ArrayList<>();
+            for (String token : new LinkedHashSet<>(tokens)) {
+                List<Match> matches = expand(token);
+                if (matches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                matchesPerToken.add(matches);
+            }
+            //start from the rarest token so the candidate set is as small as possible
+            matchesPerToken.sort((a, b) -> Integer.compare(postingCount(a), postingCount(b)));
+
+            Map<Integer, Float> scores = new HashMap<>();
+            for (Match match : matchesPerToken.get(0)) {
+                Postings postings = match.postings;
+                for (int i = 0; i < postings.size; i++) {
+                    scores.merge(postings.docs[i], match.weight, Math::max);
+                }
+            }
+            for (int t = 1; t < matchesPerToken.size() && !scores.isEmpty(); t++) {
+                List<Match> matches = matchesPerToken.get(t);
+                scores.entrySet().removeIf(entry -> {
+                    float best = 0;
+                    for (Match match : matches) {
+                        if (match.weight > best && match.postings.contains(entry.getKey())) {
+                            best = match.weight;
+                        }
+                    }
+                    if (best == 0) {
+                        return true;
+                    }
+                    entry.setValue(entry.getValue() + best);
+                    return false;
+                });
+            }
+
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a.score, b.score));
+            for (Map.Entry<Integer, Float> entry : scores.entrySet()) {
+                Document document = documents.get(entry.getKey());
+                if (document == null) {
+                    continue;
+                }
+                double score = entry.getValue() / Math.sqrt(document.tokenCount);
+                if (best.size() < limit || score > best.peek().score) {
+                    best.add(new Hit(document.book, document.author, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+
+            Hit[] hits = best.toArray(new Hit[0]);
+            Arrays.sort(hits, (a, b) -> Double.compare(b.score, a.score));
+            return Arrays.asList(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits text into lower-case, accent-free tokens of letters and digits.
+     *
+     * @param text the text to split; may be {@code null}
+     * @return the tokens in the order they appear
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private int add(Document document) {
+        int id = documents.size();
+        documents.add(document);
+        liveDocuments++;
+        for (String token : new HashSet<>(document.tokens)) {
+            terms.computeIfAbsent(token, key -> new Postings()).add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Retires a replaced document. Its postings stay behind and are skipped at search time.
+     */
+    private void remove(Integer id) {
+        if (id != null && documents.get(id) != null) {
+            documents.set(id, null);
+            liveDocuments--;
+        }
+    }
+
+    /**
+     * Rebuilds the documents and posting lists without the replaced documents once they
+     * make up a large enough share of the index.
+     */
+    private void compactIfNeeded() {
+        int tombstones = documents.size() - liveDocuments;
+        if (tombstones <= COMPACTION_MIN_TOMBSTONES || tombstones <= documents.size() / 4) {
+            return;
+        }
+        List<Document> live = new ArrayList<>(liveDocuments);
+        for (Document document : documents) {
+            if (document != null) {
+                live.add(document);
+            }
+        }
+        documents = new ArrayList<>(live.size());
+        terms = new TreeMap<>();
+        liveDocuments = 0;
+        bookDocs.clear();
+        authorDocs.clear();
+        for (Document document : live) {
+            int id = add(document);
+            if (document.book != null) {
+                bookDocs.put(document.book.getIsbn(), id);
+            } else {
+                authorDocs.put(document.author.getAuthorID(), id);
+            }
+        }
+    }
+
+    /**
+     * Looks up the dictionary terms a query token matches, with their weights. A prefix
+     * is expanded to at most {@value #MAX_PREFIX_TERMS} terms, those in the most documents.
+     */
+    private List<Match> expand(String token) {
+        List<Match> matches = new ArrayList<>();
+        Postings exact = terms.get(token);
+        if (exact != null) {
+            matches.add(new Match(exact, idf(exact)));
+        }
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            PriorityQueue<Postings> frequent = new PriorityQueue<>(MAX_PREFIX_TERMS + 1,
+                    (a, b) -> Integer.compare(a.size, b.size));
+            for (Postings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                if (frequent.size() < MAX_PREFIX_TERMS || postings.size > frequent.peek().size) {
+                    frequent.add(postings);
+                    if (frequent.size() > MAX_PREFIX_TERMS) {
+                        frequent.poll();
+                    }
+                }
+            }
+            for (Postings postings : frequent) {
+                matches.add(new Match(postings, PREFIX_WEIGHT * idf(postings)));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Weighs a term by how rare it is among the documents still in the index.
+     */
+    private float idf(Postings postings) {
+        return (float) Math.log(1.0 + (double) Math.max(1, liveDocuments) / postings.size);
+    }
+
+    private static int postingCount(List<Match> matches) {
+        int count = 0;
+        for (Match match : matches) {
+            count += match.postings.size;
+        }
+        return count;
+    }
+
+    /**
+     * A single book or author returned by {@link #search(String, int)}.
+     * Exactly one of {@link #getBook()} and {@link #getAuthor()} is non-null; the object
+     * is shared with the index and must not be modified.
+     */
+    public static class Hit {
+        private final Book book;
+        private final Author author;
+        private final double score;
+
+        Hit(Book book, Author author, double score) {
+            this.book = book;
+            this.author = author;
+            this.score = score;
+        }
+
+        /**
+         * Returns the matching book.
+         *
+         * @return the book, or {@code null} if this hit is an author
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * Returns the matching author.
+         *
+         * @return the author, or {@code null} if this hit is a book
+         */
+        public Author getAuthor() {
+            return author;
+        }
+
+        /**
+         * Returns the relevance of the hit; higher is better.
+         *
+         * @return the score of the hit
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return (book != null)
+                    ? book.getTitle() + " (ISBN: " + book.getIsbn() + ")"
+                    : author.getFirstName() + " " + author.getLastName();
+        }
+    }
+
+    private static final class Document {
+        private final Book book;
+        private final Author author;
+        private final List<String> tokens;
+        private final int tokenCount;
+
+        private Document(Book book, Author author, String text) {
+            this.book = book;
+            this.author = author;
+            this.tokens = tokenize(text);
+            this.tokenCount = Math.max(1, tokens.size());
+        }
+    }
+
+    private static final class Match {
+        private final Postings postings;
+        private final float weight;
+
+        private Match(Postings postings, float weight) {
+            this.postings = postings;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A growable, sorted array of document IDs. IDs are assigned in increasing order, so
+     * appending keeps the array sorted and membership is a binary search.
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int size;
+
+        private void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        private boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+    }
+}
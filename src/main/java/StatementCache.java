@@ -0,0 +1,259 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache of the prepared statements of one physical connection.
+ * <p>
+ * With server-side prepared statements, every {@code prepareStatement} call costs a
+ * round trip in which MySQL parses and plans the SQL, and every {@code close} costs
+ * another to deallocate it. {@link ConnectionPool} routes the {@code prepareStatement}
+ * calls of a borrowed connection through this cache, so a statement that was prepared
+ * before on the same physical connection is handed out again without either round trip.
+ * Calling {@link PreparedStatement#close()} on the returned statement closes its open
+ * result set, clears its parameters and batch, restores the fetch size, maximum row count
+ * and query timeout it was prepared with, and puts it back into the cache instead of
+ * closing it.
+ * </p>
+ *
+ * <p>
+ * At most {@code maxSize} statements are kept; the least recently used statement that
+ * is not checked out is closed to make room. While every cached statement is checked
+ * out, a new one is cached anyway, and the cache shrinks back to {@code maxSize} as
+ * statements are returned. A statement is checked out by at most one
+ * caller at a time: preparing the same SQL again before the first statement is closed
+ * returns a new statement that is closed normally. When a lease on the connection ends,
+ * statements still checked out are closed as well.
+ * </p>
+ *
+ * <p>
+ * A connection is only used by one thread at a time, so the cache is not thread-safe.
+ * </p>
+ */
+public class StatementCache {
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructs an empty {@code StatementCache}.
+     *
+     * @param maxSize the largest number of statements kept open
+     * @param hits    counter incremented for every statement served from the cache
+     * @param misses  counter incremented for every statement that had to be prepared
+     */
+    public StatementCache(int maxSize, LongAdder hits, LongAdder misses) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Opens a prepared statement when the cache cannot supply one.
+     */
+    public interface Opener {
+        PreparedStatement open() throws SQLException;
+    }
+
+    /**
+     * Returns a cached statement for the given key, or prepares one with {@code opener}
+     * and caches it.
+     *
+     * @param key    the SQL text plus any options it was prepared with
+     * @param lease  the borrowed connection, returned by {@link PreparedStatement#getConnection()}
+     * @param opener prepares the statement on the physical connection
+     * @return a statement whose {@code close()} returns it to the cache
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepare(String key, Connection lease, Opener opener) throws SQLException {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.checkedOut) {
+            hits.increment();
+            return entry.checkOut(lease);
+        }
+        misses.increment();
+        PreparedStatement statement = opener.open();
+        if (entry != null) {
+            //the cached one is in use by this caller; this copy is not cached
+            return statement;
+        }
+        entry = new Entry(key, statement);
+        entries.put(key, entry);
+        //checked out first, so that making room never closes the statement being handed out
+        PreparedStatement checkedOut = entry.checkOut(lease);
+        evict();
+        return checkedOut;
+    }
+
+    /**
+     * Closes the statements that are still checked out, at the end of a lease. The rest
+     * stay cached for the next lease.
+     */
+    public void closeCheckedOut() {
+        List<Entry> open = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.checkedOut) {
+                open.add(entry);
+            }
+        }
+        for (Entry entry : open) {
+            entries.remove(entry.key);
+            entry.closeQuietly();
+        }
+    }
+
+    /**
+     * Returns the number of cached statements.
+     *
+     * @return the number of statements
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Entry> eldestFirst = entries.values().iterator();
+        while (entries.size() > maxSize && eldestFirst.hasNext()) {
+            Entry entry = eldestFirst.next();
+            if (!entry.checkedOut) {
+                eldestFirst.remove();
+                entry.closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Takes a returned statement back, or closes it if it cannot be reset, and closes
+     * the least recently used statements if the cache grew past its size meanwhile.
+     */
+    private void checkIn(Entry entry) {
+        entry.checkedOut = false;
+        if (entries.get(entry.key) != entry) {
+            //closed by closeCheckedOut() when its lease ended
+            entry.closeQuietly();
+            return;
+        }
+        try {
+            ResultSet open = entry.statement.getResultSet();
+            if (open != null) {
+                //a streamed result that was not read to the end would block the connection
+                open.close();
+            }
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+            entry.statement.clearWarnings();
+            if (entry.statement.getFetchSize() != entry.fetchSize) {
+                entry.statement.setFetchSize(entry.fetchSize);
+            }
+            if (entry.statement.getMaxRows() != entry.maxRows) {
+                entry.statement.setMaxRows(entry.maxRows);
+            }
+            if (entry.statement.getQueryTimeout() != entry.queryTimeout) {
+                entry.statement.setQueryTimeout(entry.queryTimeout);
+            }
+        } catch (SQLException e) {
+            entries.remove(entry.key);
+            entry.closeQuietly();
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * A cached statement and the settings it is reset to when returned.
+     */
+    private final class Entry {
+        private final String key;
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int maxRows;
+        private final int queryTimeout;
+        private boolean checkedOut;
+
+        private Entry(String key, PreparedStatement statement) throws SQLException {
+            this.key = key;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        /**
+         * Wraps the statement in a proxy whose {@code close()} returns it to the cache.
+         * Every checkout gets its own proxy, so a stale reference cannot use the
+         * statement after it has been handed to someone else.
+         */
+        private PreparedStatement checkOut(Connection lease) {
+            checkedOut = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CheckoutHandler(this, lease));
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forwards calls to the cached statement until the checkout is closed.
+     */
+    private final class CheckoutHandler implements InvocationHandler {
+        private final Entry entry;
+        private final Connection lease;
+        private boolean closed;
+
+        private CheckoutHandler(Entry entry, Connection lease) {
+            this.entry = entry;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        checkIn(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.statement.isClosed();
+                case "getConnection":
+                    return lease;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + entry.statement;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been returned to the cache");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
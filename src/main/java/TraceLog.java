@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Writes trace and slow-query lines on a background thread, so that request threads
+ * never wait for the disk or the log handlers.
+ * <p>
+ * Lines are put into a bounded queue. If the queue is full, the line is dropped and
+ * counted instead of blocking the caller; {@link #getDropped()} reports how many were
+ * lost. A daemon thread takes lines off the queue in batches, writes them and flushes
+ * the file once per batch. Without a file, lines go to the <code>java.util.logging</code>
+ * logger named after this class at level INFO, which the container routes to its own log.
+ * </p>
+ */
+public class TraceLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TraceLog.class.getName());
+
+    private final Writer out;
+    private final BlockingQueue<String> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a {@code TraceLog} and starts its writer thread.
+     *
+     * @param file     the file the lines are appended to, or {@code null} for the logger
+     * @param capacity the largest number of lines waiting to be written
+     * @throws IOException if the file could not be opened
+     */
+    public TraceLog(Path file, int capacity) throws IOException {
+        this.out = (file == null) ? null
+                : Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "trace-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a line for writing without waiting.
+     *
+     * @param line the line, without a line terminator
+     * @return false if the line was dropped because the queue was full or the log is closed
+     */
+    public boolean offer(String line) {
+        if (closed || !queue.offer(line)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of lines dropped because the queue was full.
+     *
+     * @return the number of dropped lines
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes the lines already queued, stops the writer thread and closes the file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void run() {
+        List<String> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                if (out == null) {
+                    for (String line : batch) {
+                        LOGGER.info(line);
+                    }
+                    continue;
+                }
+                for (String line : batch) {
+                    out.write(line);
+                    out.write(System.lineSeparator());
+                }
+                out.flush();
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records where the time of a request goes, and logs statements that are slower than a
+ * threshold.
+ * <p>
+ * A sampled fraction of requests ({@code sampleRate}, between 0 and 1) gets a
+ * {@link Trace}. While a trace is attached to the thread handling the request, the
+ * {@link ConnectionPool} adds a span for every connection it hands out
+ * ({@code db.acquire}), and every prepared statement borrowed from the pool adds a span
+ * for each execution ({@code db.execute}) and, for queries, one for reading the result
+ * set ({@code db.fetch}, with the number of rows and the time the result set was open). {@link LibraryData} adds the time spent
+ * in its handler ({@code handle}) and in the JSP ({@code render}). A finished trace is
+ * written as one line of the {@link TraceLog}.
+ * </p>
+ *
+ * <p>
+ * Independently of sampling, every statement is timed: its execution, plus the time spent
+ * inside {@link ResultSet#next()} for queries. The time the caller spends on each row
+ * between two calls is not counted, so a slow consumer does not make a statement slow.
+ * A statement that takes {@code slowQueryMillis} or longer is counted, and a fraction
+ * ({@code slowQuerySampleRate}) of them is written to the log with its SQL, the shape of
+ * its bind parameters (their types and, for batches, the number of rows, never their
+ * values) and its execute and fetch times. The shape is only put into words for a
+ * statement that is traced or logged. A negative threshold turns the slow-query log off.
+ * </p>
+ *
+ * <p>
+ * Lines are handed to the {@link TraceLog} without waiting; if it cannot keep up they are
+ * dropped rather than slowing down requests.
+ * </p>
+ */
+public class Tracer implements AutoCloseable {
+    /** The longest SQL text written to a span or the slow-query log. */
+    private static final int MAX_SQL_LENGTH = 2_000;
+
+    private final double sampleRate;
+    private final long slowQueryNanos;
+    private final double slowQuerySampleRate;
+    private final TraceLog log;
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final LongAdder slowQueries = new LongAdder();
+
+    /**
+     * Constructs a {@code Tracer}.
+     *
+     * @param sampleRate          the fraction of requests traced, between 0 and 1
+     * @param slowQueryMillis     the time from which a statement counts as slow; negative to turn the slow-query log off
+     * @param slowQuerySampleRate the fraction of slow statements written to the log, between 0 and 1
+     * @param log                 where traces and slow statements are written; closed by {@link #close()}
+     */
+    public Tracer(double sampleRate, long slowQueryMillis, double slowQuerySampleRate, TraceLog log) {
+        this.sampleRate = sampleRate;
+        this.slowQueryNanos = slowQueryMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.slowQuerySampleRate = slowQuerySampleRate;
+        this.log = log;
+    }
+
+    /**
+     * Starts a trace for a request if the request is sampled.
+     *
+     * @param name       the name of the request, such as its route
+     * @param startNanos the {@link System#nanoTime()} at which the request started
+     * @return the new trace, or {@code null} if the request is not sampled
+     */
+    public Trace start(String name, long startNanos) {
+        return sampled(sampleRate) ? new Trace(name, startNanos) : null;
+    }
+
+    /**
+     * Makes a trace the current trace of the calling thread, so the spans recorded on
+     * this thread are added to it.
+     *
+     * @param trace the trace, or {@code null} to record nothing
+     */
+    public void attach(Trace trace) {
+        if (trace == null) {
+            current.remove();
+        } else {
+            current.set(trace);
+        }
+    }
+
+    /**
+     * Removes the current trace of the calling thread.
+     */
+    public void detach() {
+        current.remove();
+    }
+
+    /**
+     * Adds a span ending now to the current trace of the calling thread, if there is one.
+     *
+     * @param name       the name of the span
+     * @param startNanos the {@link System#nanoTime()} at which the span started
+     * @param detail     text shown after the duration, or {@code null}
+     */
+    public void span(String name, long startNanos, String detail) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.add(name, startNanos, System.nanoTime(), detail);
+        }
+    }
+
+    /**
+     * Writes a finished trace to the log.
+     *
+     * @param trace the trace, or {@code null} if the request was not sampled
+     */
+    public void finish(Trace trace) {
+        if (trace != null) {
+            log.offer(trace.format(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Wraps a prepared statement so that its executions are timed. The statement is
+     * returned as it is if there is nothing to record: no trace is attached to the calling
+     * thread and the slow-query log is off.
+     *
+     * @param statement the statement to wrap
+     * @param sql       the SQL the statement was prepared with
+     * @return the statement to hand to the caller
+     */
+    public PreparedStatement wrap(PreparedStatement statement, String sql) {
+        if (slowQueryNanos < 0 && current.get() == null) {
+            return statement;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementHandler(statement, sql));
+    }
+
+    /**
+     * Returns the number of statements that took longer than the threshold, including
+     * those not written to the log.
+     *
+     * @return the number of slow statements
+     */
+    public long getSlowQueries() {
+        return slowQueries.sum();
+    }
+
+    /**
+     * Returns the number of log lines dropped because the {@link TraceLog} was full.
+     *
+     * @return the number of dropped lines
+     */
+    public long getDroppedLines() {
+        return log.getDropped();
+    }
+
+    /**
+     * Writes the lines still queued and closes the log.
+     */
+    @Override
+    public void close() {
+        log.close();
+    }
+
+    /**
+     * Records one finished statement: adds its spans to the current trace and logs it if
+     * it was slow.
+     *
+     * @param fetchNanos the time spent reading the result set
+     * @param closed     when the result set was closed, or {@code executeEnd} for updates
+     */
+    private void statementDone(String sql, String[] parameterTypes, int batchRows, long executeStart,
+                               long executeEnd, long fetchNanos, long closed, long rows, boolean query,
+                               boolean failed) {
+        Trace trace = current.get();
+        if (trace != null) {
+            String detail = (failed ? "failed " : "") + "sql=\"" + abbreviate(sql, 100) + "\" params="
+                    + describeParameters(parameterTypes, batchRows);
+            trace.add("db.execute", executeStart, executeEnd, detail);
+            if (query && !failed) {
+                trace.add("db.fetch", executeEnd, executeEnd + fetchNanos,
+                        "rows=" + rows + " open=" + millis(closed - executeEnd));
+            }
+        }
+        long total = (executeEnd - executeStart) + fetchNanos;
+        if (slowQueryNanos >= 0 && total >= slowQueryNanos) {
+            slowQueries.increment();
+            if (sampled(slowQuerySampleRate)) {
+                log.offer("slow-query " + Instant.now()
+                        + " total=" + millis(total)
+                        + " execute=" + millis(executeEnd - executeStart)
+                        + " fetch=" + millis(fetchNanos)
+                        + (failed ? " failed" : " rows=" + rows)
+                        + " params=" + describeParameters(parameterTypes, batchRows)
+                        + " sql=\"" + abbreviate(sql, MAX_SQL_LENGTH) + "\"");
+            }
+        }
+    }
+
+    /**
+     * Returns the types of the bind parameters, with runs of the same type collapsed,
+     * such as {@code (String x2, Int)}, followed by the number of batched rows.
+     */
+    private static String describeParameters(String[] parameterTypes, int batchRows) {
+        StringBuilder shape = new StringBuilder("(");
+        for (int i = 0; i < parameterTypes.length; ) {
+            String type = parameterTypes[i];
+            int run = 1;
+            while (i + run < parameterTypes.length && parameterTypes[i + run].equals(type)) {
+                run++;
+            }
+            if (i > 0) {
+                shape.append(", ");
+            }
+            shape.append(type);
+            if (run > 1) {
+                shape.append(" x").append(run);
+            }
+            i += run;
+        }
+        shape.append(')');
+        if (batchRows > 0) {
+            shape.append(" batch=").append(batchRows);
+        }
+        return shape.toString();
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Collapses the whitespace of the SQL and cuts it to {@code max} characters.
+     */
+    private static String abbreviate(String sql, int max) {
+        String text = sql.replaceAll("\\s+", " ").trim().replace("\"", "'");
+        return text.length() <= max ? text : text.substring(0, max) + "...";
+    }
+
+    /**
+     * The spans recorded for one sampled request.
+     * <p>
+     * Spans may be added from several threads, such as the thread that handles the
+     * request and the one that renders its JSP.
+     * </p>
+     */
+    public static final class Trace {
+        private final String name;
+        private final long startNanos;
+        private final List<String> spans = new ArrayList<>();
+
+        private Trace(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Adds a span.
+         *
+         * @param name       the name of the span
+         * @param startNanos the {@link System#nanoTime()} at which the span started
+         * @param endNanos   the {@link System#nanoTime()} at which the span ended
+         * @param detail     text shown after the duration, or {@code null}
+         */
+        public void add(String name, long startNanos, long endNanos, String detail) {
+            String span = name + " +" + millis(startNanos - this.startNanos) + " " + millis(endNanos - startNanos)
+                    + (detail == null ? "" : " " + detail);
+            synchronized (spans) {
+                spans.add(span);
+            }
+        }
+
+        private String format(long endNanos) {
+            synchronized (spans) {
+                return "trace " + Instant.now() + " \"" + name + "\" total=" + millis(endNanos - startNanos)
+                        + " spans=[" + String.join("; ", spans) + "]";
+            }
+        }
+    }
+
+    /**
+     * Times the executions of one prepared statement and remembers the types of its bind
+     * parameters.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final String sql;
+        private final List<String> parameterTypes = new ArrayList<>();
+        private int batchRows;
+        private ResultSetHandler openResults;
+
+        private StatementHandler(PreparedStatement statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(proxy, method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2
+                    && method.getParameterTypes()[0] == int.class) {
+                setParameterType((Integer) args[0], name.substring(3), args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameterTypes.clear();
+            } else if (name.equals("addBatch")) {
+                batchRows++;
+            } else if (name.equals("clearBatch")) {
+                batchRows = 0;
+            } else if (name.equals("close") && openResults != null) {
+                //the result set goes with its statement
+                openResults.done();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return invokeOn(statement, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            if (openResults != null) {
+                openResults.done();
+            }
+            //the types are put into words only if the statement turns out to be traced or logged
+            String[] parameters = parameterTypes.toArray(new String[0]);
+            int rows = batchRows;
+            batchRows = 0;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeOn(statement, method, args);
+            } catch (Throwable e) {
+                long end = System.nanoTime();
+                statementDone(sql, parameters, rows, start, end, 0, end, 0, false, true);
+                throw e;
+            }
+            long end = System.nanoTime();
+            if (result instanceof ResultSet) {
+                openResults = new ResultSetHandler((ResultSet) result, (PreparedStatement) proxy, sql, parameters,
+                        rows, start, end);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, openResults);
+            }
+            statementDone(sql, parameters, rows, start, end, 0, end, updateCount(result), false, false);
+            return result;
+        }
+
+        private void setParameterType(int index, String setter, Object value) {
+            String type = (setter.equals("Object") && value != null) ? value.getClass().getSimpleName() : setter;
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+            parameterTypes.set(index - 1, type);
+        }
+    }
+
+    /**
+     * Counts the rows read from a result set and the time spent in {@link ResultSet#next()},
+     * and records its statement when it is closed.
+     */
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet results;
+        private final PreparedStatement statement;
+        private final String sql;
+        private final String[] parameterTypes;
+        private final int batchRows;
+        private final long executeStart;
+        private final long executeEnd;
+        private long fetchNanos;
+        private long rows;
+        private boolean done;
+
+        private ResultSetHandler(ResultSet results, PreparedStatement statement, String sql, String[] parameterTypes,
+                                 int batchRows, long executeStart, long executeEnd) {
+            this.results = results;
+            this.statement = statement;
+            this.sql = sql;
+            this.parameterTypes = parameterTypes;
+            this.batchRows = batchRows;
+            this.executeStart = executeStart;
+            this.executeEnd = executeEnd;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    Object hasRow;
+                    try {
+                        hasRow = invokeOn(results, method, args);
+                    } finally {
+                        fetchNanos += System.nanoTime() - start;
+                    }
+                    if ((Boolean) hasRow) {
+                        rows++;
+                    }
+                    return hasRow;
+                case "close":
+                    done();
+                    break;
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return invokeOn(results, method, args);
+        }
+
+        private void done() {
+            if (!done) {
+                done = true;
+                statementDone(sql, parameterTypes, batchRows, executeStart, executeEnd, fetchNanos, System.nanoTime(),
+                        rows, true, false);
+            }
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long updateCount(Object result) {
+        if (result instanceof Number) {
+            return Math.max(0, ((Number) result).longValue());
+        }
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                rows += Math.max(0, count);
+            }
+        }
+        return rows;
+    }
+}
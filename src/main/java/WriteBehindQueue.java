@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single-row inserts from many requests and writes them to the database in
+ * micro-batches (group commit).
+ * <p>
+ * Each submitted book or author is placed in a bounded queue and a {@link CompletableFuture}
+ * is returned for it. A single flusher thread takes rows off the queue until it has
+ * <code>maxBatchSize</code> of them or the first row has waited <code>maxDelayMillis</code>,
+ * whichever comes first, and inserts the batch with {@link BookStore#addAuthors}
+ * and {@link BookStore#addBooksWithAuthors}. Authors and books each go in one
+ * transaction per batch. A future completes only after its row's transaction has committed, with
+ * {@code true} if the row was inserted and {@code false} if the database rejected it.
+ * </p>
+ *
+ * <p>
+ * When the queue is full, {@link #submitBook(Book)} and {@link #submitAuthor(Author)}
+ * wait up to <code>offerTimeoutMillis</code> for room and then throw
+ * {@link RejectedExecutionException}, so callers slow down to the rate the database
+ * can sustain instead of piling up work.
+ * </p>
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private final BookStore dbManager;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutMillis;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a {@code WriteBehindQueue} and starts its flusher thread.
+     *
+     * @param dbManager          the store used for the batched inserts
+     * @param capacity           the largest number of rows waiting to be written
+     * @param maxBatchSize       the largest number of rows written in one batch
+     * @param maxDelayMillis     the longest time a row waits for its batch to fill up
+     * @param offerTimeoutMillis the longest time a caller waits for room in a full queue
+     */
+    public WriteBehindQueue(BookStore dbManager, int capacity, int maxBatchSize, long maxDelayMillis,
+                            long offerTimeoutMillis) {
+        if (capacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("capacity and maxBatchSize must be at least 1");
+        }
+        this.dbManager = dbManager;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flusher = new Thread(this::run, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a book for insertion into the <strong>titles</strong> table, together with
+     * its authors and <strong>authorISBN</strong> links as described in
+     * {@link BookStore#addBookWithAuthors(Book)}.
+     *
+     * @param book the book to insert, with its authors
+     * @return a future that completes after the batch containing the book has committed
+     * @throws RejectedExecutionException if the queue stayed full or the queue is closed
+     */
+    public CompletableFuture<Boolean> submitBook(Book book) {
+        return submit(new PendingWrite(book, null));
+    }
+
+    /**
+     * Queues an author for insertion into the <strong>authors</strong> table. The
+     * generated authorID is set in the {@link Author} before the future completes.
+     *
+     * @param author the author to insert
+     * @return a future that completes after the batch containing the author has committed
+     * @throws RejectedExecutionException if the queue stayed full or the queue is closed
+     */
+    public CompletableFuture<Boolean> submitAuthor(Author author) {
+        return submit(new PendingWrite(null, author));
+    }
+
+    /**
+     * Returns the number of rows waiting to be written.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting rows, writes the rows already queued and stops the flusher thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //rows that slipped in while the flusher was exiting
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            write.result.completeExceptionally(new RejectedExecutionException("The write queue is closed"));
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(PendingWrite write) {
+        if (closed) {
+            throw new RejectedExecutionException("The write queue is closed");
+        }
+        try {
+            if (!queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("The write queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the write queue", e);
+        }
+        //close() may have drained the queue while this call waited for room; a row still in
+        //the queue then would never be written, so take it back. If it is gone, the flusher
+        //or close() has it and completes its future.
+        if (closed && queue.remove(write)) {
+            throw new RejectedExecutionException("The write queue is closed");
+        }
+        return write.result;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                closed = true;
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (PendingWrite write : batch) {
+                    write.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Inserts one batch and completes the future of every row in it.
+     */
+    private void flush(List<PendingWrite> batch) {
+        List<PendingWrite> bookWrites = new ArrayList<>();
+        List<PendingWrite> authorWrites = new ArrayList<>();
+        List<Book> books = new ArrayList<>();
+        List<Author> authors = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.book != null) {
+                bookWrites.add(write);
+                books.add(write.book);
+            } else {
+                authorWrites.add(write);
+                authors.add(write.author);
+            }
+        }
+
+        if (!authors.isEmpty()) {
+            complete(authorWrites, dbManager.addAuthors(authors, maxBatchSize));
+        }
+        if (!books.isEmpty()) {
+            complete(bookWrites, dbManager.addBooksWithAuthors(books));
+        }
+    }
+
+    private static void complete(List<PendingWrite> writes, BatchResult<?> result) {
+        boolean[] failed = new boolean[writes.size()];
+        for (BatchResult.Failure<?> failure : result.getFailures()) {
+            failed[failure.getIndex()] = true;
+        }
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).result.complete(!failed[i]);
+        }
+    }
+
+    /**
+     * A row waiting to be written; exactly one of {@code book} and {@code author} is set.
+     */
+    private static final class PendingWrite {
+        private final Book book;
+        private final Author author;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingWrite(Book book, Author author) {
+            this.book = book;
+            this.author = author;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+-- Merges authors that share a name and adds the unique index that lets
+-- BookDatabaseManager.addAuthor never insert the same author twice.
+--
+-- Names are compared with the column collation (utf8mb4_0900_ai_ci by default), i.e.
+-- case- and accent-insensitively, after trimming and collapsing whitespace the way
+-- AuthorNameIndex.clean does. Of each group of duplicates the lowest authorID is kept
+-- and the authorISBN links of the others are moved to it. Requires MySQL 8.0.
+--
+-- Run once, while the application is stopped.
+
+START TRANSACTION;
+
+UPDATE authors
+SET firstName = TRIM(REGEXP_REPLACE(firstName, '[[:space:]]+', ' ')),
+    lastName  = TRIM(REGEXP_REPLACE(lastName, '[[:space:]]+', ' '));
+
+CREATE TEMPORARY TABLE author_merge AS
+SELECT a.authorID AS duplicateID, k.keepID
+FROM authors a
+JOIN (SELECT firstName, lastName, MIN(authorID) AS keepID
+      FROM authors
+      GROUP BY firstName, lastName) k
+  ON k.firstName = a.firstName AND k.lastName = a.lastName
+WHERE a.authorID <> k.keepID;
+
+INSERT INTO authorISBN (authorID, isbn)
+SELECT DISTINCT m.keepID, ai.isbn
+FROM authorISBN ai
+JOIN author_merge m ON m.duplicateID = ai.authorID
+WHERE NOT EXISTS (SELECT 1 FROM authorISBN kept WHERE kept.authorID = m.keepID AND kept.isbn = ai.isbn);
+
+DELETE ai FROM authorISBN ai JOIN author_merge m ON m.duplicateID = ai.authorID;
+DELETE a FROM authors a JOIN author_merge m ON m.duplicateID = a.authorID;
+
+DROP TEMPORARY TABLE author_merge;
+
+COMMIT;
+
+-- DDL commits implicitly, so the index is added after the merge. It replaces the
+-- non-unique idx_authors_first_last from catalog-indexes.sql for the firstName, lastName
+-- sort order; drop that line if catalog-indexes.sql was never run.
+DROP INDEX idx_authors_first_last ON authors;
+CREATE UNIQUE INDEX ux_authors_first_last ON authors (firstName, lastName);
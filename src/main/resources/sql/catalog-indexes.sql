@@ -0,0 +1,16 @@
+-- Indexes backing the sort orders in BookSort and AuthorSort.
+--
+-- Every list view is read with ORDER BY <sort columns>, <primary key> LIMIT n and
+-- keyset pagination seeks on the same columns, so each sort order needs an index
+-- whose leading columns match it. InnoDB appends the primary key to every secondary
+-- index, which supplies the tie-breaking isbn / authorID column.
+--
+-- The comparison follows the column collation (utf8mb4_0900_ai_ci by default), so
+-- titles and names sort case- and accent-insensitively without any work in Java.
+
+CREATE INDEX idx_titles_title ON titles (title);
+CREATE INDEX idx_titles_copyright ON titles (copyright);
+CREATE INDEX idx_titles_edition ON titles (editionNumber);
+
+CREATE INDEX idx_authors_last_first ON authors (lastName, firstName);
+CREATE INDEX idx_authors_first_last ON authors (firstName, lastName);
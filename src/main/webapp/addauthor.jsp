@@ -70,7 +70,8 @@
         <input type="hidden" name="type" value="author">
 
         <label for="author">Author Name:</label>
-        <input type="text" id="author" name="author" required>
+        <input type="text" id="author" name="author" list="author-suggestions" autocomplete="off" required>
+        <datalist id="author-suggestions"></datalist>
 
         <input type="submit" value="Add Author">
     </form>
@@ -78,6 +79,10 @@
         <a href="index.jsp">Back to Home</a>
     </div>
 </div>
+<script src="js/suggest.js"></script>
+<script>
+    attachSuggestions("author", "author");
+</script>
 </body>
 </html>
 
@@ -73,7 +73,8 @@
         <input type="text" id="isbn" name="isbn" required>
 
         <label for="title">Book Title:</label>
-        <input type="text" id="title" name="title" required>
+        <input type="text" id="title" name="title" list="title-suggestions" autocomplete="off" required>
+        <datalist id="title-suggestions"></datalist>
 
         <label for="editionNumber">Edition Number:</label>
         <input type="number" id="editionNumber" name="editionNumber" required>
@@ -82,7 +83,8 @@
         <input type="text" id="copyright" name="copyright" required>
 
         <label for="author">Author Name:</label>
-        <input type="text" id="author" name="author" required>
+        <input type="text" id="author" name="author" list="author-suggestions" autocomplete="off" required>
+        <datalist id="author-suggestions"></datalist>
 
         <input type="submit" value="Add Book">
     </form>
@@ -90,6 +92,11 @@
         <a href="index.jsp">Back to Home</a>
     </div>
 </div>
+<script src="js/suggest.js"></script>
+<script>
+    attachSuggestions("title", "title");
+    attachSuggestions("author", "author");
+</script>
 </body>
 </html>
 
@@ -39,6 +39,11 @@
       font-weight: bold;
     }  .grid-item:hover {
       background: #ddd;
+    }  .search-form {
+      margin-top: 30px;
+    }  .search-form input[type=text] {
+      width: 60%;
+      padding: 6px;
     }
   </style>
 
@@ -60,6 +65,11 @@
       <a href="LibraryData?view=authors">View Authors</a>
     </div>
   </div>
+  <form class="search-form" action="LibraryData" method="get">
+    <input type="hidden" name="view" value="search">
+    <input type="text" name="q" placeholder="Search titles and authors">
+    <input type="submit" value="Search">
+  </form>
 </div>
 </body>
 </html>
@@ -0,0 +1,28 @@
+// fills the <datalist> of an input with suggestions from LibraryData?view=suggest as the user types;
+// the datalist's id is the input's id followed by "-suggestions"
+function attachSuggestions(inputId, field) {
+    var input = document.getElementById(inputId);
+    var list = document.getElementById(inputId + "-suggestions");
+    var timer = null;
+    input.addEventListener("input", function () {
+        clearTimeout(timer);
+        timer = setTimeout(function () {
+            var q = input.value.trim();
+            if (q.length === 0) {
+                list.innerHTML = "";
+                return;
+            }
+            fetch("LibraryData?view=suggest&field=" + field + "&q=" + encodeURIComponent(q))
+                .then(function (response) { return response.json(); })
+                .then(function (suggestions) {
+                    list.innerHTML = "";
+                    suggestions.forEach(function (suggestion) {
+                        var option = document.createElement("option");
+                        option.value = suggestion;
+                        list.appendChild(option);
+                    });
+                })
+                .catch(function () { });
+        }, 150);
+    });
+}
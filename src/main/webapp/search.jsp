@@ -0,0 +1,91 @@
+<%@ page contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" %>
+<%@ page import="java.util.List" %>
+<%@ include file="/WEB-INF/escape.jspf" %>
+<!DOCTYPE html>
+<html>
+<head>
+    <title>Search</title>
+
+    <style>
+        body {
+            margin: 0;
+            padding: 0;
+            font-family: Arial, sans-serif;
+            background-color: #f4f4f4;
+        }  .container {
+            max-width: 800px;
+            margin: 50px auto;
+            background: #fff;
+            padding: 20px;
+            border-radius: 8px;
+            box-shadow: 0 0 10px rgba(0,0,0,0.1);
+        }  h2 {
+            text-align: center;
+            margin-bottom: 20px;
+        }  ul {
+            list-style-type: none;
+            padding: 0;
+            margin: 0;
+        }  li {
+            padding: 10px 0;
+            border-bottom: 1px solid #ccc;
+        }  li:last-child {
+            border-bottom: none;
+        }  a {
+            color: #007bff;
+            text-decoration: none;
+        }  a:hover {
+            text-decoration: underline;
+        }  .center-link {
+            text-align: center;
+            margin-top: 20px;
+        }  .search-form {
+            text-align: center;
+            margin-bottom: 20px;
+        }  .search-form input[type=text] {
+            width: 60%;
+            padding: 6px;
+        }
+    </style>
+
+</head>
+<body>
+<div class="container">
+    <h2>Search</h2>
+    <%
+        String query = (String) request.getAttribute("query");
+        // the query is echoed back, so escape it
+        String escapedQuery = escapeHtml(query);
+    %>
+    <form class="search-form" action="LibraryData" method="get">
+        <input type="hidden" name="view" value="search">
+        <input type="text" name="q" value="<%= escapedQuery %>" placeholder="Title or author name">
+        <input type="submit" value="Search">
+    </form>
+    <%
+        // hits arrive ranked by relevance
+        List<String> results = (List<String>) request.getAttribute("results");
+        if (results != null && !results.isEmpty()) {
+    %>
+    <ul>
+        <%
+            for (String result : results) {
+        %>
+        <li><%= escapeHtml(result) %></li>
+        <%
+            }
+        %>
+    </ul>
+    <%
+    } else if (!escapedQuery.isEmpty()) {
+    %>
+    <p>No matches found.</p>
+    <%
+        }
+    %>
+    <div class="center-link">
+        <a href="index.jsp">Back to Home</a>
+    </div>
+</div>
+</body>
+</html>
@@ -1,6 +1,6 @@
 <%@ page contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" %>
 <%@ page import="java.util.List" %>
-<%@ page import="java.util.Collections" %>
+<%@ include file="/WEB-INF/escape.jspf" %>
 <%@ page import="java.util.Set" %>
 <%@ page import="java.util.LinkedHashSet" %>
 <%@ page import="java.util.ArrayList" %>
@@ -38,6 +38,20 @@
       border-bottom: 1px solid #ccc;
     }  li:last-child {
       border-bottom: none;
+    }  .sort-links {
+      text-align: center;
+      margin-bottom: 20px;
+    }  .sort-links a {
+      color: #007bff;
+      text-decoration: none;
+      margin: 0 5px;
+    }  .pager {
+      text-align: center;
+      margin-top: 20px;
+    }  .pager a {
+      color: #007bff;
+      text-decoration: none;
+      margin: 0 10px;
     }  .back-link {
       text-align: center;
       margin-top: 20px;
@@ -54,21 +68,25 @@
 <body>
 <div class="container">
   <h2>Author List</h2>
+  <div class="sort-links">
+    Sort by:
+    <a href="LibraryData?view=authors&sort=lastname">Last name</a>
+    <a href="LibraryData?view=authors&sort=firstname">First name</a>
+    <a href="LibraryData?view=authors&sort=id">ID</a>
+  </div>
   <%
     List<String> authors = (List<String>) request.getAttribute("authors");
     if (authors != null && !authors.isEmpty()) {
       // remove duplicate authors
       Set<String> authorSet = new LinkedHashSet<>(authors);
-      // convert set back to a list
+      // convert set back to a list, keeping the order the database sorted them in
       authors = new ArrayList<>(authorSet);
-      // sort case-insensitively
-      Collections.sort(authors, String.CASE_INSENSITIVE_ORDER);
   %>
   <ul>
     <%
       for (String author : authors) {
     %>
-    <li><%= author %></li>
+    <li><%= escapeHtml(author) %></li>
     <%
       }
     %>
@@ -79,7 +97,18 @@
   <p>No authors found.</p>
   <%
     }
+
+    String firstPage = (String) request.getAttribute("firstPage");
+    String nextPage = (String) request.getAttribute("nextPage");
   %>
+  <div class="pager">
+    <% if (firstPage != null) { %>
+    <a href="<%= escapeHtml(firstPage) %>">First page</a>
+    <% } %>
+    <% if (nextPage != null) { %>
+    <a href="<%= escapeHtml(nextPage) %>">Next page</a>
+    <% } %>
+  </div>
   <div class="back-link">
     <a href="index.jsp">Back to Home</a>
   </div>
@@ -1,6 +1,6 @@
 <%@ page contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" %>
 <%@ page import="java.util.List" %>
-<%@ page import="java.util.Collections" %>
+<%@ include file="/WEB-INF/escape.jspf" %>
 <!DOCTYPE html>
 <html>
 <head>
@@ -39,6 +39,16 @@
         }  .center-link {
             text-align: center;
             margin-top: 20px;
+        }  .sort-links {
+            text-align: center;
+            margin-bottom: 20px;
+        }  .sort-links a {
+            margin: 0 5px;
+        }  .pager {
+            text-align: center;
+            margin-top: 20px;
+        }  .pager a {
+            margin: 0 10px;
         }
     </style>
 
@@ -46,17 +56,23 @@
 <body>
 <div class="container">
     <h2>Book List</h2>
+    <div class="sort-links">
+        Sort by:
+        <a href="LibraryData?view=books&sort=title">Title</a>
+        <a href="LibraryData?view=books&sort=copyright">Copyright</a>
+        <a href="LibraryData?view=books&sort=edition">Edition</a>
+        <a href="LibraryData?view=books&sort=isbn">ISBN</a>
+    </div>
     <%
-        // sorting
+        // rows arrive sorted by the database
         List<String> books = (List<String>) request.getAttribute("books");
         if (books != null && !books.isEmpty()) {
-            Collections.sort(books, String.CASE_INSENSITIVE_ORDER);
     %>
     <ul>
         <%
             for (String book : books) {
         %>
-        <li><%= book %></li>
+        <li><%= escapeHtml(book) %></li>
         <%
             }
         %>
@@ -67,7 +83,18 @@
     <p>No books found.</p>
     <%
         }
+
+        String firstPage = (String) request.getAttribute("firstPage");
+        String nextPage = (String) request.getAttribute("nextPage");
     %>
+    <div class="pager">
+        <% if (firstPage != null) { %>
+        <a href="<%= escapeHtml(firstPage) %>">First page</a>
+        <% } %>
+        <% if (nextPage != null) { %>
+        <a href="<%= escapeHtml(nextPage) %>">Next page</a>
+        <% } %>
+    </div>
     <div class="center-link">
         <a href="index.jsp">Back to Home</a>
     </div>
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BookTest {
+    @Test
+    void comparesBooksByIsbnAndAuthorsByID() {
+        assertEquals(new Book("1", "A", 1, "2020"), new Book("1", "B", 2, "2021"));
+        assertNotEquals(new Book(null, "A", 1, "2020"), new Book(null, "A", 1, "2020"));
+        assertEquals(new Author(7, "A", "B"), new Author(7, "C", "D"));
+        assertNotEquals(new Author(0, "A", "B"), new Author(0, "A", "B"));
+    }
+
+    @Test
+    void findsACopyOfALinkedAuthor() {
+        Book book = new Book("1", "Title", 1, "2020");
+        book.addAuthor(new Author(7, "First", "Last"));
+        book.addAuthor(new Author(7, "First", "Last"));
+
+        assertEquals(1, book.getAuthors().size());
+        assertTrue(book.getAuthors().contains(new Author(7, "First", "Last")));
+    }
+
+    @Test
+    void keepsTwoNewAuthorsApartUntilTheyHaveIDs() {
+        Book book = new Book("1", "Anthology", 1, "2020");
+        Author first = new Author(0, "A", "A");
+        Author second = new Author(0, "B", "B");
+        book.addAuthor(first);
+        book.addAuthor(second);
+        assertEquals(2, book.getAuthors().size());
+
+        first.setAuthorID(10);
+        second.setAuthorID(11);
+        assertTrue(book.getAuthors().contains(new Author(10, "A", "A")));
+        assertTrue(book.getAuthors().contains(new Author(11, "B", "B")));
+        assertFalse(book.getAuthors().contains(new Author(12, "C", "C")));
+
+        List<Author> order = new ArrayList<>(book.getAuthors());
+        assertEquals(10, order.get(0).getAuthorID());
+        assertEquals(11, order.get(1).getAuthorID());
+    }
+
+    @Test
+    void followsAChangedIsbn() {
+        Author author = new Author(1, "First", "Last");
+        Book book = new Book(null, "Title", 1, "2020");
+        author.addBook(book);
+        book.setIsbn("978-0134685991");
+
+        assertTrue(author.getBooks().contains(new Book("978-0134685991", "Other", 1, "2020")));
+        author.addBook(new Book("978-0134685991", "Copy", 1, "2020"));
+        assertEquals(1, author.getBooks().size());
+    }
+}
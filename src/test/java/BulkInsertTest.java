@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BulkInsertTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void oneBadRowFailsOnItsOwn() throws IOException {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            books.add(new Book("isbn-" + i, "Title " + i, 1, "2020"));
+        }
+        books.get(6).setCopyright(null);
+
+        EmbeddedBookStore store = open();
+        try {
+            BatchResult<Book> result = store.addBooks(books, 4);
+            assertEquals(9, result.getSucceeded());
+            assertEquals(1, result.getFailures().size());
+            BatchResult.Failure<Book> failure = result.getFailures().get(0);
+            assertEquals(6, failure.getIndex());
+            assertSame(books.get(6), failure.getItem());
+        } finally {
+            store.close();
+        }
+
+        store = open();
+        try {
+            assertEquals(9, store.getBookCount());
+            assertNull(store.getBookByISBN("isbn-6"));
+            assertEquals("Title 4", store.getBookByISBN("isbn-4").getTitle());
+            assertEquals("Title 7", store.getBookByISBN("isbn-7").getTitle());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void reportsDuplicatesAtTheirOwnIndex() throws IOException {
+        EmbeddedBookStore store = open();
+        try {
+            assertTrue(store.addBook(new Book("existing", "Already there", 1, "2019")));
+            List<Book> books = new ArrayList<>();
+            books.add(new Book("new-1", "New", 1, "2020"));
+            books.add(new Book("existing", "Duplicate of a stored book", 1, "2020"));
+            books.add(new Book("new-2", "New", 1, "2020"));
+            books.add(new Book("new-1", "Duplicate within the batch", 1, "2020"));
+
+            BatchResult<Book> result = store.addBooks(books, 3);
+            assertEquals(2, result.getSucceeded());
+            assertEquals(2, result.getFailures().size());
+            assertEquals(1, result.getFailures().get(0).getIndex());
+            assertEquals(3, result.getFailures().get(1).getIndex());
+            assertEquals("Already there", store.getBookByISBN("existing").getTitle());
+            assertEquals(3, store.getBookCount());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void setsTheAuthorIDOfEveryAuthor() throws IOException {
+        List<Author> authors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            authors.add(new Author(0, "First" + i, "Last" + i));
+        }
+        authors.add(new Author(0, "First1", "Last1"));
+
+        EmbeddedBookStore store = open();
+        try {
+            BatchResult<Author> result = store.addAuthors(authors, 2);
+            assertTrue(result.isComplete());
+            assertEquals(6, result.getSucceeded());
+            assertEquals(5, store.getAuthorCount());
+            for (Author author : authors) {
+                assertNotEquals(0, author.getAuthorID());
+                assertEquals(author.getLastName(), store.getAuthorByID(author.getAuthorID()).getLastName());
+            }
+            assertEquals(authors.get(1).getAuthorID(), authors.get(5).getAuthorID());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void keepsTheAuthorsOfOtherBooksWhenOneBookFails() throws IOException {
+        Book good = new Book("good", "Good", 1, "2020");
+        good.addAuthor(new Author(0, "New", "Author"));
+        Book bad = new Book("bad", "Bad", 1, "2020");
+        bad.addAuthor(new Author(12345, "Unknown", "Author"));
+        List<Book> books = new ArrayList<>();
+        books.add(bad);
+        books.add(good);
+
+        EmbeddedBookStore store = open();
+        try {
+            BatchResult<Book> result = store.addBooksWithAuthors(books);
+            assertEquals(1, result.getSucceeded());
+            assertEquals(1, result.getFailures().size());
+            assertEquals(0, result.getFailures().get(0).getIndex());
+            assertEquals(1, store.getAuthorCount());
+            assertEquals(1, store.getAuthorsWithBooks().get(0).getBooks().size());
+        } finally {
+            store.close();
+        }
+    }
+
+    private EmbeddedBookStore open() throws IOException {
+        EmbeddedBookStore store = new EmbeddedBookStore(directory);
+        store.setSyncOnWrite(false);
+        return store;
+    }
+}
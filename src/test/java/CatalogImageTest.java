@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogImageTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasExported() throws IOException, SQLException {
+        Path file = directory.resolve("catalog.image");
+        EmbeddedBookStore store = new EmbeddedBookStore(directory.resolve("store"));
+        try {
+            store.setSyncOnWrite(false);
+            assertTrue(store.addAuthor(new Author(0, "Éric", "Lévénez")));
+            assertTrue(store.addBook(new Book("1", "Ünïcödé and \"quotes\"", 1, "2020")));
+            assertTrue(store.addBook(new Book("2", "", 7, "1999")));
+            assertEquals(2, CatalogImage.export(store, file, "embedded"));
+        } finally {
+            store.close();
+        }
+
+        CatalogImage image = CatalogImage.open(file);
+        assertEquals("embedded", image.getSource());
+        assertEquals(2, image.getBookCount());
+        assertEquals(1, image.getAuthorCount());
+        assertTrue(image.getWrittenAtMillis() <= System.currentTimeMillis());
+
+        List<Book> books = new ArrayList<>();
+        image.forEachBook(books::add);
+        books.sort((a, b) -> a.getIsbn().compareTo(b.getIsbn()));
+        assertEquals("Ünïcödé and \"quotes\"", books.get(0).getTitle());
+        assertEquals("", books.get(1).getTitle());
+        assertEquals(7, books.get(1).getEditionNumber());
+        assertEquals("1999", books.get(1).getCopyright());
+
+        List<Author> authors = new ArrayList<>();
+        image.forEachAuthor(authors::add);
+        assertEquals("Éric", authors.get(0).getFirstName());
+        assertEquals("Lévénez", authors.get(0).getLastName());
+
+        CatalogSnapshot snapshot = image.toSnapshot();
+        assertEquals(2, snapshot.getBookCount());
+        assertNull(snapshot.getBooksPage(BookSort.ISBN, null, 10).getNextToken());
+    }
+
+    @Test
+    void keepsTheLinksBetweenBooksAndAuthors() throws IOException, SQLException {
+        Path file = directory.resolve("catalog.image");
+        EmbeddedBookStore store = new EmbeddedBookStore(directory.resolve("store"));
+        try {
+            store.setSyncOnWrite(false);
+            Author shared = new Author(0, "Brian", "Goetz");
+            Book first = new Book("1", "Java Concurrency in Practice", 1, "2006");
+            first.addAuthor(shared);
+            first.addAuthor(new Author(0, "Tim", "Peierls"));
+            Book second = new Book("2", "Another", 1, "2010");
+            second.addAuthor(new Author(0, "Brian", "Goetz"));
+            assertTrue(store.addBookWithAuthors(first));
+            assertTrue(store.addBookWithAuthors(second));
+            assertTrue(store.addBook(new Book("3", "No authors", 1, "2011")));
+            CatalogImage.export(store, file, "embedded");
+        } finally {
+            store.close();
+        }
+
+        CatalogImage image = CatalogImage.open(file);
+        assertEquals(3, image.getLinkCount());
+        List<String> links = new ArrayList<>();
+        image.forEachLink((isbn, authorID) -> links.add(isbn + ":" + authorID));
+        assertEquals(3, links.size());
+
+        Map<String, Book> books = new HashMap<>();
+        image.forEachBookWithAuthors(book -> books.put(book.getIsbn(), book));
+        assertEquals(3, books.size());
+        assertEquals(2, books.get("1").getAuthors().size());
+        assertEquals(1, books.get("2").getAuthors().size());
+        assertTrue(books.get("3").getAuthors().isEmpty());
+        Author goetz = books.get("2").getAuthors().iterator().next();
+        assertEquals("Goetz", goetz.getLastName());
+        assertEquals(2, goetz.getBooks().size());
+    }
+
+    @Test
+    void readsStringsInPlace() throws IOException, SQLException {
+        Path file = directory.resolve("catalog.image");
+        EmbeddedBookStore store = new EmbeddedBookStore(directory.resolve("store"));
+        try {
+            store.setSyncOnWrite(false);
+            assertTrue(store.addBook(new Book("1", "Title", 1, "2020")));
+            assertTrue(store.addAuthor(new Author(0, "First", "Last")));
+            CatalogImage.export(store, file, "embedded");
+        } finally {
+            store.close();
+        }
+
+        CatalogImage image = CatalogImage.open(file);
+        assertEquals("1", image.getIsbn(0).toString());
+        assertEquals("Title", image.getTitle(0).toString());
+        assertEquals('T', image.getTitle(0).charAt(0));
+        assertEquals("First", image.getFirstName(0).toString());
+        assertEquals("Last", image.getLastName(0).toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> image.getTitle(1));
+    }
+
+    @Test
+    void rejectsADamagedImage() throws IOException, SQLException {
+        Path file = directory.resolve("catalog.image");
+        EmbeddedBookStore store = new EmbeddedBookStore(directory.resolve("store"));
+        try {
+            store.setSyncOnWrite(false);
+            assertTrue(store.addBook(new Book("1", "Title", 1, "2020")));
+            CatalogImage.export(store, file, "embedded");
+        } finally {
+            store.close();
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> CatalogImage.open(file));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("not-an-image");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> CatalogImage.open(file));
+        assertThrows(IOException.class, () -> CatalogImage.open(directory.resolve("missing")));
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CatalogSnapshotTest {
+
+    @Test
+    void pagesThroughEveryBookInTitleOrder() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            //many titles repeat, so the ISBN has to break the ties
+            books.add(new Book(String.format("isbn-%03d", 249 - i), "Title " + (i % 7), 1, "2020"));
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.build(books, Collections.emptyList());
+
+        List<String> seen = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Book> page = snapshot.getBooksPage(BookSort.TITLE, token, 40);
+            for (Book book : page.getItems()) {
+                seen.add(book.getTitle() + "/" + book.getIsbn());
+            }
+            token = page.getNextToken();
+        } while (token != null);
+
+        List<String> expected = new ArrayList<>();
+        for (Book book : books) {
+            expected.add(book.getTitle() + "/" + book.getIsbn());
+        }
+        expected.sort(null);
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void sortsNullTitlesFirstAndPagesPastThem() {
+        List<Book> books = Arrays.asList(
+                new Book("3", "b", 1, "2020"),
+                new Book("2", null, 1, "2020"),
+                new Book("1", null, 1, "2020"),
+                new Book("4", "a", 1, "2020"));
+        CatalogSnapshot snapshot = CatalogSnapshot.build(books, Collections.emptyList());
+
+        Page<Book> first = snapshot.getBooksPage(BookSort.TITLE, null, 1);
+        Page<Book> second = snapshot.getBooksPage(BookSort.TITLE, first.getNextToken(), 2);
+        Page<Book> third = snapshot.getBooksPage(BookSort.TITLE, second.getNextToken(), 2);
+
+        assertEquals("1", first.getItems().get(0).getIsbn());
+        assertEquals(Arrays.asList("2", "4"), isbns(second));
+        assertEquals(Arrays.asList("3"), isbns(third));
+        assertNull(third.getNextToken());
+    }
+
+    @Test
+    void issuesTokensOnlyForItsOwnOrder() {
+        List<Author> authors = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            authors.add(new Author(i, "First" + i, "Last" + i));
+        }
+        CatalogSnapshot snapshot = CatalogSnapshot.build(Collections.emptyList(), authors);
+        String token = snapshot.getAuthorsPage(AuthorSort.ID, null, 1).getNextToken();
+
+        assertTrue(CatalogSnapshot.isSnapshotToken(token));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getAuthorsPage(AuthorSort.LAST_NAME, token, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> snapshot.getAuthorsPage(AuthorSort.ID, PageToken.encode("authors.ID", "1"), 1));
+    }
+
+    @Test
+    void copiesOnWrite() {
+        CatalogSnapshot original = CatalogSnapshot.build(
+                Arrays.asList(new Book("1", "Old", 1, "2020")), Collections.emptyList());
+
+        CatalogSnapshot updated = original.withBook(new Book("1", "New", 2, "2021"))
+                .withAuthor(new Author(5, "Ada", "Lovelace"));
+
+        assertEquals("Old", original.getBooksPage(BookSort.ISBN, null, 10).getItems().get(0).getTitle());
+        assertEquals(0, original.getAuthorCount());
+        assertEquals(1, updated.getBookCount());
+        assertEquals("New", updated.getBooksPage(BookSort.TITLE, null, 10).getItems().get(0).getTitle());
+        assertEquals(1, updated.getAuthorCount());
+        assertFalse(original.hasSameRows(updated));
+        assertTrue(updated.hasSameRows(original.withBook(new Book("1", "New", 2, "2021"))
+                .withAuthor(new Author(5, "Ada", "Lovelace"))));
+    }
+
+    private static List<String> isbns(Page<Book> page) {
+        List<String> isbns = new ArrayList<>();
+        for (Book book : page.getItems()) {
+            isbns.add(book.getIsbn());
+        }
+        return isbns;
+    }
+}
@@ -0,0 +1,147 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EmbeddedBookStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysTheLogOnReopen() throws IOException {
+        int authorID;
+        EmbeddedBookStore store = open();
+        try {
+            Book book = new Book("978-0134685991", "Effective Java", 2, "2017");
+            book.addAuthor(new Author(0, "Joshua", "Bloch"));
+            assertTrue(store.addBookWithAuthors(book));
+            authorID = book.getAuthors().iterator().next().getAuthorID();
+
+            assertTrue(store.addBook(new Book("978-0321349606", "Java Concurrency in Practice", 1, "2006")));
+            assertTrue(store.updateBook(new Book("978-0134685991", "Effective Java", 3, "2018")));
+            assertFalse(store.addBook(new Book("978-0134685991", "Duplicate", 1, "2000")));
+        } finally {
+            store.close();
+        }
+
+        store = open();
+        try {
+            assertEquals(2, store.getBookCount());
+            assertEquals(1, store.getAuthorCount());
+            Book book = store.getBooksWithAuthors(Collections.singletonList("978-0134685991")).get(0);
+            assertEquals(3, book.getEditionNumber());
+            assertEquals("2018", book.getCopyright());
+            assertEquals(authorID, book.getAuthors().iterator().next().getAuthorID());
+            assertEquals("Bloch", store.getAuthorByID(authorID).getLastName());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void cutsOffATornEntryAtTheEndOfTheLog() throws IOException {
+        EmbeddedBookStore store = open();
+        try {
+            assertTrue(store.addBook(new Book("1", "Kept", 1, "2020")));
+        } finally {
+            store.close();
+        }
+        //half an entry, as a crash in the middle of a write leaves it
+        Files.write(newestLog(), new byte[]{42, 0, 0}, StandardOpenOption.APPEND);
+
+        store = open();
+        try {
+            assertEquals(1, store.getBookCount());
+            assertTrue(store.addBook(new Book("2", "Written after recovery", 1, "2020")));
+        } finally {
+            store.close();
+        }
+        store = open();
+        try {
+            assertEquals("Kept", store.getBookByISBN("1").getTitle());
+            assertEquals("Written after recovery", store.getBookByISBN("2").getTitle());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void keepsEverythingAcrossCompaction() throws IOException {
+        EmbeddedBookStore store = open();
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(store.addAuthor(new Author(0, "First" + i, "Last" + i)));
+            }
+            store.compact();
+            assertTrue(store.addBook(new Book("after", "Written after the snapshot", 1, "2020")));
+        } finally {
+            store.close();
+        }
+
+        store = open();
+        try {
+            assertEquals(100, store.getAuthorCount());
+            assertEquals(1, store.getBookCount());
+            List<String> names = new ArrayList<>();
+            String token = null;
+            do {
+                Page<Author> page = store.getAuthorsPage(AuthorSort.LAST_NAME, token, 30);
+                for (Author author : page.getItems()) {
+                    names.add(author.getLastName());
+                }
+                token = page.getNextToken();
+            } while (token != null);
+            assertEquals(100, names.size());
+            assertEquals("Last0", names.get(0));
+            assertEquals("Last99", names.get(99));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void rejectsBooksItCannotStore() throws IOException {
+        EmbeddedBookStore store = open();
+        try {
+            assertFalse(store.addBook(new Book("1", "No copyright", 1, null)));
+        } finally {
+            store.close();
+        }
+        store = open();
+        try {
+            assertNull(store.getBookByISBN("1"));
+        } finally {
+            store.close();
+        }
+    }
+
+    private EmbeddedBookStore open() throws IOException {
+        EmbeddedBookStore store = new EmbeddedBookStore(directory);
+        store.setSyncOnWrite(false);
+        return store;
+    }
+
+    private Path newestLog() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log"))
+                    .max((a, b) -> Long.compare(generation(a), generation(b)))
+                    .orElseThrow();
+        }
+    }
+
+    private static long generation(Path log) {
+        String name = log.getFileName().toString();
+        return Long.parseLong(name.substring("catalog-".length(), name.length() - ".log".length()));
+    }
+}
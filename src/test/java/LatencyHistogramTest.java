@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void isEmptyAtFirst() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertArrayEquals(new long[]{0, 0}, histogram.getQuantileNanos(0.5, 0.99));
+    }
+
+    @Test
+    void countsSumsAndKeepsTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(3_000);
+        histogram.record(20);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(3_120, histogram.getSumNanos());
+        assertEquals(3_000, histogram.getMaxNanos());
+    }
+
+    @Test
+    void recordsNegativeDurationsAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSumNanos());
+        assertArrayEquals(new long[]{0}, histogram.getQuantileNanos(1.0));
+    }
+
+    @Test
+    void reportsQuantilesWithinOneSixteenth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        long[] values = histogram.getQuantileNanos(quantiles);
+        for (int i = 0; i < quantiles.length; i++) {
+            double expected = quantiles[i] * 10_000_000;
+            assertTrue(values[i] >= expected && values[i] <= expected * 17 / 16,
+                    "quantile " + quantiles[i] + " was " + values[i]);
+        }
+    }
+
+    @Test
+    void neverReportsMoreThanTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        assertArrayEquals(new long[]{1_000_001, 1_000_001}, histogram.getQuantileNanos(0.5, 1.0));
+    }
+}
@@ -0,0 +1,63 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PageTokenTest {
+
+    @Test
+    void decodesWhatItEncoded() {
+        String token = PageToken.encode("books.TITLE", "Effective Java", "978-0134685991");
+
+        assertArrayEquals(new String[]{"Effective Java", "978-0134685991"},
+                PageToken.decode(token, "books.TITLE", 2));
+        assertEquals("books.TITLE", PageToken.kindOf(token));
+    }
+
+    @Test
+    void isUrlSafe() {
+        String token = PageToken.encode("books.TITLE", "a/b+c?d=e&f", "éè");
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void keepsNullApartFromTheStringNull() {
+        String token = PageToken.encodeKey("books.TITLE", new Object[]{null, "null"});
+
+        String[] values = PageToken.decode(token, "books.TITLE", 2);
+        assertNull(values[0]);
+        assertEquals("null", values[1]);
+    }
+
+    @Test
+    void keepsValuesThatStartWithTheNullMarker() {
+        String token = PageToken.encode("authors.ID", "\u0000", "\u0000\u0000x");
+
+        assertArrayEquals(new String[]{"\u0000", "\u0000\u0000x"}, PageToken.decode(token, "authors.ID", 2));
+    }
+
+    @Test
+    void encodesTypedKeysAsStrings() {
+        String token = PageToken.encodeKey("books.EDITION", new Object[]{3, "isbn"});
+
+        assertArrayEquals(new String[]{"3", "isbn"}, PageToken.decode(token, "books.EDITION", 2));
+    }
+
+    @Test
+    void rejectsTokensOfAnotherList() {
+        String token = PageToken.encode("books.TITLE", "title", "isbn");
+
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, "books.ISBN", 2));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(token, "books.TITLE", 1));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("not base64!", "books.ISBN", 1));
+        assertNull(PageToken.kindOf("not base64!"));
+    }
+}
@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SearchIndexTest {
+
+    @Test
+    void foldsCaseAndAccentsAndSplitsAtPunctuation() {
+        assertEquals(Arrays.asList("eric", "s", "c", "guide"), SearchIndex.tokenize("Éric's C++ Guide"));
+        assertTrue(SearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void findsBooksAndAuthorsByPrefix() {
+        SearchIndex index = new SearchIndex();
+        index.addBook(new Book("1", "Java Concurrency in Practice", 1, "2006"));
+        index.addBook(new Book("2", "Learning Python", 5, "2013"));
+        index.addAuthor(new Author(7, "Éric", "Javaux"));
+
+        List<String> found = keys(index.search("jav", 10));
+        found.sort(null);
+        assertEquals(Arrays.asList("1", "7"), found);
+        assertEquals(Arrays.asList("7"), keys(index.search("eric", 10)));
+    }
+
+    @Test
+    void matchesOnlyDocumentsWithEveryToken() {
+        SearchIndex index = new SearchIndex();
+        index.addBook(new Book("1", "Java Concurrency in Practice", 1, "2006"));
+        index.addBook(new Book("2", "Java Puzzlers", 1, "2005"));
+
+        assertEquals(Arrays.asList("2"), keys(index.search("java puzz", 10)));
+        assertTrue(index.search("java rust", 10).isEmpty());
+    }
+
+    @Test
+    void ranksExactMatchesAbovePrefixMatches() {
+        SearchIndex index = new SearchIndex();
+        index.addBook(new Book("1", "Javascript", 1, "2011"));
+        index.addBook(new Book("2", "Java", 1, "2011"));
+
+        List<SearchIndex.Hit> hits = index.search("java", 10);
+        assertEquals(Arrays.asList("2", "1"), keys(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    void keepsOnlyTheBestHits() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 50; i++) {
+            index.addBook(new Book(String.valueOf(i), "Databases volume " + i, 1, "2020"));
+        }
+
+        assertEquals(5, index.search("databases", 5).size());
+        assertTrue(index.search("databases", 0).isEmpty());
+    }
+
+    @Test
+    void replacesAnEntryWithTheSameKey() {
+        SearchIndex index = new SearchIndex();
+        index.addBook(new Book("1", "Old Title", 1, "2000"));
+        index.addBook(new Book("1", "New Title", 2, "2001"));
+
+        assertEquals(1, index.size());
+        assertTrue(index.search("old", 10).isEmpty());
+        SearchIndex.Hit hit = index.search("new", 10).get(0);
+        assertEquals("New Title", hit.getBook().getTitle());
+        assertNull(hit.getAuthor());
+    }
+
+    @Test
+    void stillFindsEntriesAfterCompaction() {
+        SearchIndex index = new SearchIndex();
+        int rewrites = SearchIndex.COMPACTION_MIN_TOMBSTONES * 2;
+        for (int i = 0; i < rewrites; i++) {
+            index.addAuthor(new Author(1, "Ada", "Lovelace" + i));
+        }
+
+        assertEquals(1, index.size());
+        assertEquals(Arrays.asList("1"), keys(index.search("ada", 10)));
+        assertTrue(index.search("lovelace0", 10).isEmpty());
+    }
+
+    private static List<String> keys(List<SearchIndex.Hit> hits) {
+        List<String> keys = new ArrayList<>();
+        for (SearchIndex.Hit hit : hits) {
+            keys.add((hit.getBook() != null) ? hit.getBook().getIsbn() : String.valueOf(hit.getAuthor().getAuthorID()));
+        }
+        return keys;
+    }
+}